@@ -20,6 +20,7 @@
 package org.jeromq;
 
 import java.io.Closeable;
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.charset.Charset;
@@ -1079,6 +1080,19 @@ public class ZMQ
             setsockopt(zmq.ZMQ.ZMQ_ROUTER_HANDOVER, handlover ? 1 : 0);
         }
 
+        /**
+         * Sets whether the ROUTER socket generates four byte integer identities for
+         * anonymous peers. Messages sent to four byte identities are then routed
+         * through an int keyed table, without copying the identity frame.
+         * Must be set before bind or connect.
+         *
+         * @param intId A value of false is the default and generates five byte identities.
+         */
+        public final void setRouterIntId(boolean intId)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_ROUTER_INT_ID, intId ? 1 : 0);
+        }
+
         /**
          * Sets the XPUB socket behavior on new subscriptions and unsubscriptions.
          *
@@ -1337,6 +1351,29 @@ public class ZMQ
             mayRaise();
             return -1;
         }
+
+        /**
+         * Send a region of a file. Over TCP and IPC the region is sent straight
+         * from the file, without going through the heap; other transports read
+         * it in. Files larger than 2 GB have to be sent in several frames.
+         *
+         * @param file the file to send from
+         * @param offset where the region starts in the file
+         * @param length the size of the region
+         * @param flags the flags to apply to the send operation
+         * @return true if successful.
+         */
+        public final boolean sendFile(File file, long offset, int length, int flags)
+        {
+            zmq.Msg msg = new zmq.Msg(file, offset, length);
+            if (base.send(msg, flags)) {
+                return true;
+            }
+
+            mayRaise();
+            return false;
+        }
+
         /**
          * Receive a message.
          *
@@ -1359,7 +1396,9 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags);
 
             if (msg != null) {
-                return msg.data();
+                byte[] data = msg.data();
+                msg.release();
+                return data;
             }
 
             mayRaise();
@@ -1386,7 +1425,9 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags);
 
             if (msg != null) {
-                return msg.getBytes(0, buffer, offset, len);
+                int read = msg.getBytes(0, buffer, offset, len);
+                msg.release();
+                return read;
             }
 
             return -1;
@@ -1404,8 +1445,10 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags);
 
             if (msg != null) {
-                buffer.put(msg.data());
-                return msg.size();
+                int size = msg.size();
+                buffer.put(msg.buf());
+                msg.release();
+                return size;
             }
 
             mayRaise();
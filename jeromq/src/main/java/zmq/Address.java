@@ -63,6 +63,9 @@ public class Address
         else if (protocol.equals("ipc") && isResolved()) {
             return resolved.toString();
         }
+        else if (protocol.equals("shm") && isResolved()) {
+            return resolved.toString();
+        }
         else if (!protocol.isEmpty() && !address.isEmpty()) {
             return protocol + "://" + address;
         }
@@ -103,6 +106,11 @@ public class Address
             resolved.resolve(address, true);
             return true;
         }
+        else if (protocol.equals("shm")) {
+            resolved = new ShmAddress();
+            resolved.resolve(address, true);
+            return true;
+        }
         else {
             return false;
         }
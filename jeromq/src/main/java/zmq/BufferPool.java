@@ -0,0 +1,253 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+//  Context-wide pool of message payloads, organised in power-of-two size
+//  classes. Heap arrays and direct buffers are kept apart. Decoders draw
+//  the bodies of incoming messages from here and applications hand them
+//  back by calling Msg.release() once they are done with a received
+//  message. Buffers that are never released are simply reclaimed by the
+//  garbage collector.
+//
+//  A separate instance holds the batch buffers of the engines, leased
+//  while they have data in flight. The pool keeps count of the bytes of
+//  direct buffers leased and free.
+
+public class BufferPool implements IMsgAllocator
+{
+    //  Smallest size class is 32 bytes; smaller payloads are rounded up.
+    private static final int MIN_CLASS_SHIFT = 5;
+
+    //  Largest payload (rounded up to a power of two) served by the pool.
+    private final int maxSize;
+
+    //  Maximum number of idle buffers retained per size class.
+    private final int capacity;
+
+    private final ArrayDeque<byte[]>[] classes;
+    private final ArrayDeque<ByteBuffer>[] directClasses;
+    private final Lock[] locks;
+
+    //  Bytes of direct buffers handed out and not released yet, the most
+    //  there ever were, and bytes of idle direct buffers retained.
+    private final AtomicLong leased;
+    private final AtomicLong highWater;
+    private final AtomicLong free;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(int maxSize, int capacity)
+    {
+        if (maxSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("maxSize=" + maxSize + ", capacity=" + capacity);
+        }
+        this.maxSize = 1 << (sizeClass(maxSize) + MIN_CLASS_SHIFT);
+        this.capacity = capacity;
+
+        int count = sizeClass(this.maxSize) + 1;
+        classes = new ArrayDeque[count];
+        directClasses = new ArrayDeque[count];
+        locks = new Lock[count];
+        for (int i = 0; i != count; i++) {
+            classes[i] = new ArrayDeque<byte[]>();
+            directClasses[i] = new ArrayDeque<ByteBuffer>();
+            locks[i] = new ReentrantLock();
+        }
+        leased = new AtomicLong();
+        highWater = new AtomicLong();
+        free = new AtomicLong();
+    }
+
+    //  Returns the index of the smallest size class able to hold size bytes.
+    private static int sizeClass(int size)
+    {
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(0, shift - MIN_CLASS_SHIFT);
+    }
+
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    //  Creates a message of the given size. Payloads that are empty or too
+    //  large for the pool are allocated on the heap as usual.
+    @Override
+    public Msg allocate(int size)
+    {
+        if (size <= 0 || size > maxSize) {
+            return new Msg(size);
+        }
+        return new Msg(this, acquire(size), size);
+    }
+
+    //  Creates a message of the given size backed by a direct buffer.
+    //  Payloads too large for the pool get a buffer of their own.
+    public Msg allocateDirect(int size)
+    {
+        if (size <= 0 || size > maxSize) {
+            return new Msg(ByteBuffer.allocateDirect(size));
+        }
+        return new Msg(this, acquireDirect(size), size);
+    }
+
+    byte[] acquire(int size)
+    {
+        int cls = sizeClass(size);
+        byte[] buf;
+        locks[cls].lock();
+        try {
+            buf = classes[cls].pollFirst();
+        }
+        finally {
+            locks[cls].unlock();
+        }
+        if (buf == null) {
+            buf = new byte[1 << (cls + MIN_CLASS_SHIFT)];
+        }
+        return buf;
+    }
+
+    //  Leases a direct buffer of at least size bytes. Sizes too large for
+    //  the pool get a buffer of their own, which isn't retained once
+    //  released.
+    ByteBuffer acquireDirect(int size)
+    {
+        ByteBuffer buf = null;
+        if (size <= maxSize) {
+            int cls = sizeClass(size);
+            locks[cls].lock();
+            try {
+                buf = directClasses[cls].pollFirst();
+            }
+            finally {
+                locks[cls].unlock();
+            }
+            if (buf == null) {
+                buf = ByteBuffer.allocateDirect(1 << (cls + MIN_CLASS_SHIFT));
+            }
+            else {
+                free.addAndGet(-buf.capacity());
+            }
+        }
+        else {
+            buf = ByteBuffer.allocateDirect(size);
+        }
+        buf.clear();
+
+        long total = leased.addAndGet(buf.capacity());
+        long max = highWater.get();
+        while (total > max && !highWater.compareAndSet(max, total)) {
+            max = highWater.get();
+        }
+        return buf;
+    }
+
+    void release(ByteBuffer buf)
+    {
+        if (!buf.isDirect()) {
+            return;
+        }
+        int length = buf.capacity();
+        leased.addAndGet(-length);
+        if (length > maxSize || Integer.bitCount(length) != 1 || length < (1 << MIN_CLASS_SHIFT)) {
+            return;
+        }
+        int cls = sizeClass(length);
+        locks[cls].lock();
+        try {
+            if (directClasses[cls].size() < capacity) {
+                directClasses[cls].addFirst(buf);
+                free.addAndGet(length);
+            }
+        }
+        finally {
+            locks[cls].unlock();
+        }
+    }
+
+    void release(byte[] buf)
+    {
+        int length = buf.length;
+        //  Only arrays handed out by acquire() may come back.
+        if (length > maxSize || Integer.bitCount(length) != 1 || length < (1 << MIN_CLASS_SHIFT)) {
+            return;
+        }
+        int cls = sizeClass(length);
+        locks[cls].lock();
+        try {
+            if (classes[cls].size() < capacity) {
+                classes[cls].addFirst(buf);
+            }
+        }
+        finally {
+            locks[cls].unlock();
+        }
+    }
+
+    //  Number of idle buffers able to hold size bytes without allocation.
+    public int available(int size)
+    {
+        int cls = sizeClass(size);
+        locks[cls].lock();
+        try {
+            return classes[cls].size();
+        }
+        finally {
+            locks[cls].unlock();
+        }
+    }
+
+    //  Number of idle direct buffers able to hold size bytes.
+    public int availableDirect(int size)
+    {
+        int cls = sizeClass(size);
+        locks[cls].lock();
+        try {
+            return directClasses[cls].size();
+        }
+        finally {
+            locks[cls].unlock();
+        }
+    }
+
+    //  Bytes of direct buffers leased and not released yet.
+    public long leased()
+    {
+        return leased.get();
+    }
+
+    //  Most bytes of direct buffers ever leased at once.
+    public long highWater()
+    {
+        return highWater.get();
+    }
+
+    //  Bytes of idle direct buffers retained by the pool.
+    public long free()
+    {
+        return free.get();
+    }
+}
@@ -44,6 +44,17 @@ public class Clock
         return System.currentTimeMillis();
     }
 
+    //  Origin of the monotonic timestamps, keeps them positive.
+    private static final long ORIGIN = System.nanoTime();
+
+    //  Monotonic timestamp in milliseconds. Unlike the low precision one
+    //  it doesn't jump when the system time is changed, it is only
+    //  meaningful relative to another monotonic timestamp.
+    public static long monotonicMS()
+    {
+        return (System.nanoTime() - ORIGIN) / 1000000L;
+    }
+
     //  CPU's timestamp counter. Returns 0 if it's not available.
     public static long rdtsc()
     {
@@ -70,7 +70,13 @@ class Command
         REAPED,
         //  Sent by reaper thread to the term thread when all the sockets
         //  are successfully deallocated.
-        DONE
+        DONE,
+        //  Sent by a publishing socket to an I/O thread to write a message
+        //  into the pipes whose peers live in that thread.
+        FANOUT,
+        //  Sent by an I/O thread to another one to hand over a session and
+        //  its engine.
+        MIGRATE
     }
 
     Object arg;
@@ -37,17 +37,11 @@ public enum Config
     //  real-time behaviour (less latency peaks).
     INBOUND_POLL_RATE (100),
 
-    //  Maximal batching size for engines with receiving functionality.
-    //  So, if there are 10 messages that fit into the batch size, all of
-    //  them may be read by a single 'recv' system call, thus avoiding
-    //  unnecessary network stack traversals.
-    IN_BATCH_SIZE (8192),
-
-    //  Maximal batching size for engines with sending functionality.
-    //  So, if there are 10 messages that fit into the batch size, all of
-    //  them may be written by a single 'send' system call, thus avoiding
-    //  unnecessary network stack traversals.
-    OUT_BATCH_SIZE (8192),
+    //  Period in milliseconds after which the batch buffers of an engine
+    //  that haven't been filled are shrunk back to their minimum size.
+    //  The bounds of the batch buffers are set by the ZMQ_BATCH_SIZE_MIN
+    //  and ZMQ_BATCH_SIZE_MAX options.
+    BATCH_IDLE_IVL (1000),
 
     //  Maximal delta between high and low watermark.
     MAX_WM_DELTA (1024),
@@ -55,6 +49,10 @@ public enum Config
     //  Maximum number of events the I/O thread can process in one go.
     MAX_IO_EVENTS (256),
 
+    //  Default number of bytes an engine reads, or writes, in a single
+    //  I/O event before yielding to the other connections of its thread.
+    IO_BUDGET (256 * 1024),
+
     //  Maximal delay to process command in API thread (in CPU ticks).
     //  3,000,000 ticks equals to 1 - 2 milliseconds on current CPUs.
     //  Note that delay is only applied when there is continuous stream of
@@ -68,6 +66,18 @@ public enum Config
     //  possible latencies.
     CLOCK_PRECISION  (1000000),
 
+    //  Size of the data area of each of the two rings shared by the ends
+    //  of a shm:// connection. Must be a power of two.
+    SHM_RING_SIZE (1 << 20),
+
+    //  Period in milliseconds over which the activity of I/O threads is
+    //  measured, for the placement of new connections.
+    IO_LOAD_PERIOD (100),
+
+    //  Interval in milliseconds between two attempts of an I/O thread to
+    //  hand one of its connections over to a less busy one, when enabled.
+    IO_REBALANCE_IVL (1000),
+
     //  Maximum transport data unit size for PGM (TPDU).
     PGM_MAX_TPDU  (1500),
 
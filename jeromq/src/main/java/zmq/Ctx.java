@@ -109,6 +109,35 @@ public class Ctx
     //  Does context wait (possibly forever) on termination?
     private boolean blocky;
 
+    //  Largest message body served from the buffer pool (0 = no pool) and
+    //  number of idle buffers kept per size class.
+    private int msgPoolSize;
+    private int msgPoolCapacity;
+
+    //  Pool the decoders draw message bodies from, if enabled.
+    private BufferPool msgPool;
+
+    //  Do the I/O threads keep their timers in a timing wheel?
+    private boolean timerWheel;
+
+    //  Imbalance of activity between I/O threads, in percent, above which
+    //  sessions are moved to a less active thread (0 = never).
+    private int ioRebalance;
+
+    //  For how long, in microseconds, idle I/O threads keep polling
+    //  without blocking, spinning then yielding between the checks.
+    private int ioBusyPoll;
+    private int ioBusyYield;
+
+    //  Bounds of the batch buffers of the engines, by default.
+    private int batchSizeMin;
+    private int batchSizeMax;
+
+    //  Pool the engines lease their batch buffers from, retaining up to
+    //  batchPoolCapacity idle buffers of each size.
+    private int batchPoolCapacity;
+    private BufferPool batchPool;
+
     //  Synchronisation of access to context options.
     private final Lock optSync;
 
@@ -125,6 +154,17 @@ public class Ctx
         maxSockets = ZMQ.ZMQ_MAX_SOCKETS_DFLT;
         ioThreadCount = ZMQ.ZMQ_IO_THREADS_DFLT;
         blocky = true;
+        msgPoolSize = ZMQ.ZMQ_MSG_POOL_SIZE_DFLT;
+        msgPoolCapacity = ZMQ.ZMQ_MSG_POOL_CAPACITY_DFLT;
+        msgPool = null;
+        timerWheel = ZMQ.ZMQ_TIMER_WHEEL_DFLT != 0;
+        ioRebalance = ZMQ.ZMQ_IO_REBALANCE_DFLT;
+        ioBusyPoll = ZMQ.ZMQ_IO_BUSY_POLL_DFLT;
+        ioBusyYield = ZMQ.ZMQ_IO_BUSY_YIELD_DFLT;
+        batchSizeMin = ZMQ.ZMQ_BATCH_SIZE_MIN_DFLT;
+        batchSizeMax = ZMQ.ZMQ_BATCH_SIZE_MAX_DFLT;
+        batchPoolCapacity = ZMQ.ZMQ_BATCH_POOL_CAPACITY_DFLT;
+        batchPool = null;
         slotSync = new ReentrantLock();
         endpointsSync = new ReentrantLock();
         optSync = new ReentrantLock();
@@ -248,6 +288,96 @@ public class Ctx
                 optSync.unlock();
             }
         }
+        else
+        if (option == ZMQ.ZMQ_MSG_POOL_SIZE && optval >= 0) {
+            optSync.lock();
+            try {
+                msgPoolSize = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_MSG_POOL_CAPACITY && optval >= 1) {
+            optSync.lock();
+            try {
+                msgPoolCapacity = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_TIMER_WHEEL && optval >= 0) {
+            optSync.lock();
+            try {
+                timerWheel = (optval != 0);
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_IO_REBALANCE && optval >= 0) {
+            optSync.lock();
+            try {
+                ioRebalance = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_IO_BUSY_POLL && optval >= 0) {
+            optSync.lock();
+            try {
+                ioBusyPoll = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_IO_BUSY_YIELD && optval >= 0) {
+            optSync.lock();
+            try {
+                ioBusyYield = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_BATCH_SIZE_MIN && optval > 0) {
+            optSync.lock();
+            try {
+                batchSizeMin = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_BATCH_SIZE_MAX && optval > 0) {
+            optSync.lock();
+            try {
+                batchSizeMax = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_BATCH_POOL_CAPACITY && optval > 0) {
+            optSync.lock();
+            try {
+                batchPoolCapacity = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
         else {
             return false;
         }
@@ -266,6 +396,33 @@ public class Ctx
         else if (option == ZMQ.ZMQ_BLOCKY) {
             rc = blocky ? 1 : 0;
         }
+        else if (option == ZMQ.ZMQ_MSG_POOL_SIZE) {
+            rc = msgPoolSize;
+        }
+        else if (option == ZMQ.ZMQ_MSG_POOL_CAPACITY) {
+            rc = msgPoolCapacity;
+        }
+        else if (option == ZMQ.ZMQ_TIMER_WHEEL) {
+            rc = timerWheel ? 1 : 0;
+        }
+        else if (option == ZMQ.ZMQ_IO_REBALANCE) {
+            rc = ioRebalance;
+        }
+        else if (option == ZMQ.ZMQ_IO_BUSY_POLL) {
+            rc = ioBusyPoll;
+        }
+        else if (option == ZMQ.ZMQ_IO_BUSY_YIELD) {
+            rc = ioBusyYield;
+        }
+        else if (option == ZMQ.ZMQ_BATCH_SIZE_MIN) {
+            rc = batchSizeMin;
+        }
+        else if (option == ZMQ.ZMQ_BATCH_SIZE_MAX) {
+            rc = batchSizeMax;
+        }
+        else if (option == ZMQ.ZMQ_BATCH_POOL_CAPACITY) {
+            rc = batchPoolCapacity;
+        }
         else {
             throw new IllegalArgumentException("option = " + option);
         }
@@ -286,6 +443,10 @@ public class Ctx
                 try {
                     mazmq = maxSockets;
                     ios = ioThreadCount;
+                    if (msgPoolSize > 0) {
+                        msgPool = new BufferPool(msgPoolSize, msgPoolCapacity);
+                    }
+                    batchPool = new BufferPool(Math.max(batchSizeMin, batchSizeMax), batchPoolCapacity);
                 }
                 finally {
                     optSync.unlock();
@@ -376,6 +537,25 @@ public class Ctx
         }
     }
 
+    //  Returns the pool for message bodies, null if pooling is disabled.
+    BufferPool getMsgPool()
+    {
+        return msgPool;
+    }
+
+    //  Returns the pool of the batch buffers of the engines, for its
+    //  statistics. Null until the first socket is created.
+    public BufferPool getBatchPool()
+    {
+        return batchPool;
+    }
+
+    //  Returns the I/O threads, the one with thread id 2 first.
+    List<IOThread> getIoThreads()
+    {
+        return ioThreads;
+    }
+
     //  Returns reaper thread object.
     ZObject getReaper()
     {
@@ -392,21 +572,32 @@ public class Ctx
     //  Affinity specifies which I/O threads are eligible (0 = all).
     //  Returns NULL if no I/O thread is available.
     IOThread chooseIoThread(long affinity)
+    {
+        return chooseIoThread(affinity, null);
+    }
+
+    //  Same as above, the given I/O thread excluded.
+    IOThread chooseIoThread(long affinity, IOThread excluded)
     {
         if (ioThreads.isEmpty()) {
             return null;
         }
 
-        //  Find the I/O thread with minimum load.
+        //  Find the I/O thread with minimum activity, then minimum load.
+        long minActivity = -1;
         int minLoad = -1;
         IOThread selectedIoThread = null;
 
         for (int i = 0; i != ioThreads.size(); i++) {
-            if (affinity == 0 || (affinity & (1L << i)) > 0) {
-                int load = ioThreads.get(i).getLoad();
-                if (selectedIoThread == null || load < minLoad) {
+            IOThread ioThread = ioThreads.get(i);
+            if (ioThread != excluded && (affinity == 0 || (affinity & (1L << i)) > 0)) {
+                long activity = (long) ioThread.getActivity();
+                int load = ioThread.getLoad();
+                if (selectedIoThread == null || activity < minActivity
+                        || (activity == minActivity && load < minLoad)) {
+                    minActivity = activity;
                     minLoad = load;
-                    selectedIoThread = ioThreads.get(i);
+                    selectedIoThread = ioThread;
                 }
             }
         }
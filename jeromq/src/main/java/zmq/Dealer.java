@@ -68,6 +68,20 @@ public class Dealer extends SocketBase
         lb.attach(pipe);
     }
 
+    @Override
+    public boolean xsetsockopt(int option, Object optval)
+    {
+        if (option == ZMQ.ZMQ_LB_STRATEGY) {
+            lb.setStrategy((Integer) optval);
+            return true;
+        }
+        if (option == ZMQ.ZMQ_FQ_QUANTUM) {
+            fq.setQuantum((Integer) optval);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     protected boolean xsend(Msg msg)
     {
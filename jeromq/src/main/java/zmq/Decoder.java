@@ -40,6 +40,7 @@ public class Decoder extends DecoderBase
     private static final int MESSAGE_READY = 3;
 
     private final byte[] tmpbuf;
+    private final ByteBuffer tmpview;
     private Msg inProgress;
     private final long maxmsgsize;
     private IMsgSink msgSink;
@@ -49,6 +50,7 @@ public class Decoder extends DecoderBase
         super(bufsize);
         this.maxmsgsize = maxmsgsize;
         tmpbuf = new byte[8];
+        tmpview = ByteBuffer.wrap(tmpbuf);
 
         //  At the beginning, read one byte and go to oneByteSizeReady state.
         nextStep(tmpbuf, 1, ONE_BYTE_SIZE_READY);
@@ -78,6 +80,44 @@ public class Decoder extends DecoderBase
         }
     }
 
+    @Override
+    protected int decodeFrames(ByteBuffer buf, int size)
+    {
+        //  Only applies at the beginning of a frame.
+        if (state() != ONE_BYTE_SIZE_READY || msgSink == null) {
+            return 0;
+        }
+
+        int start = buf.position();
+        int end = start + size;
+        int pos = start;
+        while (end - pos >= 2) {
+            int length = buf.get(pos) & 0xff;
+
+            //  Leave large, malformed, oversized and incomplete frames
+            //  to the state machine.
+            if (length == 0xff || length == 0 || end - pos < 1 + length
+                    || (maxmsgsize >= 0 && (long) (length - 1) > maxmsgsize)) {
+                break;
+            }
+
+            Msg msg = allocate(length - 1);
+            msg.setFlags(buf.get(pos + 1) & Msg.MORE);
+            buf.position(pos + 2);
+            readBody(buf, msg);
+            pos += 1 + length;
+
+            if (msgSink.pushMsg(msg) != 0) {
+                //  Let messageReady() retry once the sink has room.
+                inProgress = msg;
+                nextStep(tmpbuf, 0, MESSAGE_READY);
+                break;
+            }
+        }
+        buf.position(pos);
+        return pos - start;
+    }
+
     private boolean oneByteSizeReady()
     {
         //  First byte of size is read. If it is 0xff(-1 for java byte) read 8-byte size.
@@ -108,7 +148,7 @@ public class Decoder extends DecoderBase
 
             }
             else {
-                inProgress = new Msg(size - 1);
+                inProgress = allocate(size - 1);
             }
 
             nextStep(tmpbuf, 1, FLAGS_READY);
@@ -121,7 +161,7 @@ public class Decoder extends DecoderBase
     {
         //  8-byte payload length is read. Allocate the buffer
         //  for message body and read the message data into it.
-        final long payloadLength = ByteBuffer.wrap(tmpbuf).getLong();
+        final long payloadLength = tmpview.getLong(0);
 
         //  There has to be at least one byte (the flags) in the message).
         if (payloadLength <= 0) {
@@ -145,7 +185,7 @@ public class Decoder extends DecoderBase
         //  inProgress is initialized at this point so in theory we should
         //  close it before calling init_size, however, it's a 0-byte
         //  message and thus we can treat it as uninitialized...
-        inProgress = new Msg(msgSize);
+        inProgress = allocate(msgSize);
 
         nextStep(tmpbuf, 1, FLAGS_READY);
 
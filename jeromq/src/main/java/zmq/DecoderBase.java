@@ -36,29 +36,153 @@ public abstract class DecoderBase implements IDecoder
 {
     //  Where to store the read data.
     private byte[] readBuf;
+    private ByteBuffer readBuffer;
     private int readPos;
 
     //  How much data to read before taking next step.
     protected int toRead;
 
-    //  The buffer for data to decode.
+    //  The buffer for data to decode, allocated on first use.
     private int bufsize;
     private ByteBuffer buf;
 
+    //  Pool the buffer is leased from while it holds data, null to keep
+    //  it once allocated.
+    private BufferPool batchPool;
+
+    //  Bounds of the buffer size. The buffer is doubled, up to the
+    //  maximum, after a read fills it.
+    private final int minBufsize;
+    private int maxBufsize;
+
+    //  Set when a read fills the buffer, until it grows. Busy stays set
+    //  until the next call to shrink().
+    private boolean filled;
+    private boolean busy;
+
     private int state;
 
     boolean zeroCopy;
 
+    //  Pool to draw message bodies from, null to allocate them on the heap.
+    private BufferPool pool;
+
+    //  Frames of at least this size are read into direct buffers obtained
+    //  from directAllocator (or the pool). Negative to disable.
+    private int directThreshold;
+    private IMsgAllocator directAllocator;
+
     public DecoderBase(int bufsize)
     {
         state = -1;
         toRead = 0;
         this.bufsize = bufsize;
-        if (bufsize > 0) {
-            buf = ByteBuffer.allocateDirect(bufsize);
-        }
+        buf = null;
+        batchPool = null;
+        minBufsize = bufsize;
+        maxBufsize = bufsize;
+        filled = false;
+        busy = false;
         readBuf = null;
         zeroCopy = false;
+        pool = null;
+        directThreshold = -1;
+        directAllocator = null;
+    }
+
+    //  Set the size the buffer may grow to, from its initial size.
+    public void setMaxBufferSize(int max)
+    {
+        maxBufsize = Math.max(minBufsize, max);
+    }
+
+    public int bufferSize()
+    {
+        return bufsize;
+    }
+
+    //  True if the buffer is larger than initially.
+    public boolean isGrown()
+    {
+        return bufsize > minBufsize;
+    }
+
+    //  Shrinks the buffer back to its initial size unless a read filled
+    //  it since the previous call. The buffer must not hold unprocessed
+    //  data. Returns true if it's still larger than initially.
+    public boolean shrink()
+    {
+        if (!busy && isGrown()) {
+            bufsize = minBufsize;
+            freeBuffer();
+            filled = false;
+        }
+        busy = false;
+        return isGrown();
+    }
+
+    //  Set the pool the buffer is leased from.
+    public void setBatchPool(BufferPool pool)
+    {
+        batchPool = pool;
+    }
+
+    //  Gives the buffer back to the pool until the next read. The buffer
+    //  must not hold unprocessed data.
+    public void releaseBuffer()
+    {
+        if (leased()) {
+            freeBuffer();
+        }
+    }
+
+    //  Buffers larger than the pool retains are not leased from it, the
+    //  decoder keeps them while idle instead.
+    private boolean leased()
+    {
+        return batchPool != null && buf != null && buf.capacity() <= batchPool.maxSize();
+    }
+
+    private void freeBuffer()
+    {
+        if (buf != null) {
+            if (leased()) {
+                batchPool.release(buf);
+            }
+            buf = null;
+        }
+    }
+
+    //  Set the pool the bodies of decoded messages are allocated from.
+    public void setBufferPool(BufferPool pool)
+    {
+        this.pool = pool;
+    }
+
+    //  Set the size from which frames are read straight into direct buffers,
+    //  and where those come from (null for the pool or plain allocation).
+    public void setDirectAllocation(int threshold, IMsgAllocator allocator)
+    {
+        this.directThreshold = threshold;
+        this.directAllocator = allocator;
+    }
+
+    //  Creates the message the next frame body is going to be read into.
+    protected Msg allocate(int size)
+    {
+        if (directThreshold >= 0 && size >= directThreshold) {
+            if (directAllocator != null) {
+                return directAllocator.allocate(size);
+            }
+            if (pool != null) {
+                return pool.allocateDirect(size);
+            }
+            return new Msg(ByteBuffer.allocateDirect(size));
+        }
+        if (pool == null) {
+            return new Msg(size);
+        }
+        return pool.allocate(size);
     }
 
     //  Returns a buffer to be filled with binary data.
@@ -76,13 +200,36 @@ public abstract class DecoderBase implements IDecoder
         ByteBuffer b;
         if (toRead >= bufsize) {
             zeroCopy = true;
-            b = ByteBuffer.wrap(readBuf);
+            if (readBuffer != null) {
+                b = readBuffer.duplicate();
+                b.limit(readPos + toRead);
+            }
+            else {
+                b = ByteBuffer.wrap(readBuf, 0, readPos + toRead);
+            }
             b.position(readPos);
         }
         else {
             zeroCopy = false;
+            if (filled && bufsize < maxBufsize) {
+                //  The last read filled the buffer, there's likely more
+                //  to read than it can hold.
+                bufsize = Math.min(bufsize << 1, maxBufsize);
+                freeBuffer();
+                filled = false;
+            }
+            if (buf == null) {
+                if (batchPool != null && bufsize <= batchPool.maxSize()) {
+                    buf = batchPool.acquireDirect(bufsize);
+                }
+                else {
+                    buf = ByteBuffer.allocateDirect(bufsize);
+                }
+            }
+            //  Buffers from the pool may be larger than asked for.
             b = buf;
             b.clear();
+            b.limit(bufsize);
         }
         return b;
     }
@@ -116,6 +263,11 @@ public abstract class DecoderBase implements IDecoder
             return size;
         }
 
+        if (size > 0 && size == bufsize) {
+            filled = true;
+            busy = true;
+        }
+
         int pos = 0;
         while (true) {
             //  Try to get more space in the message to fill in.
@@ -135,24 +287,75 @@ public abstract class DecoderBase implements IDecoder
                 return pos;
             }
 
+            //  Let the derived class decode the frames that are already
+            //  complete in the buffer, without going through the steps.
+            int decoded = decodeFrames(buf, size - pos);
+            if (decoded > 0) {
+                pos += decoded;
+                continue;
+            }
+
             //  Copy the data from buffer to the message.
             int toCopy = Math.min(toRead, size - pos);
-            buf.get(readBuf, readPos, toCopy);
+            if (readBuffer != null) {
+                int limit = buf.limit();
+                buf.limit(buf.position() + toCopy);
+                readBuffer.position(readPos);
+                readBuffer.put(buf);
+                buf.limit(limit);
+            }
+            else {
+                buf.get(readBuf, readPos, toCopy);
+            }
             readPos += toCopy;
             pos += toCopy;
             toRead -= toCopy;
         }
     }
 
+    //  Called when size bytes of input are waiting at the position of buf.
+    //  Derived classes may decode complete frames straight from buf here,
+    //  advancing its position, and return the number of bytes consumed.
+    //  Whatever is left is handled by the step-by-step state machine.
+    protected int decodeFrames(ByteBuffer buf, int size)
+    {
+        return 0;
+    }
+
+    //  Copies the body of msg from buf, advancing its position.
+    protected static void readBody(ByteBuffer buf, Msg msg)
+    {
+        if (msg.hasArray()) {
+            buf.get(msg.array(), msg.offset(), msg.size());
+        }
+        else {
+            int limit = buf.limit();
+            buf.limit(buf.position() + msg.size());
+            msg.payload().put(buf);
+            buf.limit(limit);
+        }
+    }
+
     protected void nextStep(Msg msg, int state)
     {
-        nextStep(msg.data(), msg.size(), state);
+        if (!msg.hasArray()) {
+            nextStep((byte[]) null, 0, msg.size(), state);
+            readBuffer = msg.payload();
+            return;
+        }
+        nextStep(msg.array(), msg.offset(), msg.size(), state);
     }
 
     protected void nextStep(byte[] buf, int toRead, int state)
+    {
+        nextStep(buf, 0, toRead, state);
+    }
+
+    private void nextStep(byte[] buf, int pos, int toRead, int state)
     {
         readBuf = buf;
-        readPos = 0;
+        readBuffer = null;
+        readPos = pos;
         this.toRead = toRead;
         this.state = state;
     }
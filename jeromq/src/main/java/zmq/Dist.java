@@ -20,7 +20,6 @@
 package zmq;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 class Dist
@@ -47,6 +46,11 @@ class Dist
     //  True if last we are in the middle of a multipart message.
     private boolean more;
 
+    //  If set, messages going to at least fanoutThreshold pipes are
+    //  written by the I/O threads.
+    private Fanout fanout;
+    private int fanoutThreshold;
+
     public Dist()
     {
         matching = 0;
@@ -54,24 +58,48 @@ class Dist
         eligible = 0;
         more = false;
         pipes = new ArrayList<Pipe>();
+        fanout = null;
+        fanoutThreshold = 0;
+    }
+
+    //  Spreads the writes of large distributions over the I/O threads.
+    //  A null fanout makes the distributor write to all the pipes itself.
+    public void setFanout(Fanout fanout, int threshold)
+    {
+        quiesce();
+        this.fanout = fanout;
+        fanoutThreshold = threshold;
+    }
+
+    //  Swaps two pipes in the array, keeping their indices up to date.
+    private void swap(int i, int j)
+    {
+        if (i == j) {
+            return;
+        }
+        Pipe a = pipes.get(i);
+        Pipe b = pipes.get(j);
+        pipes.set(i, b);
+        pipes.set(j, a);
+        b.outIndex = i;
+        a.outIndex = j;
     }
 
     //  Adds the pipe to the distributor object.
     public void attach(Pipe pipe)
     {
+        pipe.outIndex = pipes.size();
+        pipes.add(pipe);
+
         //  If we are in the middle of sending a message, we'll add new pipe
         //  into the list of eligible pipes. Otherwise we add it to the list
         //  of active pipes.
         if (more) {
-            pipes.add(pipe);
-            //pipes.swap (eligible, pipes.size() - 1);
-            Collections.swap(pipes, eligible, pipes.size() - 1);
+            swap(eligible, pipes.size() - 1);
             eligible++;
         }
         else {
-            pipes.add(pipe);
-            //pipes.swap (active, pipes.size() - 1);
-            Collections.swap(pipes, active, pipes.size() - 1);
+            swap(active, pipes.size() - 1);
             active++;
             eligible++;
         }
@@ -81,7 +109,7 @@ class Dist
     //  will send message also to this pipe.
     public void match(Pipe pipe)
     {
-        int idx = pipes.indexOf(pipe);
+        int idx = pipe.outIndex;
         //  If pipe is already matching do nothing.
         if (idx < matching) {
             return;
@@ -93,7 +121,7 @@ class Dist
         }
 
         //  Mark the pipe as matching.
-        Collections.swap(pipes, idx, matching);
+        swap(idx, matching);
         matching++;
     }
 
@@ -108,32 +136,34 @@ class Dist
     {
         //  Remove the pipe from the list; adjust number of matching, active and/or
         //  eligible pipes accordingly.
-        if (pipes.indexOf(pipe) < matching) {
-            Collections.swap(pipes, pipes.indexOf(pipe), matching - 1);
+        if (pipe.outIndex < matching) {
+            swap(pipe.outIndex, matching - 1);
             matching--;
         }
-        if (pipes.indexOf(pipe) < active) {
-            Collections.swap(pipes, pipes.indexOf(pipe), active - 1);
+        if (pipe.outIndex < active) {
+            swap(pipe.outIndex, active - 1);
             active--;
         }
-        if (pipes.indexOf(pipe) < eligible) {
-            Collections.swap(pipes, pipes.indexOf(pipe), eligible - 1);
+        if (pipe.outIndex < eligible) {
+            swap(pipe.outIndex, eligible - 1);
             eligible--;
         }
-        pipes.remove(pipe);
+        swap(pipe.outIndex, pipes.size() - 1);
+        pipes.remove(pipes.size() - 1);
+        pipe.outIndex = -1;
     }
 
     //  Activates pipe that have previously reached high watermark.
     public void activated(Pipe pipe)
     {
         //  Move the pipe from passive to eligible state.
-        Collections.swap(pipes, pipes.indexOf(pipe), eligible);
+        swap(pipe.outIndex, eligible);
         eligible++;
 
         //  If there's no message being sent at the moment, move it to
         //  the active state.
         if (!more) {
-            Collections.swap(pipes, eligible - 1, active);
+            swap(eligible - 1, active);
             active++;
         }
     }
@@ -172,6 +202,18 @@ class Dist
             return;
         }
 
+        if (fanout != null) {
+            if (matching >= fanoutThreshold) {
+                deactivateFailed();
+                if (matching > 0) {
+                    fanout.distribute(pipes, matching, msg);
+                }
+                return;
+            }
+            //  The pipes may still be written to by the I/O threads.
+            quiesce();
+        }
+
         for (int i = 0; i < matching; ++i) {
             if (!write(pipes.get(i), msg)) {
                 --i; //  Retry last write because index will have been swapped
@@ -189,12 +231,7 @@ class Dist
     private boolean write(Pipe pipe, Msg msg)
     {
         if (!pipe.write(msg)) {
-            Collections.swap(pipes, pipes.indexOf(pipe), matching - 1);
-            matching--;
-            Collections.swap(pipes, pipes.indexOf(pipe), active - 1);
-            active--;
-            Collections.swap(pipes, active, eligible - 1);
-            eligible--;
+            deactivate(pipe);
             return false;
         }
         if (!msg.hasMore()) {
@@ -203,6 +240,45 @@ class Dist
         return true;
     }
 
+    //  Moves a pipe that reached its HWM out of the matching, active and
+    //  eligible pipes.
+    private void deactivate(Pipe pipe)
+    {
+        if (pipe.outIndex < 0 || pipe.outIndex >= eligible) {
+            //  Terminated, or reported by the I/O threads more than once.
+            return;
+        }
+        if (pipe.outIndex < matching) {
+            swap(pipe.outIndex, matching - 1);
+            matching--;
+        }
+        if (pipe.outIndex < active) {
+            swap(pipe.outIndex, active - 1);
+            active--;
+        }
+        swap(pipe.outIndex, eligible - 1);
+        eligible--;
+    }
+
+    //  Deactivates the pipes the I/O threads failed to write to so far.
+    private void deactivateFailed()
+    {
+        Pipe pipe;
+        while ((pipe = fanout.failed()) != null) {
+            deactivate(pipe);
+        }
+    }
+
+    //  Waits for the I/O threads to be done with the pipes. Must be called
+    //  before the pipes are used in any other way.
+    public void quiesce()
+    {
+        if (fanout != null) {
+            fanout.quiesce();
+            deactivateFailed();
+        }
+    }
+
     public boolean checkHwm()
     {
         for (int i = 0; i < matching; ++i) {
@@ -28,12 +28,14 @@ public class Encoder extends EncoderBase
 
     private Msg inProgress;
     private final byte[] tmpbuf;
+    private final ByteBuffer tmpview;
     private IMsgSource msgSource;
 
     public Encoder(int bufsize)
     {
         super(bufsize);
         tmpbuf = new byte[10];
+        tmpview = ByteBuffer.wrap(tmpbuf);
         //  Write 0 bytes to the batch and go to messageReady state.
         nextStep((byte[]) null, 0, MESSAGE_READY, true);
     }
@@ -60,7 +62,7 @@ public class Encoder extends EncoderBase
     private boolean sizeReady()
     {
         //  Write message body into the buffer.
-        nextStep(inProgress.data(), inProgress.size(),
+        nextStep(inProgress,
                 MESSAGE_READY, !inProgress.hasMore());
         return true;
     }
@@ -100,10 +102,9 @@ public class Encoder extends EncoderBase
             nextStep(tmpbuf, 2, SIZE_READY, false);
         }
         else {
-            ByteBuffer b = ByteBuffer.wrap(tmpbuf);
-            b.put((byte) 0xff);
-            b.putLong(size);
-            b.put((byte) (inProgress.flags() & Msg.MORE));
+            tmpview.put(0, (byte) 0xff);
+            tmpview.putLong(1, size);
+            tmpview.put(9, (byte) (inProgress.flags() & Msg.MORE));
             nextStep(tmpbuf, 10, SIZE_READY, false);
         }
 
@@ -19,14 +19,22 @@
 
 package zmq;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class EncoderBase implements IEncoder
 {
+    //  Maximum number of buffers handed to a single gathering write.
+    private static final int MAX_GATHER = 64;
+
     //  Where to get the data to write from.
     private byte[] writeBuf;
     private FileChannel writeChannel;
+    private long writeChannelPos;
+    private ByteBuffer writeBuffer;
     private int writePos;
 
     //  Next step. If set to -1, it means that associated data stream
@@ -40,18 +48,134 @@ public abstract class EncoderBase implements IEncoder
     //  How much data to write before next step should be executed.
     private int toWrite;
 
-    //  The buffer for encoded data.
+    //  The buffer for encoded data, allocated on first use.
     private ByteBuffer buffer;
 
+    //  Pool the buffer is leased from while it holds data, null to keep
+    //  it once allocated.
+    private BufferPool batchPool;
+
     private int bufferSize;
 
+    //  Bounds of the buffer size. The buffer is doubled, up to the
+    //  maximum, after a batch fills it.
+    private final int minBufferSize;
+    private int maxBufferSize;
+
+    //  Set when a batch fills the buffer, until it grows. Busy stays set
+    //  until the next call to shrink().
+    private boolean filled;
+    private boolean busy;
+
     private boolean error;
 
+    //  Direct payloads of at least this size are not copied into the
+    //  buffer but written from where they are, in a gathering write.
+    //  Negative to disable.
+    private int gatherThreshold;
+
+    //  Buffers of the gathering write being built, and the start of the
+    //  part of the batch buffer not queued yet.
+    private final List<ByteBuffer> gather;
+    private int gatherMark;
+
     protected EncoderBase(int bufferSize)
     {
         this.bufferSize = bufferSize;
-        buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer = null;
+        batchPool = null;
+        minBufferSize = bufferSize;
+        maxBufferSize = bufferSize;
+        filled = false;
+        busy = false;
         error = false;
+        gatherThreshold = -1;
+        gather = new ArrayList<ByteBuffer>();
+    }
+
+    //  Set the size the buffer may grow to, from its initial size.
+    public void setMaxBufferSize(int max)
+    {
+        maxBufferSize = Math.max(minBufferSize, max);
+    }
+
+    public int bufferSize()
+    {
+        return bufferSize;
+    }
+
+    //  True if the buffer is larger than initially.
+    public boolean isGrown()
+    {
+        return bufferSize > minBufferSize;
+    }
+
+    //  Shrinks the buffer back to its initial size unless a batch filled
+    //  it since the previous call. The data last returned by getData()
+    //  must have been written. Returns true if it's still larger than
+    //  initially.
+    public boolean shrink()
+    {
+        if (!busy && isGrown()) {
+            bufferSize = minBufferSize;
+            freeBuffer();
+            filled = false;
+        }
+        busy = false;
+        return isGrown();
+    }
+
+    //  Set the pool the buffer is leased from.
+    public void setBatchPool(BufferPool pool)
+    {
+        batchPool = pool;
+    }
+
+    //  Gives the buffer back to the pool until the next batch. The data
+    //  last returned by getData() must have been written.
+    public void releaseBuffer()
+    {
+        if (leased()) {
+            freeBuffer();
+        }
+    }
+
+    //  Closes the file of a region encoded but not handed out by getData()
+    //  yet. The encoder can't be used afterwards.
+    public void closeFile()
+    {
+        if (writeChannel != null) {
+            try {
+                writeChannel.close();
+            }
+            catch (IOException e) {
+            }
+            writeChannel = null;
+        }
+    }
+
+    //  Buffers larger than the pool retains are not leased from it, the
+    //  encoder keeps them while idle instead.
+    private boolean leased()
+    {
+        return batchPool != null && buffer != null && buffer.capacity() <= batchPool.maxSize();
+    }
+
+    private void freeBuffer()
+    {
+        if (buffer != null) {
+            if (leased()) {
+                batchPool.release(buffer);
+            }
+            buffer = null;
+        }
+    }
+
+    //  Set the payload size from which messages are sent without copying
+    //  them into the batch buffer.
+    public void setGatherThreshold(int threshold)
+    {
+        gatherThreshold = threshold;
     }
 
     //  The function returns a batch of binary data. The data
@@ -62,10 +186,29 @@ public abstract class EncoderBase implements IEncoder
     public Transfer getData(ByteBuffer buffer)
     {
         if (buffer == null) {
+            if (filled && bufferSize < maxBufferSize) {
+                //  The last batch filled the buffer, there's likely more
+                //  to send than it can hold.
+                bufferSize = Math.min(bufferSize << 1, maxBufferSize);
+                freeBuffer();
+                filled = false;
+            }
+            if (this.buffer == null) {
+                if (batchPool != null && bufferSize <= batchPool.maxSize()) {
+                    this.buffer = batchPool.acquireDirect(bufferSize);
+                }
+                else {
+                    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+                }
+            }
+            //  Buffers from the pool may be larger than asked for.
             buffer = this.buffer;
+            buffer.clear();
+            buffer.limit(bufferSize);
+        }
+        else {
+            buffer.clear();
         }
-
-        buffer.clear();
 
         while (buffer.hasRemaining()) {
             //  If there are no more data to return, run the state machine.
@@ -80,18 +223,59 @@ public abstract class EncoderBase implements IEncoder
                 }
             }
 
+            //  Direct payloads past the gathering threshold (or that do
+            //  not fit) are queued as they are, behind what is in the
+            //  buffer so far. Heap payloads are still copied: the channel
+            //  would copy them into a temporary direct buffer anyway.
+            if (gatherThreshold >= 0 && writeBuffer != null
+                    && (toWrite >= gatherThreshold || toWrite > buffer.remaining())) {
+                if (gather.size() + 2 > MAX_GATHER) {
+                    break;
+                }
+                gatherSegment(buffer);
+                gather.add(writeBuffer);
+                writeBuffer = null;
+                writePos = 0;
+                toWrite = 0;
+                continue;
+            }
+
+            //  Gathered buffers have to go out before anything else.
+            if (!gather.isEmpty() && (writeChannel != null || toWrite >= bufferSize)) {
+                break;
+            }
+
             //  If there is file channel to send,
             //  send current buffer and the channel together
 
             if (writeChannel != null) {
                 buffer.flip();
                 Transfer t = new Transfer.FileChannelTransfer(buffer, writeChannel,
-                                                    (long) writePos, (long) toWrite);
+                                                    writeChannelPos, (long) toWrite);
+                writeChannel = null;
                 writePos = 0;
                 toWrite = 0;
 
                 return t;
             }
+            //  Payloads held in direct buffers never go through the heap.
+            //  If they fit, they are appended to the batch; otherwise they
+            //  are sent together with the batch in a gathering write.
+            if (writeBuffer != null) {
+                if (toWrite > buffer.remaining()) {
+                    buffer.flip();
+                    Transfer t = new Transfer.GatheringTransfer(buffer, writeBuffer);
+                    writeBuffer = null;
+                    toWrite = 0;
+
+                    return t;
+                }
+                buffer.put(writeBuffer);
+                writeBuffer = null;
+                toWrite = 0;
+                continue;
+            }
+
             //  If there are no data in the buffer yet and we are able to
             //  fill whole buffer in a single go, let's use zero-copy.
             //  There's no disadvantage to it as we cannot stuck multiple
@@ -102,9 +286,9 @@ public abstract class EncoderBase implements IEncoder
             //  As a consequence, large messages being sent won't block
             //  other engines running in the same I/O thread for excessive
             //  amounts of time.
-            if (this.buffer.position() == 0 && toWrite >= bufferSize) {
+            if (buffer.position() == 0 && toWrite >= bufferSize) {
                 Transfer t;
-                ByteBuffer b = ByteBuffer.wrap(writeBuf);
+                ByteBuffer b = ByteBuffer.wrap(writeBuf, 0, writePos + toWrite);
                 b.position(writePos);
                 t = new Transfer.ByteBufferTransfer(b);
                 writePos = 0;
@@ -122,10 +306,37 @@ public abstract class EncoderBase implements IEncoder
             }
         }
 
+        if (buffer == this.buffer && !buffer.hasRemaining()) {
+            filled = true;
+            busy = true;
+        }
+
+        if (!gather.isEmpty()) {
+            gatherSegment(buffer);
+            Transfer t = new Transfer.GatheringTransfer(gather.toArray(new ByteBuffer[gather.size()]));
+            gather.clear();
+            gatherMark = 0;
+            buffer.flip();
+
+            return t;
+        }
+
         buffer.flip();
         return new Transfer.ByteBufferTransfer(buffer);
     }
 
+    //  Queues the part of the buffer written since the previous segment.
+    private void gatherSegment(ByteBuffer buffer)
+    {
+        if (buffer.position() > gatherMark) {
+            ByteBuffer segment = buffer.duplicate();
+            segment.flip();
+            segment.position(gatherMark);
+            gather.add(segment);
+            gatherMark = buffer.position();
+        }
+    }
+
     @Override
     public boolean hasData()
     {
@@ -156,20 +367,55 @@ public abstract class EncoderBase implements IEncoder
 
     protected void nextStep(Msg msg, int state, boolean beginning)
     {
+        if (msg != null && msg.isFile() && nextFileStep(msg, state, beginning)) {
+            return;
+        }
         if (msg == null) {
             nextStep(null, 0, state, beginning);
         }
+        else if (!msg.hasArray()) {
+            nextDirectStep(msg.payload(), state, beginning);
+        }
         else {
-            nextStep(msg.data(), msg.size(), state, beginning);
+            nextStep(msg.array(), msg.offset(), msg.size(), state, beginning);
+        }
+    }
+
+    //  File regions are sent from the file. Returns false if another
+    //  thread sharing the message has read the payload in meanwhile.
+    private boolean nextFileStep(Msg msg, int state, boolean beginning)
+    {
+        FileChannel channel;
+        try {
+            channel = msg.openFile();
+        }
+        catch (IOException e) {
+            //  The header has been encoded already, the stream can't
+            //  go on.
+            encodingError();
+            nextStep((byte[]) null, 0, -1, false);
+            return true;
         }
+        if (channel == null) {
+            return false;
+        }
+        nextStep(channel, msg.fileOffset(), msg.size(), state, beginning);
+        return true;
     }
 
     protected void nextStep(byte[] buf, int toWrite,
                             int next, boolean beginning)
+    {
+        nextStep(buf, 0, toWrite, next, beginning);
+    }
+
+    private void nextStep(byte[] buf, int pos, int toWrite,
+                          int next, boolean beginning)
     {
         writeBuf = buf;
         writeChannel = null;
-        writePos = 0;
+        writeBuffer = null;
+        writePos = pos;
         this.toWrite = toWrite;
         this.next = next;
         this.beginning = beginning;
@@ -180,9 +426,22 @@ public abstract class EncoderBase implements IEncoder
     {
         writeBuf = null;
         writeChannel = ch;
-        writePos = (int) pos;
+        writeChannelPos = pos;
+        writeBuffer = null;
+        writePos = 0;
         this.toWrite = (int) toWrite;
         this.next = next;
         this.beginning = beginning;
     }
+
+    protected void nextDirectStep(ByteBuffer buf, int next, boolean beginning)
+    {
+        writeBuf = null;
+        writeChannel = null;
+        writeBuffer = buf;
+        writePos = 0;
+        this.toWrite = buf.remaining();
+        this.next = next;
+        this.beginning = beginning;
+    }
 }
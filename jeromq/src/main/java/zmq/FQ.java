@@ -20,65 +20,156 @@
 package zmq;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 //  Class manages a set of inbound pipes. On receive it performs fair
 //  queueing so that senders gone berserk won't cause denial of
 //  service for decent senders.
+//
+//  Pipes of higher priority are always read first. Pipes of the same
+//  priority are served in turn, one message each, or with a quantum set,
+//  by deficit round robin: each turn a pipe may deliver quantum bytes
+//  times its weight, so that large messages don't buy a sender a bigger
+//  share of the socket.
 class FQ
 {
-    //  Inbound pipes.
-    private final List<Pipe> pipes;
+    //  Inbound pipes of one priority.
+    private static final class Band
+    {
+        private final int priority;
+
+        //  Inbound pipes.
+        private final List<Pipe> pipes;
+
+        //  Number of active pipes. All the active pipes are located at the
+        //  beginning of the pipes array.
+        private int active;
+
+        //  Index of the next bound pipe to read a message from.
+        private int current;
+
+        private Band(int priority)
+        {
+            this.priority = priority;
+            pipes = new ArrayList<Pipe>();
+            active = 0;
+            current = 0;
+        }
+
+        private void swap(int i, int j)
+        {
+            if (i == j) {
+                return;
+            }
+            Pipe a = pipes.get(i);
+            Pipe b = pipes.get(j);
+            pipes.set(i, b);
+            pipes.set(j, a);
+            b.inIndex = i;
+            a.inIndex = j;
+        }
 
-    //  Number of active pipes. All the active pipes are located at the
-    //  beginning of the pipes array.
-    private int active;
+        private void deactivate(int index)
+        {
+            //  An idle pipe forfeits what it had left of its turn, but
+            //  still owes its debt.
+            Pipe pipe = pipes.get(index);
+            pipe.deficit = Math.min(pipe.deficit, 0);
+            active--;
+            swap(index, active);
+            if (current == active) {
+                current = 0;
+            }
+        }
+
+        private void next()
+        {
+            current = (current + 1) % active;
+        }
+    }
 
-    //  Index of the next bound pipe to read a message from.
-    private int current;
+    //  Bands by decreasing priority.
+    private final List<Band> bands;
 
     //  If true, part of a multipart message was already received, but
     //  there are following parts still waiting in the current pipe.
     private boolean more;
 
+    //  Band the message being received comes from.
+    private Band band;
+
+    //  Bytes per turn of a pipe of weight 1, 0 to take one message per
+    //  turn.
+    private int quantum;
+
     public FQ()
     {
-        active = 0;
-        current = 0;
         more = false;
+        band = null;
+        quantum = 0;
 
-        pipes = new ArrayList<Pipe>();
+        bands = new ArrayList<Band>(1);
+    }
+
+    public void setQuantum(int quantum)
+    {
+        if (quantum < 0) {
+            throw new IllegalArgumentException("quantum " + quantum);
+        }
+        this.quantum = quantum;
+    }
+
+    public int getQuantum()
+    {
+        return quantum;
+    }
+
+    //  Returns the band of the given priority, creating it if needed.
+    private Band band(int priority)
+    {
+        int i = 0;
+        while (i < bands.size() && bands.get(i).priority > priority) {
+            i++;
+        }
+        if (i < bands.size() && bands.get(i).priority == priority) {
+            return bands.get(i);
+        }
+        Band created = new Band(priority);
+        bands.add(i, created);
+        return created;
     }
 
     public void attach(Pipe pipe)
     {
-        pipes.add(pipe);
-        Collections.swap(pipes, active, pipes.size() - 1);
-        active++;
+        Band b = band(pipe.getPriority());
+        pipe.inIndex = b.pipes.size();
+        pipe.deficit = 0;
+        b.pipes.add(pipe);
+        b.swap(b.active, b.pipes.size() - 1);
+        b.active++;
     }
 
     public void terminated(Pipe pipe)
     {
-        final int index = pipes.indexOf(pipe);
+        Band b = band(pipe.getPriority());
+        final int index = pipe.inIndex;
 
         //  Remove the pipe from the list; adjust number of active pipes
         //  accordingly.
-        if (index < active) {
-            active--;
-            Collections.swap(pipes, index, active);
-            if (current == active) {
-                current = 0;
-            }
+        if (index < b.active) {
+            b.deactivate(index);
         }
-        pipes.remove(pipe);
+        b.swap(pipe.inIndex, b.pipes.size() - 1);
+        b.pipes.remove(b.pipes.size() - 1);
+        pipe.inIndex = -1;
     }
 
     public void activated(Pipe pipe)
     {
         //  Move the pipe to the list of active pipes.
-        Collections.swap(pipes, pipes.indexOf(pipe), active);
-        active++;
+        Band b = band(pipe.getPriority());
+        b.swap(pipe.inIndex, b.active);
+        b.active++;
     }
 
     public Msg recv(ValueReference<Integer> errno)
@@ -87,12 +178,48 @@ class FQ
     }
 
     public Msg recvPipe(ValueReference<Integer> errno, ValueReference<Pipe> pipe)
+    {
+        //  The remaining parts of a message come from the same pipe.
+        if (more) {
+            Msg msg = recvPipe(band, pipe);
+            if (msg != null) {
+                return msg;
+            }
+        }
+        else {
+            for (int i = 0; i != bands.size(); i++) {
+                Msg msg = recvPipe(bands.get(i), pipe);
+                if (msg != null) {
+                    return msg;
+                }
+            }
+        }
+
+        //  No message is available. Initialise the output parameter
+        //  to be a 0-byte message.
+        errno.set(ZError.EAGAIN);
+        return null;
+    }
+
+    private Msg recvPipe(Band b, ValueReference<Pipe> pipe)
     {
         //  Round-robin over the pipes to get the next message.
-        while (active > 0) {
+        while (b.active > 0) {
+            Pipe current = b.pipes.get(b.current);
+
+            //  A pipe starting its turn gets its quantum. It may still be
+            //  in debt from a large message, and has to sit the turn out.
+            if (quantum > 0 && !more && current.deficit <= 0) {
+                current.deficit += (long) quantum * current.getInWeight();
+                if (current.deficit <= 0) {
+                    b.next();
+                    continue;
+                }
+            }
+
             //  Try to fetch new message. If we've already read part of the message
             //  subsequent part should be immediately available.
-            Msg msg = pipes.get(current).read();
+            Msg msg = current.read();
             boolean fetched = msg != null;
 
             //  Note that when message is not fetched, current pipe is deactivated
@@ -100,11 +227,17 @@ class FQ
             //  the 'current' pointer.
             if (fetched) {
                 if (pipe != null) {
-                    pipe.set(pipes.get(current));
+                    pipe.set(current);
                 }
                 more = msg.hasMore();
-                if (!more) {
-                    current = (current + 1) % active;
+                band = b;
+                if (quantum > 0) {
+                    current.deficit -= msg.size();
+                }
+                //  The turn ends with the message, or with the message that
+                //  used up the quantum.
+                if (!more && (quantum == 0 || current.deficit <= 0)) {
+                    b.next();
                 }
                 return msg;
             }
@@ -114,16 +247,8 @@ class FQ
             //  we should get the remaining parts without blocking.
             assert (!more);
 
-            active--;
-            Collections.swap(pipes, current, active);
-            if (current == active) {
-                current = 0;
-            }
+            b.deactivate(b.current);
         }
-
-        //  No message is available. Initialise the output parameter
-        //  to be a 0-byte message.
-        errno.set(ZError.EAGAIN);
         return null;
     }
 
@@ -138,16 +263,15 @@ class FQ
         //  queueing algorithm. If there are no messages available current will
         //  get back to its original value. Otherwise it'll point to the first
         //  pipe holding messages, skipping only pipes with no messages available.
-        while (active > 0) {
-            if (pipes.get(current).checkRead()) {
-                return true;
-            }
+        for (int i = 0; i != bands.size(); i++) {
+            Band b = bands.get(i);
+            while (b.active > 0) {
+                if (b.pipes.get(b.current).checkRead()) {
+                    return true;
+                }
 
-            //  Deactivate the pipe.
-            active--;
-            Collections.swap(pipes, current, active);
-            if (current == active) {
-                current = 0;
+                //  Deactivate the pipe.
+                b.deactivate(b.current);
             }
         }
 
@@ -0,0 +1,213 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//  Spreads the distribution of messages over the I/O threads of the
+//  context. Outbound pipes are partitioned by the I/O thread their peer
+//  lives in; pipes to inproc peers are spread by the peer's thread id.
+//  The publishing thread hands each I/O thread the pipes of its partition
+//  and returns straight away; as a pipe always falls in the same
+//  partition, it is written by a single thread, in order.
+//
+//  The pipes stay owned by the publishing socket though, so before it
+//  touches them otherwise (processing commands, writing to them itself,
+//  closing) it has to wait for the writes in flight with quiesce().
+class Fanout
+{
+    //  Number of times the publisher checks for completion before parking.
+    private static final int SPIN_COUNT = 1000;
+
+    //  Number of tasks per I/O thread the publisher may get ahead by. The
+    //  HWM of the pipes is only checked once a task runs, so this bounds
+    //  the messages queued in the command mailboxes.
+    private static final int MAX_PENDING = 256;
+
+    //  Work item handed to a single I/O thread: a message part and the
+    //  pipes of the partition to write it into.
+    static final class Task
+    {
+        private final Fanout fanout;
+        private final Pipe[] pipes;
+        private final Msg msg;
+        private final boolean more;
+
+        private Task(Fanout fanout, Pipe[] pipes, Msg msg, boolean more)
+        {
+            this.fanout = fanout;
+            this.pipes = pipes;
+            this.msg = msg;
+            this.more = more;
+        }
+
+        void run()
+        {
+            try {
+                fanout.write(this);
+            }
+            finally {
+                fanout.done();
+            }
+        }
+    }
+
+    private final Ctx ctx;
+    private final IOThread[] threads;
+
+    //  Number of pipes of each partition in the current distribution.
+    private final int[] counts;
+
+    //  Number of tasks not run yet.
+    private final AtomicInteger pending;
+
+    //  Publishing thread waiting for the tasks, if any.
+    private volatile Thread waiter;
+
+    //  Pipes that reached their HWM, to be deactivated by the publisher.
+    //  A pipe that failed stays inactive until the publisher processes its
+    //  activation, which it only does once quiesced, so later parts of the
+    //  same message can't slip in.
+    private final Queue<Pipe> failed;
+
+    public Fanout(Ctx ctx)
+    {
+        this.ctx = ctx;
+        threads = ctx.getIoThreads().toArray(new IOThread[0]);
+        counts = new int[threads.length];
+        pending = new AtomicInteger(0);
+        failed = new ConcurrentLinkedQueue<Pipe>();
+    }
+
+    //  Number of partitions the pipes are spread over, 0 if the context
+    //  has no I/O threads.
+    public int partitions()
+    {
+        return threads.length;
+    }
+
+    //  Hands the message to the I/O threads for writing into the first
+    //  matching pipes, without waiting for them.
+    public void distribute(List<Pipe> pipes, int matching, Msg msg)
+    {
+        assert (threads.length > 0);
+
+        await(threads.length * MAX_PENDING);
+
+        for (int i = 0; i != matching; i++) {
+            counts[partition(pipes.get(i))]++;
+        }
+        Pipe[][] partitions = new Pipe[threads.length][];
+        for (int i = 0; i != threads.length; i++) {
+            if (counts[i] > 0) {
+                partitions[i] = new Pipe[counts[i]];
+                counts[i] = 0;
+            }
+        }
+        for (int i = 0; i != matching; i++) {
+            Pipe pipe = pipes.get(i);
+            int partition = partition(pipe);
+            partitions[partition][counts[partition]++] = pipe;
+        }
+
+        boolean more = msg.hasMore();
+        for (int i = 0; i != threads.length; i++) {
+            if (partitions[i] == null) {
+                continue;
+            }
+            counts[i] = 0;
+            pending.incrementAndGet();
+            IOThread thread = threads[i];
+            ctx.sendCommand(thread.getTid(), new Command(thread, Command.Type.FANOUT,
+                    new Task(this, partitions[i], msg, more)));
+        }
+    }
+
+    //  Returns a pipe the I/O threads failed to write to, or null.
+    public Pipe failed()
+    {
+        return failed.poll();
+    }
+
+    //  Waits until all the messages handed to the I/O threads have been
+    //  written.
+    public void quiesce()
+    {
+        await(1);
+    }
+
+    //  Waits until fewer than limit tasks are pending.
+    private void await(int limit)
+    {
+        if (pending.get() < limit) {
+            return;
+        }
+        waiter = Thread.currentThread();
+        try {
+            int spins = 0;
+            while (pending.get() >= limit) {
+                if (spins < SPIN_COUNT) {
+                    spins++;
+                }
+                else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+        finally {
+            waiter = null;
+        }
+    }
+
+    private void write(Task task)
+    {
+        for (Pipe pipe : task.pipes) {
+            if (!pipe.write(task.msg)) {
+                failed.add(pipe);
+            }
+            else if (!task.more) {
+                pipe.flush();
+            }
+        }
+    }
+
+    private void done()
+    {
+        pending.decrementAndGet();
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    //  I/O threads occupy thread ids 2 to 2 + partitions - 1.
+    private int partition(Pipe pipe)
+    {
+        int tid = pipe.peerTid() - 2;
+        if (tid >= 0 && tid < threads.length) {
+            return tid;
+        }
+        return (pipe.peerTid() & 0x7fffffff) % threads.length;
+    }
+}
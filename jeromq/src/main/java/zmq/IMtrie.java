@@ -0,0 +1,43 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Subscription table of an XPub socket, mapping topic prefixes to the
+//  pipes subscribed to them.
+public interface IMtrie
+{
+    //  Add key to the trie. Returns true if it's a new subscription
+    //  rather than a duplicate.
+    boolean add(byte[] prefix, Pipe pipe);
+
+    boolean add(byte[] prefix, int start, Pipe pipe);
+
+    //  Remove all subscriptions for a specific peer from the trie.
+    //  If there are no subscriptions left on some topics, invoke the
+    //  supplied callback function.
+    boolean rm(Pipe pipe, Mtrie.IMtrieHandler func, Object arg, boolean callOnUniq);
+
+    //  Remove specific subscription from the trie. Return true is it was
+    //  actually removed rather than de-duplicated.
+    boolean rm(byte[] prefix, int start, Pipe pipe);
+
+    //  Signal all the matching pipes.
+    void match(byte[] data, int size, Mtrie.IMtrieHandler func, Object arg);
+}
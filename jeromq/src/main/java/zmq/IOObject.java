@@ -20,6 +20,8 @@
 package zmq;
 
 import java.nio.channels.SelectableChannel;
+import java.util.HashMap;
+import java.util.Map;
 
 //  Simple base class for objects that live in I/O threads.
 //  It makes communication with the poller object easier and
@@ -30,6 +32,9 @@ public class IOObject implements IPollEvents
     private Poller poller;
     private IPollEvents handler;
 
+    //  Handles of the pending timers, by ID.
+    private Map<Integer, PollerBase.Timer> timers;
+
     public IOObject(IOThread ioThread)
     {
         if (ioThread != null) {
@@ -126,12 +131,22 @@ public class IOObject implements IPollEvents
     @Override
     public final void timerEvent(int id)
     {
+        timers.remove(id);
         handler.timerEvent(id);
     }
 
     public final void addTimer(long timeout, int id)
     {
-        poller.addTimer(timeout, this, id);
+        if (timers == null) {
+            timers = new HashMap<Integer, PollerBase.Timer>();
+        }
+        timers.put(id, poller.addTimer(timeout, this, id));
+    }
+
+    //  Accounts the bytes transferred to the load of the I/O thread.
+    public final void countBytes(int count)
+    {
+        poller.countBytes(count);
     }
 
     public final void setHandler(IPollEvents handler)
@@ -141,6 +156,10 @@ public class IOObject implements IPollEvents
 
     public void cancelTimer(int id)
     {
-        poller.cancelTimer(this, id);
+        PollerBase.Timer timer = timers == null ? null : timers.remove(id);
+        assert (timer != null);
+        if (timer != null) {
+            poller.cancelTimer(timer);
+        }
     }
 }
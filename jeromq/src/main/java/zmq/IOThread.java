@@ -22,6 +22,8 @@ package zmq;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 public class IOThread extends ZObject implements IPollEvents, Closeable
 {
@@ -36,16 +38,41 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
 
     final String name;
 
+    private static final int REBALANCE_TIMER_ID = 0x40;
+
+    //  Imbalance of activity with the other I/O threads, in percent,
+    //  above which a session is moved away (0 = never).
+    private final int rebalance;
+
+    //  Sessions created in this thread and still running in it.
+    private final List<SessionBase> sessions;
+
+    //  Time of the last rebalancing.
+    private long rebalanced;
+
     public IOThread(Ctx ctx, int tid)
     {
         super(ctx, tid);
         name = "iothread-" + tid;
-        poller = new Poller(name);
+        poller = new Poller(name, ctx.get(ZMQ.ZMQ_TIMER_WHEEL) != 0);
 
         mailbox = new Mailbox(name);
         mailboxHandle = mailbox.getFd();
         poller.addHandle(mailboxHandle, this);
         poller.setPollIn(mailboxHandle);
+
+        int spin = ctx.get(ZMQ.ZMQ_IO_BUSY_POLL);
+        int yield = ctx.get(ZMQ.ZMQ_IO_BUSY_YIELD);
+        if (spin + yield > 0) {
+            poller.setBusyPoll(spin * 1000L, yield * 1000L, mailbox, this);
+        }
+
+        sessions = new ArrayList<SessionBase>();
+        rebalance = ctx.get(ZMQ.ZMQ_IO_REBALANCE);
+        if (rebalance > 0 && ctx.get(ZMQ.ZMQ_IO_THREADS) > 1) {
+            rebalanced = Clock.nowMS();
+            poller.addTimer(Config.IO_REBALANCE_IVL.getValue(), this, REBALANCE_TIMER_ID);
+        }
     }
 
     public void start()
@@ -75,6 +102,22 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
         return poller.getLoad();
     }
 
+    public double getActivity()
+    {
+        return poller.getActivity();
+    }
+
+    //  Sessions are registered and unregistered from within the thread.
+    void register(SessionBase session)
+    {
+        sessions.add(session);
+    }
+
+    void unregister(SessionBase session)
+    {
+        sessions.remove(session);
+    }
+
     @Override
     public void inEvent()
     {
@@ -88,9 +131,18 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
                 break;
             }
 
+            //  Forward the commands for the objects moved to another
+            //  I/O thread. Those sent from any given thread stay in order.
+            ZObject destination = cmd.destination();
+            IOThread host = destination.host();
+            if (host != null && host != this) {
+                host.getMailbox().send(cmd);
+                continue;
+            }
+
             //  Process the command.
 
-            cmd.destination().processCommand(cmd);
+            destination.processCommand(cmd);
         }
     }
 
@@ -115,7 +167,54 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
     @Override
     public void timerEvent(int id)
     {
-        throw new UnsupportedOperationException();
+        assert (id == REBALANCE_TIMER_ID);
+        rebalance();
+        poller.addTimer(Config.IO_REBALANCE_IVL.getValue(), this, REBALANCE_TIMER_ID);
+    }
+
+    //  Moves one session to a less active I/O thread if the activity of
+    //  this one exceeds it by more than the threshold. The session whose
+    //  activity is the closest to half the difference is picked, so that
+    //  sessions do not bounce between the threads.
+    private void rebalance()
+    {
+        long now = Clock.nowMS();
+        long elapsed = now - rebalanced;
+        rebalanced = now;
+        if (elapsed <= 0) {
+            return;
+        }
+
+        double activity = getActivity();
+        SessionBase selected = null;
+        IOThread target = null;
+        double distance = 0;
+
+        for (SessionBase session : sessions) {
+            //  Activity of the session since the last rebalancing.
+            double rate = session.takeActivity() * 1000.0 / elapsed;
+            if (rate <= 0 || !session.isMigratable()) {
+                continue;
+            }
+            IOThread ioThread = getCtx().chooseIoThread(session.getAffinity(), this);
+            if (ioThread == null) {
+                continue;
+            }
+            double gap = activity - ioThread.getActivity();
+            if (gap * 100 <= activity * rebalance || rate >= gap) {
+                continue;
+            }
+            double d = Math.abs(rate - gap / 2);
+            if (selected == null || d < distance) {
+                selected = session;
+                target = ioThread;
+                distance = d;
+            }
+        }
+
+        if (selected != null) {
+            selected.migrate(target);
+        }
     }
 
     public Poller getPoller()
@@ -130,4 +229,10 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
 
         poller.stop();
     }
+
+    @Override
+    protected void processFanout(Fanout.Task task)
+    {
+        task.run();
+    }
 }
@@ -0,0 +1,42 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package zmq;
+
+//  Subscriptions of an XSub socket, see Trie.
+public interface ITrie
+{
+    //  Add key to the trie. Returns true if this is a new item in the trie
+    //  rather than a duplicate.
+    boolean add(byte[] prefix);
+
+    boolean add(byte[] prefix, int start);
+
+    //  Remove key from the trie. Returns true if the item is actually
+    //  removed from the trie.
+    boolean rm(byte[] prefix, int start);
+
+    //  Check whether particular key is in the trie.
+    boolean check(byte[] data);
+
+    //  Check whether size bytes of data starting at offset match a subscription.
+    boolean check(byte[] data, int offset, int size);
+
+    //  Apply the function supplied to each subscription in the trie.
+    void apply(Trie.ITrieHandler func, Object arg);
+}
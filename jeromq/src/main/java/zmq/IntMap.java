@@ -0,0 +1,156 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Hash table keyed by primitive ints, using open addressing with linear
+//  probing. Spares the boxing and the per-entry objects of a HashMap on
+//  hot lookup paths. Null values are not supported.
+public class IntMap<V>
+{
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntMap()
+    {
+        keys = new int[16];
+        values = new Object[16];
+        size = 0;
+        mask = 15;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return find(key) >= 0;
+    }
+
+    //  Returns the value previously associated with the key, if any.
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        assert (value != null);
+        int slot = find(key);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key)
+    {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) values[slot];
+        delete(slot);
+        return value;
+    }
+
+    //  Returns the slot holding the key, or -(free slot) - 1 if the key
+    //  is not in the table.
+    private int find(int key)
+    {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    //  Frees the slot and moves back the entries that would otherwise
+    //  become unreachable, so that no tombstones are needed.
+    private void delete(int slot)
+    {
+        values[slot] = null;
+        size--;
+
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null) {
+                return;
+            }
+            int home = hash(keys[next]) & mask;
+            boolean reachable = slot <= next ? (slot < home && home <= next)
+                    : (slot < home || home <= next);
+            if (!reachable) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                values[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i != oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    //  Generated peer IDs are consecutive, scatter them with a Fibonacci
+    //  multiplier and fold the high bits in.
+    private static int hash(int key)
+    {
+        int hash = key * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -19,15 +19,80 @@
 
 package zmq;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
+//  Unix domain socket address where the runtime supports them (Java 16 and
+//  later), otherwise a loopback TCP port derived from the name. The Unix
+//  domain API, as well as the NIO.2 methods it needs, are reached through
+//  reflection so that the code still builds and runs on Android.
 public class IpcAddress implements Address.IZAddress
 {
+    private static final Object UNIX;
+    private static final Method UNIX_ADDRESS;
+    private static final Method OPEN_CHANNEL;
+    private static final Method OPEN_SERVER_CHANNEL;
+    private static final Method BIND;
+
+    static
+    {
+        Object family = null;
+        Method address = null;
+        Method openChannel = null;
+        Method openServerChannel = null;
+        Method bind = null;
+        try {
+            Class<?> families = Class.forName("java.net.StandardProtocolFamily");
+            for (Object constant : families.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equals("UNIX")) {
+                    family = constant;
+                }
+            }
+            Class<?> protocolFamily = Class.forName("java.net.ProtocolFamily");
+            address = Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class);
+            openChannel = SocketChannel.class.getMethod("open", protocolFamily);
+            openServerChannel = ServerSocketChannel.class.getMethod("open", protocolFamily);
+            bind = ServerSocketChannel.class.getMethod("bind", SocketAddress.class, int.class);
+        }
+        catch (ClassNotFoundException e) {
+            family = null;
+        }
+        catch (NoSuchMethodException e) {
+            family = null;
+        }
+        if (family == null) {
+            UNIX = null;
+            UNIX_ADDRESS = null;
+            OPEN_CHANNEL = null;
+            OPEN_SERVER_CHANNEL = null;
+            BIND = null;
+        }
+        else {
+            UNIX = family;
+            UNIX_ADDRESS = address;
+            OPEN_CHANNEL = openChannel;
+            OPEN_SERVER_CHANNEL = openServerChannel;
+            BIND = bind;
+        }
+    }
+
     private String name;
-    private InetSocketAddress address;
+    private SocketAddress address;
+
+    //  True if ipc:// endpoints are Unix domain sockets rather than
+    //  emulated over TCP.
+    public static boolean isUnixSupported()
+    {
+        return UNIX != null;
+    }
 
     @Override
     public String toString()
@@ -44,6 +109,16 @@ public class IpcAddress implements Address.IZAddress
     {
         this.name = name;
 
+        if (isUnixSupported()) {
+            try {
+                address = (SocketAddress) invoke(UNIX_ADDRESS, null, name);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+            return;
+        }
+
         int hash = name.hashCode();
         if (hash < 0) {
             hash = -hash;
@@ -64,4 +139,80 @@ public class IpcAddress implements Address.IZAddress
     {
         return address;
     }
+
+    public String name()
+    {
+        return name;
+    }
+
+    //  True if the address is a Unix domain socket one.
+    public boolean isUnix()
+    {
+        return address != null && !(address instanceof InetSocketAddress);
+    }
+
+    static SocketChannel openChannel() throws IOException
+    {
+        return (SocketChannel) invoke(OPEN_CHANNEL, null, UNIX);
+    }
+
+    //  Returns a non-blocking server socket bound to the address.
+    static ServerSocketChannel openServerChannel(SocketAddress address, int backlog)
+            throws IOException
+    {
+        ServerSocketChannel handle = (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, null, UNIX);
+        try {
+            handle.configureBlocking(false);
+            invoke(BIND, handle, address, backlog);
+        }
+        catch (IOException e) {
+            handle.close();
+            throw e;
+        }
+        return handle;
+    }
+
+    //  Sets one of the StandardSocketOptions on a channel without socket
+    //  adaptor, such as a Unix domain one.
+    static void setOption(SocketChannel channel, String name, Object value) throws IOException
+    {
+        try {
+            Class<?> option = Class.forName("java.net.SocketOption");
+            Object constant = Class.forName("java.net.StandardSocketOptions").getField(name).get(null);
+            invoke(SocketChannel.class.getMethod("setOption", option, Object.class), channel,
+                    constant, value);
+        }
+        catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException(e);
+        }
+        catch (NoSuchFieldException e) {
+            throw new UnsupportedOperationException(e);
+        }
+        catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(e);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object ... args) throws IOException
+    {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
 }
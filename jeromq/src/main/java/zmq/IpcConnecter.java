@@ -19,12 +19,40 @@
 
 package zmq;
 
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+
+//  Connects to a Unix domain socket, or to the loopback TCP port faking
+//  it if the runtime has no Unix domain sockets.
 public class IpcConnecter extends TcpConnecter
 {
+    private final boolean unix;
+
     public IpcConnecter(IOThread ioThread,
             SessionBase session, final Options options,
             final Address addr, boolean wait)
     {
         super(ioThread, session, options, addr, wait);
+
+        unix = IpcAddress.isUnixSupported();
+    }
+
+    @Override
+    protected SocketChannel openChannel() throws IOException
+    {
+        if (unix) {
+            return IpcAddress.openChannel();
+        }
+        return super.openChannel();
+    }
+
+    @Override
+    protected void tune(SocketChannel fd) throws SocketException
+    {
+        //  There are no TCP options to set on Unix domain sockets.
+        if (!unix) {
+            super.tune(fd);
+        }
     }
 }
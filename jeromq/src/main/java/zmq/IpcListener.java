@@ -19,18 +19,33 @@
 
 package zmq;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
-// fake Unix domain socket
+//  Unix domain socket listener, or fake one over loopback TCP if the
+//  runtime has no Unix domain sockets.
 public class IpcListener extends TcpListener
 {
     private final IpcAddress address;
 
+    //  Socket file created by the listener, removed when it terminates.
+    private File file;
+
     public IpcListener(IOThread ioThread, SocketBase socket, final Options options)
+    {
+        this(ioThread, socket, options, new IpcAddress());
+    }
+
+    protected IpcListener(IOThread ioThread, SocketBase socket, final Options options,
+            IpcAddress address)
     {
         super(ioThread, socket, options);
 
-        address = new IpcAddress();
+        this.address = address;
+        file = null;
     }
 
     // Get the bound address for use with wildcards
@@ -42,10 +57,78 @@ public class IpcListener extends TcpListener
     //  Set address to listen on.
     public int setAddress(String addr)
     {
+        if (!IpcAddress.isUnixSupported()) {
+            address.resolve(addr, false);
+
+            InetSocketAddress sock = (InetSocketAddress) address.address();
+            String fake = sock.getAddress().getHostAddress() + ":" + sock.getPort();
+            return super.setAddress(fake);
+        }
+
+        //  The wildcard stands for a fresh file in the temporary directory.
+        if (addr.equals("*")) {
+            try {
+                File tmp = File.createTempFile("jeromq-", ".ipc");
+                addr = tmp.getPath();
+                tmp.delete();
+            }
+            catch (IOException e) {
+                return ZError.EADDRINUSE;
+            }
+        }
         address.resolve(addr, false);
 
-        InetSocketAddress sock = (InetSocketAddress) address.address();
-        String fake = sock.getAddress().getHostAddress() + ":" + sock.getPort();
-        return super.setAddress(fake);
+        //  A file left over by a previous listener would make bind fail.
+        File path = new File(address.name());
+        path.delete();
+
+        ServerSocketChannel handle;
+        try {
+            handle = IpcAddress.openServerChannel(address.address(), options.backlog);
+        }
+        catch (IOException e) {
+            return ZError.EADDRINUSE;
+        }
+        file = path;
+        listening(handle, address.toString());
+        return 0;
+    }
+
+    @Override
+    protected void processTerm(int linger)
+    {
+        super.processTerm(linger);
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+    }
+
+    @Override
+    protected void tune(SocketChannel fd) throws IOException
+    {
+        //  There are no TCP options to set on Unix domain sockets.
+        if (!address.isUnix()) {
+            super.tune(fd);
+        }
+    }
+
+    @Override
+    protected Address peerAddress(SocketChannel fd)
+    {
+        if (!address.isUnix()) {
+            return super.peerAddress(fd);
+        }
+        return new Address("ipc", address.name(), true);
+    }
+
+    @Override
+    protected boolean accepts(SocketChannel fd)
+    {
+        //  TCP accept filters don't apply to Unix domain sockets.
+        if (address.isUnix()) {
+            return true;
+        }
+        return super.accepts(fd);
     }
 }
@@ -20,7 +20,6 @@
 package zmq;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class LB
@@ -41,25 +40,80 @@ public class LB
     //  True if we are dropping current message.
     private boolean dropping;
 
+    //  How the pipe for the next message is chosen, one of the
+    //  ZMQ_LB_* values.
+    private int strategy;
+
+    //  Active pipes by outstanding messages, for ZMQ_LB_LEAST_OUTSTANDING.
+    private LoadQueue loads;
+
+    //  Messages sent to the current pipe in this round, for
+    //  ZMQ_LB_WEIGHTED.
+    private int sent;
+
+    //  State of the xorshift generator for ZMQ_LB_POWER_OF_TWO.
+    private int seed;
+
     public LB()
     {
         active = 0;
         current = 0;
         more = false;
         dropping = false;
+        strategy = ZMQ.ZMQ_LB_ROUND_ROBIN;
+        loads = null;
+        sent = 0;
+        seed = Utils.generateRandom() | 1;
 
         pipes = new ArrayList<Pipe>();
     }
 
+    public void setStrategy(int strategy)
+    {
+        if (strategy < ZMQ.ZMQ_LB_ROUND_ROBIN || strategy > ZMQ.ZMQ_LB_WEIGHTED) {
+            throw new IllegalArgumentException("strategy " + strategy);
+        }
+        this.strategy = strategy;
+        sent = 0;
+        if (strategy == ZMQ.ZMQ_LB_LEAST_OUTSTANDING) {
+            loads = new LoadQueue();
+            for (int i = 0; i != active; i++) {
+                loads.add(pipes.get(i));
+            }
+        }
+        else {
+            loads = null;
+        }
+    }
+
+    public int getStrategy()
+    {
+        return strategy;
+    }
+
+    private void swap(int i, int j)
+    {
+        if (i == j) {
+            return;
+        }
+        Pipe a = pipes.get(i);
+        Pipe b = pipes.get(j);
+        pipes.set(i, b);
+        pipes.set(j, a);
+        b.outIndex = i;
+        a.outIndex = j;
+    }
+
     public void attach(Pipe pipe)
     {
+        pipe.outIndex = pipes.size();
         pipes.add(pipe);
         activated(pipe);
     }
 
     public void terminated(Pipe pipe)
     {
-        int index = pipes.indexOf(pipe);
+        int index = pipe.outIndex;
 
         //  If we are in the middle of multipart message and current pipe
         //  have disconnected, we have to drop the remainder of the message.
@@ -70,20 +124,37 @@ public class LB
         //  Remove the pipe from the list; adjust number of active pipes
         //  accordingly.
         if (index < active) {
-            active--;
-            Collections.swap(pipes, index, active);
-            if (current == active) {
-                current = 0;
-            }
+            deactivate(index);
         }
-        pipes.remove(pipe);
+        swap(pipe.outIndex, pipes.size() - 1);
+        pipes.remove(pipes.size() - 1);
+        pipe.outIndex = -1;
     }
 
     public void activated(Pipe pipe)
     {
         //  Move the pipe to the list of active pipes.
-        Collections.swap(pipes, pipes.indexOf(pipe), active);
+        swap(pipe.outIndex, active);
         active++;
+        if (loads != null) {
+            loads.add(pipe);
+        }
+    }
+
+    //  Moves the active pipe at the index past the active ones.
+    private void deactivate(int index)
+    {
+        if (loads != null) {
+            loads.remove(pipes.get(index));
+        }
+        active--;
+        swap(index, active);
+        if (current == active) {
+            current = 0;
+        }
+        if (index == current) {
+            sent = 0;
+        }
     }
 
     public boolean send(Msg msg, ValueReference<Integer> errno)
@@ -98,18 +169,20 @@ public class LB
             return true;
         }
 
+        //  A new message may go to another pipe than the round-robin one.
+        if (!more && active > 0) {
+            current = select();
+        }
+
         while (active > 0) {
             if (pipes.get(current).write(msg)) {
                 break;
             }
 
             assert (!more);
-            active--;
-            if (current < active) {
-                Collections.swap(pipes, current, active);
-            }
-            else {
-                current = 0;
+            deactivate(current);
+            if (active > 0) {
+                current = select();
             }
         }
 
@@ -124,12 +197,72 @@ public class LB
         more = msg.hasMore();
         if (!more) {
             pipes.get(current).flush();
+            advance();
+        }
+
+        return true;
+    }
+
+    //  Returns the index of the active pipe the next message should go to.
+    private int select()
+    {
+        switch (strategy) {
+        case ZMQ.ZMQ_LB_LEAST_OUTSTANDING:
+            return loads.least().outIndex;
+
+        case ZMQ.ZMQ_LB_POWER_OF_TWO:
+            //  Pick two pipes at random and keep the less loaded one.
+            if (active == 1) {
+                return 0;
+            }
+            int first = random(active);
+            int second = random(active - 1);
+            if (second >= first) {
+                second++;
+            }
+            return pipes.get(second).outstanding() < pipes.get(first).outstanding()
+                    ? second : first;
+
+        default:
+            return current;
+        }
+    }
+
+    //  Accounts for a message sent to the current pipe.
+    private void advance()
+    {
+        switch (strategy) {
+        case ZMQ.ZMQ_LB_LEAST_OUTSTANDING:
+            loads.written();
+            break;
+
+        case ZMQ.ZMQ_LB_POWER_OF_TWO:
+            break;
+
+        case ZMQ.ZMQ_LB_WEIGHTED:
+            //  Every pipe gets as many messages in a row as its weight.
+            if (++sent < pipes.get(current).getWeight()) {
+                break;
+            }
+            sent = 0;
+            if (++current >= active) {
+                current = 0;
+            }
+            break;
+
+        default:
             if (++current >= active) {
                 current = 0;
             }
         }
+    }
 
-        return true;
+    private int random(int bound)
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (int) ((seed & 0xffffffffL) % bound);
     }
 
     public boolean hasOut()
@@ -147,11 +280,7 @@ public class LB
             }
 
             //  Deactivate the pipe.
-            active--;
-            Collections.swap(pipes, current, active);
-            if (current == active) {
-                current = 0;
-            }
+            deactivate(current);
         }
 
         return false;
@@ -0,0 +1,217 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//  Pipes bucketed by their number of outstanding messages, that is the
+//  messages written but not yet known to be read by the peer, so that the
+//  least loaded one can be found in constant time.
+//
+//  Writes through LB are the only way for the count to go up. It goes down
+//  when the peer reports its progress, which the queue doesn't hear about;
+//  the recorded bucket of a pipe is thus an upper bound. The candidate is
+//  checked before it is returned, and one more pipe is checked on every
+//  pick, so that the whole queue gets refreshed every size() picks.
+class LoadQueue
+{
+    //  Counts above this one share the last bucket.
+    private static final int MAX_BUCKET = 1023;
+
+    private static final class Entry
+    {
+        private final Pipe pipe;
+        private int bucket;
+        private int index;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(Pipe pipe)
+        {
+            this.pipe = pipe;
+        }
+    }
+
+    //  Doubly linked list of the pipes in every bucket.
+    private final Entry[] buckets;
+
+    //  All the queued pipes, for refreshing them in turn.
+    private final List<Entry> entries;
+    private final Map<Pipe, Entry> byPipe;
+
+    //  No bucket below this one holds a pipe.
+    private int min;
+
+    //  Next pipe to refresh.
+    private int probe;
+
+    //  Last pipe returned by least().
+    private Entry last;
+
+    public LoadQueue()
+    {
+        buckets = new Entry[MAX_BUCKET + 1];
+        entries = new ArrayList<Entry>();
+        byPipe = new HashMap<Pipe, Entry>();
+        min = 0;
+        probe = 0;
+        last = null;
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public void add(Pipe pipe)
+    {
+        assert (!byPipe.containsKey(pipe));
+        Entry entry = new Entry(pipe);
+        entry.index = entries.size();
+        entries.add(entry);
+        byPipe.put(pipe, entry);
+        link(entry, bucket(pipe));
+    }
+
+    public void remove(Pipe pipe)
+    {
+        Entry entry = byPipe.remove(pipe);
+        if (entry == null) {
+            return;
+        }
+        unlink(entry);
+        Entry moved = entries.remove(entries.size() - 1);
+        if (moved != entry) {
+            moved.index = entry.index;
+            entries.set(entry.index, moved);
+        }
+        if (last == entry) {
+            last = null;
+        }
+    }
+
+    //  Returns the pipe with the fewest outstanding messages, null if the
+    //  queue is empty.
+    public Pipe least()
+    {
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        //  Refresh one pipe, the next in turn.
+        if (probe >= entries.size()) {
+            probe = 0;
+        }
+        refresh(entries.get(probe++));
+
+        while (true) {
+            while (buckets[min] == null) {
+                min++;
+            }
+            //  The head of the lowest bucket may have fewer messages
+            //  outstanding by now, in which case it gets to a lower
+            //  bucket and is found again.
+            Entry entry = buckets[min];
+            if (!refresh(entry)) {
+                last = entry;
+                return entry.pipe;
+            }
+        }
+    }
+
+    //  Accounts for a complete message written to the pipe last returned
+    //  by least().
+    public void written()
+    {
+        if (last != null && last.bucket < MAX_BUCKET) {
+            //  Move it to the back of the next bucket, so that pipes with
+            //  equal load are served in turn.
+            Entry entry = last;
+            unlink(entry);
+            link(entry, entry.bucket + 1);
+        }
+    }
+
+    //  Moves the entry to the bucket of its current count, returns true if
+    //  that's a different one.
+    private boolean refresh(Entry entry)
+    {
+        int bucket = bucket(entry.pipe);
+        if (bucket == entry.bucket) {
+            return false;
+        }
+        unlink(entry);
+        link(entry, bucket);
+        return true;
+    }
+
+    private static int bucket(Pipe pipe)
+    {
+        return Math.min(Math.max(pipe.outstanding(), 0), MAX_BUCKET);
+    }
+
+    //  Appends the entry to the bucket's list.
+    private void link(Entry entry, int bucket)
+    {
+        entry.bucket = bucket;
+        Entry head = buckets[bucket];
+        if (head == null) {
+            entry.prev = entry;
+            entry.next = null;
+            buckets[bucket] = entry;
+        }
+        else {
+            //  The head's prev is the tail of the list.
+            Entry tail = head.prev;
+            tail.next = entry;
+            entry.prev = tail;
+            entry.next = null;
+            head.prev = entry;
+        }
+        if (bucket < min) {
+            min = bucket;
+        }
+    }
+
+    private void unlink(Entry entry)
+    {
+        Entry head = buckets[entry.bucket];
+        if (entry == head) {
+            buckets[entry.bucket] = entry.next;
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+        }
+        else {
+            entry.prev.next = entry.next;
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            else {
+                head.prev = entry.prev;
+            }
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+}
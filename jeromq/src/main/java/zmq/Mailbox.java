@@ -22,44 +22,68 @@ package zmq;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Mailbox
         implements Closeable
 {
-    //  The pipe to store actual commands.
-    private final YPipe<Command> cpipe;
+    private static final class Node
+    {
+        private final Command cmd;
+        private Node next;
+
+        private Node(Command cmd)
+        {
+            this.cmd = cmd;
+        }
+    }
+
+    //  There's only one thread receiving from the mailbox, but there
+    //  is arbitrary number of threads sending. Senders push their commands
+    //  on this stack (most recent first) with a single CAS; the receiving
+    //  thread takes the whole stack at once.
+    private final AtomicReference<Node> posted;
+
+    //  Commands taken from the stack, in the order they were sent. Only
+    //  accessed by the receiving thread.
+    private Node batch;
 
     //  Signaler to pass signals from writer thread to reader thread.
     private final Signaler signaler;
 
-    //  There's only one thread receiving from the mailbox, but there
-    //  is arbitrary number of threads sending. Given that ypipe requires
-    //  synchronised access on both of its endpoints, we have to synchronise
-    //  the sending side.
-    private final Lock sync;
+    //  True when the reader has run out of commands and the next sender
+    //  has to wake it up. Only the sender that flips it sends a signal.
+    private final AtomicBoolean asleep;
+
+    //  Number of threads inside send(), waited for before closing.
+    private final AtomicInteger senders;
 
     //  True if the underlying pipe is active, ie. when we are allowed to
     //  read commands from it.
     private boolean active;
 
+    //  True while a busy-polling reader checks for commands by itself, so
+    //  that the senders do not have to signal.
+    private boolean spinning;
+
     // mailbox name, for better debugging
     private final String name;
 
     public Mailbox(String name)
     {
-        cpipe = new YPipe<Command>(Config.COMMAND_PIPE_GRANULARITY.getValue());
-        sync = new ReentrantLock();
+        posted = new AtomicReference<Node>();
+        batch = null;
         signaler = new Signaler();
 
-        //  Get the pipe into passive state. That way, if the users starts by
+        //  Start in passive state. That way, if the users starts by
         //  polling on the associated file descriptor it will get woken up when
         //  new command is posted.
-
-        Command cmd = cpipe.read();
-        assert (cmd == null);
+        asleep = new AtomicBoolean(true);
+        senders = new AtomicInteger(0);
         active = false;
+        spinning = false;
 
         this.name = name;
     }
@@ -71,19 +95,75 @@ public class Mailbox
 
     public void send(final Command cmd)
     {
-        boolean ok = false;
-        sync.lock();
+        senders.incrementAndGet();
         try {
-            cpipe.write(cmd, false);
-            ok = cpipe.flush();
+            Node node = new Node(cmd);
+            Node head;
+            do {
+                head = posted.get();
+                node.next = head;
+            } while (!posted.compareAndSet(head, node));
+
+            if (asleep.get() && asleep.compareAndSet(true, false)) {
+                signaler.send();
+            }
         }
         finally {
-            sync.unlock();
+            senders.decrementAndGet();
         }
+    }
 
-        if (!ok) {
-            signaler.send();
+    //  Returns the next command, refilling the batch from the posted
+    //  commands when it is exhausted.
+    private Command poll()
+    {
+        if (batch == null) {
+            Node node = posted.getAndSet(null);
+            Node prev = null;
+            while (node != null) {
+                Node next = node.next;
+                node.next = prev;
+                prev = node;
+                node = next;
+            }
+            batch = prev;
+            if (batch == null) {
+                return null;
+            }
         }
+        Command cmd = batch.cmd;
+        batch = batch.next;
+        return cmd;
+    }
+
+    //  Called repeatedly by a busy-polling reader instead of waiting for
+    //  the signal. Returns true if there are commands to receive.
+    public boolean spin()
+    {
+        if (!spinning) {
+            if (!active) {
+                //  Keep the senders from signalling, unless one of them
+                //  already did. The signal is then received as usual.
+                if (!asleep.compareAndSet(true, false)) {
+                    return true;
+                }
+                active = true;
+            }
+            spinning = true;
+        }
+        return batch != null || posted.get() != null;
+    }
+
+    //  Called by a busy-polling reader before waiting for the signal
+    //  again. Returns true if the mailbox has to be received from, until
+    //  there are no more commands, for the senders to signal again.
+    public boolean stopSpinning()
+    {
+        if (!spinning) {
+            return false;
+        }
+        spinning = false;
+        return true;
     }
 
     public Command recv(long timeout)
@@ -91,14 +171,27 @@ public class Mailbox
         Command cmd = null;
         //  Try to get the command straight away.
         if (active) {
-            cmd = cpipe.read();
+            cmd = poll();
             if (cmd != null) {
                 return cmd;
             }
 
+            //  A busy-polling reader stays active.
+            if (spinning) {
+                assert (timeout == 0);
+                return null;
+            }
+
             //  If there are no more commands available, switch into passive state.
             active = false;
-            signaler.recv();
+            asleep.set(true);
+
+            //  A sender may have posted a command before seeing us asleep.
+            //  Take it back, unless a sender already woke us up.
+            if (posted.get() != null && asleep.compareAndSet(true, false)) {
+                active = true;
+                return poll();
+            }
         }
 
         //  Wait for signal from the command sender.
@@ -108,10 +201,11 @@ public class Mailbox
         }
 
         //  We've got the signal. Now we can switch into active state.
+        signaler.recv();
         active = true;
 
         //  Get a command.
-        cmd = cpipe.read();
+        cmd = poll();
         assert (cmd != null);
 
         return cmd;
@@ -120,12 +214,13 @@ public class Mailbox
     @Override
     public void close() throws IOException
     {
-        //  TODO: Retrieve and deallocate commands inside the cpipe.
+        //  TODO: Retrieve and deallocate commands inside the mailbox.
 
         // Work around problem that other threads might still be in our
-        // send() method, by waiting on the mutex before disappearing.
-        sync.lock();
-        sync.unlock();
+        // send() method, by waiting for them before disappearing.
+        while (senders.get() != 0) {
+            Thread.yield();
+        }
 
         signaler.close();
     }
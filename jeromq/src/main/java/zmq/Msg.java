@@ -19,56 +19,95 @@
 
 package zmq;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
-public class Msg
-{
-    enum Type {
-        DATA,
-        DELIMITER
-    }
+//  A message is kept as its payload array plus offset, size and flags.
+//  The ByteBuffer view is only created when somebody asks for it, and
+//  messages backed by a direct buffer keep that buffer instead of an array.
+//  The payload of a file region message stays in the file: stream engines
+//  send it from there, anything else reads it in on first access.
 
+public class Msg implements Closeable
+{
     public static final int MORE = 1;
     public static final int COMMAND = 2;
     public static final int IDENTITY = 64;
     public static final int SHARED = 128;
 
+    //  Internal flag marking the pipe delimiter, never visible to the user.
+    private static final int DELIMITER = 256;
+
+    //  Payload of empty and released messages.
+    private static final byte[] EMPTY = new byte[0];
+
     private int flags;
-    private Type type;
 
-    private int size;
+    //  Payload lives in data[offset .. offset + size), unless data is null,
+    //  in which case it is the content of the (direct) buffer below.
     private byte[] data;
+    private int offset;
+    private int size;
+
+    //  Position used by the relative get/put methods. Unlike the rest of
+    //  the message it changes when read, so a message handled with them
+    //  belongs to a single thread: one sent to several pipes is shared by
+    //  their readers, which have to stick to the absolute methods.
+    private int pos;
+
+    //  Direct buffer holding the payload, null for heap messages. Its
+    //  position is never moved, only duplicates of it are.
     private ByteBuffer buf;
 
+    //  Pool the payload array was borrowed from, null if it is not recyclable.
+    private BufferPool pool;
+
+    //  File holding the payload from fileOffset on, until it is read in.
+    //  A message may be shared by several pipes, hence threads, and read
+    //  in by any of them: the file is cleared last and volatile, so that
+    //  whoever sees it cleared sees the payload.
+    private volatile File file;
+    private long fileOffset;
+
     public Msg()
     {
-        this.type = Type.DATA;
-        this.flags = 0;
-        this.size = 0;
-        this.buf = ByteBuffer.wrap(new byte[0]).order(ByteOrder.BIG_ENDIAN);
-        this.data = buf.array();
+        this.data = EMPTY;
     }
 
     public Msg(int capacity)
     {
-        this.type = Type.DATA;
-        this.flags = 0;
+        this.data = capacity == 0 ? EMPTY : new byte[capacity];
         this.size = capacity;
-        this.buf = ByteBuffer.wrap(new byte[capacity]).order(ByteOrder.BIG_ENDIAN);
-        this.data = buf.array();
     }
 
     public Msg(byte[] src)
     {
         if (src == null) {
-            src = new byte[0];
+            src = EMPTY;
         }
-        this.type = Type.DATA;
-        this.flags = 0;
+        this.data = src;
         this.size = src.length;
+    }
+
+    //  Creates a message sharing the given region of the array.
+    public Msg(byte[] src, int offset, int size)
+    {
+        if (src == null) {
+            throw new IllegalArgumentException("array cannot be null");
+        }
+        if (offset < 0 || size < 0 || offset + size > src.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", size=" + size);
+        }
         this.data = src;
-        this.buf = ByteBuffer.wrap(src).order(ByteOrder.BIG_ENDIAN);
+        this.offset = offset;
+        this.size = size;
     }
 
     public Msg(final ByteBuffer src)
@@ -79,16 +118,37 @@ public class Msg
         if (src.position() > 0) {
             throw new IllegalArgumentException("ByteBuffer position is not zero, did you forget to flip it?");
         }
-        this.type = Type.DATA;
-        this.flags = 0;
-        this.buf = src.duplicate();
-        if (buf.hasArray()) {
-            this.data = buf.array();
+        this.size = src.remaining();
+        if (src.hasArray()) {
+            this.data = src.array();
+            this.offset = src.arrayOffset();
+        }
+        else {
+            this.buf = src.duplicate();
+        }
+    }
+
+    //  Creates a message whose payload is the given region of the file.
+    //  Over TCP and IPC the region is sent straight from the file, using
+    //  FileChannel.transferTo; it is read into the heap for the other
+    //  transports. Larger files are sent in several frames.
+    public Msg(File file, long offset, int size)
+    {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        if (offset < 0 || size < 0 || offset + size > file.length()) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", size=" + size
+                    + ", length=" + file.length());
+        }
+        this.size = size;
+        if (size == 0) {
+            this.data = EMPTY;
         }
         else {
-            this.data = null;
+            this.fileOffset = offset;
+            this.file = file;
         }
-        this.size = buf.remaining();
     }
 
     public Msg(final Msg m)
@@ -96,12 +156,99 @@ public class Msg
         if (m == null) {
             throw new IllegalArgumentException("Msg cannot be null");
         }
-        this.type = m.type;
         this.flags = m.flags;
         this.size = m.size;
-        this.buf = m.buf != null ? m.buf.duplicate() : null;
-        this.data = new byte[this.size];
-        System.arraycopy(m.data, 0, this.data, 0, m.size);
+        File region = m.file;
+        if (region != null) {
+            this.fileOffset = m.fileOffset;
+            this.file = region;
+            return;
+        }
+        this.data = new byte[m.size];
+        if (m.data != null) {
+            System.arraycopy(m.data, m.offset, this.data, 0, m.size);
+        }
+        else {
+            m.payload().get(this.data);
+        }
+    }
+
+    //  Creates a message whose payload is borrowed from a buffer pool.
+    //  The array may be larger than the message; only the first size
+    //  bytes belong to it.
+    Msg(BufferPool pool, byte[] src, int size)
+    {
+        this.data = src;
+        this.size = size;
+        this.pool = pool;
+    }
+
+    //  Creates a message whose payload is a direct buffer borrowed from a
+    //  buffer pool. Only the first size bytes of the buffer belong to it.
+    Msg(BufferPool pool, ByteBuffer src, int size)
+    {
+        src.limit(size);
+        this.buf = src;
+        this.size = size;
+        this.pool = pool;
+    }
+
+    //  True if the payload is still in a file.
+    boolean isFile()
+    {
+        return file != null;
+    }
+
+    //  Opens the file for reading. The region starts at fileOffset().
+    //  Returns null if the payload has been read in meanwhile.
+    FileChannel openFile() throws IOException
+    {
+        File region = file;
+        if (region == null) {
+            return null;
+        }
+        return new RandomAccessFile(region, "r").getChannel();
+    }
+
+    long fileOffset()
+    {
+        return fileOffset;
+    }
+
+    //  Reads the payload of a file region in, for the paths that can't
+    //  send it from the file.
+    private void load()
+    {
+        File region = file;
+        if (region == null) {
+            return;
+        }
+        byte[] bytes = new byte[size];
+        try {
+            RandomAccessFile raf = new RandomAccessFile(region, "r");
+            try {
+                raf.seek(fileOffset);
+                raf.readFully(bytes);
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+        data = bytes;
+        offset = 0;
+        file = null;
+    }
+
+    //  Duplicate of a direct payload, positioned at its beginning.
+    ByteBuffer payload()
+    {
+        load();
+        ByteBuffer dup = buf.duplicate();
+        dup.position(0);
+        return dup;
     }
 
     public boolean isIdentity()
@@ -111,7 +258,7 @@ public class Msg
 
     public boolean isDelimiter()
     {
-        return type == Type.DELIMITER;
+        return (flags & DELIMITER) == DELIMITER;
     }
 
     public boolean check()
@@ -121,7 +268,7 @@ public class Msg
 
     public int flags()
     {
-        return flags;
+        return flags & ~DELIMITER;
     }
 
     public boolean hasMore()
@@ -136,24 +283,65 @@ public class Msg
 
     public void initDelimiter()
     {
-        type = Type.DELIMITER;
-        flags = 0;
+        flags = DELIMITER;
     }
 
+    //  Returns the payload as an array of exactly size() bytes. If the
+    //  payload array is shared with the caller, the message stops being
+    //  recyclable and a later release() leaves the array alone.
     public byte[] data()
     {
-        if (buf.isDirect()) {
-            int length = buf.remaining();
-            byte[] bytes = new byte[length];
-            buf.duplicate().get(bytes);
+        load();
+        if (data == null) {
+            byte[] bytes = new byte[size];
+            payload().get(bytes);
             return bytes;
         }
+        if (offset != 0 || data.length != size) {
+            return Arrays.copyOfRange(data, offset, offset + size);
+        }
+        pool = null;
         return data;
     }
 
+    //  Returns the backing array without copying. The payload starts at
+    //  offset() and callers have to honour size().
+    byte[] array()
+    {
+        load();
+        if (data == null) {
+            return data();
+        }
+        return data;
+    }
+
+    int offset()
+    {
+        load();
+        return data == null ? 0 : offset;
+    }
+
+    //  False if the payload lives in a direct buffer rather than an array.
+    boolean hasArray()
+    {
+        load();
+        return data != null;
+    }
+
+    //  Returns a new view of the payload, positioned where the relative
+    //  methods are.
     public ByteBuffer buf()
     {
-        return buf.duplicate();
+        load();
+        ByteBuffer view;
+        if (data == null) {
+            view = buf.duplicate();
+        }
+        else {
+            view = ByteBuffer.wrap(data, offset, size).slice();
+        }
+        view.position(pos);
+        return view;
     }
 
     public int size()
@@ -168,23 +356,49 @@ public class Msg
 
     public byte get()
     {
-        return buf.get();
+        load();
+        if (pos >= size) {
+            throw new BufferUnderflowException();
+        }
+        if (data == null) {
+            return buf.get(pos++);
+        }
+        return data[offset + pos++];
     }
 
     public byte get(int index)
     {
-        return buf.get(index);
+        load();
+        if (data == null) {
+            return buf.get(index);
+        }
+        checkIndex(index, 1);
+        return data[offset + index];
     }
 
     public Msg put(byte b)
     {
-        buf.put(b);
+        load();
+        if (pos >= size) {
+            throw new BufferOverflowException();
+        }
+        if (data == null) {
+            buf.put(pos++, b);
+            return this;
+        }
+        data[offset + pos++] = b;
         return this;
     }
 
     public Msg put(int index, byte b)
     {
-        buf.put(index, b);
+        load();
+        if (data == null) {
+            buf.put(index, b);
+            return this;
+        }
+        checkIndex(index, 1);
+        data[offset + index] = b;
         return this;
     }
 
@@ -195,43 +409,130 @@ public class Msg
 
     public Msg put(byte[] src, int off, int len)
     {
+        load();
         if (src == null) {
             return this;
         }
-        buf.put(src, off, len);
+        if (len > size - pos) {
+            throw new BufferOverflowException();
+        }
+        if (data == null) {
+            ByteBuffer dup = buf.duplicate();
+            dup.position(pos);
+            dup.put(src, off, len);
+            pos += len;
+            return this;
+        }
+        System.arraycopy(src, off, data, offset + pos, len);
+        pos += len;
         return this;
     }
 
     public Msg put(ByteBuffer src)
     {
-        buf.put(src);
+        load();
+        int len = src.remaining();
+        if (len > size - pos) {
+            throw new BufferOverflowException();
+        }
+        if (data == null) {
+            ByteBuffer dup = buf.duplicate();
+            dup.position(pos);
+            dup.put(src);
+            pos += len;
+            return this;
+        }
+        src.get(data, offset + pos, len);
+        pos += len;
         return this;
     }
 
+    private void checkIndex(int index, int len)
+    {
+        if (index < 0 || index + len > size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+    }
+
     public int getBytes(int index, byte[] dst, int off, int len)
     {
-        int count = Math.min(len, size);
-        if (buf.isDirect()) {
-            ByteBuffer dup = buf.duplicate();
+        load();
+        int count = Math.min(len, size - index);
+        if (data == null) {
+            ByteBuffer dup = payload();
             dup.position(index);
-            dup.put(dst, off, count);
+            dup.get(dst, off, count);
             return count;
         }
-        System.arraycopy(data, index, dst, off, count);
+        System.arraycopy(data, offset + index, dst, off, count);
         return count;
     }
 
     public int getBytes(int index, ByteBuffer bb, int len)
     {
+        load();
         int count = Math.min(bb.remaining(), size - index);
         count = Math.min(count, len);
-        bb.put(buf);
+        if (data == null) {
+            ByteBuffer dup = payload();
+            dup.position(index).limit(index + count);
+            bb.put(dup);
+            return count;
+        }
+        bb.put(data, offset + index, count);
         return count;
     }
 
+    //  Gives the payload back to the pool it was borrowed from, if any.
+    //  Only the owner of a received message may release it, and the
+    //  message must not be touched afterwards. Messages passed to send()
+    //  belong to the library and are never recycled.
+    public void release()
+    {
+        if (pool == null) {
+            return;
+        }
+        BufferPool owner = pool;
+        byte[] array = data;
+        ByteBuffer direct = buf;
+
+        pool = null;
+        data = EMPTY;
+        offset = 0;
+        size = 0;
+        pos = 0;
+        buf = null;
+
+        if (array != null) {
+            owner.release(array);
+        }
+        else {
+            owner.release(direct);
+        }
+    }
+
+    //  Makes the message usable in try-with-resources blocks.
+    @Override
+    public void close()
+    {
+        release();
+    }
+
+    //  Ensures the payload is never handed back to the pool.
+    void detach()
+    {
+        pool = null;
+    }
+
+    boolean isPooled()
+    {
+        return pool != null;
+    }
+
     @Override
     public String toString()
     {
-        return String.format("#zmq.Msg{type=%s, size=%s, flags=%s}", type, size, flags);
+        return String.format("#zmq.Msg{type=%s, size=%s, flags=%s}",
+                isDelimiter() ? "DELIMITER" : "DATA", size, flags());
     }
 }
@@ -23,7 +23,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 //Multi-trie. Each node in the trie is a set of pointers to pipes.
-public class Mtrie
+public class Mtrie implements IMtrie
 {
     private Set<Pipe> pipes;
 
@@ -47,6 +47,7 @@ public class Mtrie
         next = null;
     }
 
+    @Override
     public boolean add(byte[] prefix, Pipe pipe)
     {
         return addHelper(prefix, 0, pipe);
@@ -54,6 +55,7 @@ public class Mtrie
 
     //  Add key to the trie. Returns true if it's a new subscription
     //  rather than a duplicate.
+    @Override
     public boolean add(byte[] prefix, int start, Pipe pipe)
     {
         return addHelper(prefix, start, pipe);
@@ -129,6 +131,7 @@ public class Mtrie
     //  Remove all subscriptions for a specific peer from the trie.
     //  If there are no subscriptions left on some topics, invoke the
     //  supplied callback function.
+    @Override
     public boolean rm(Pipe pipe, IMtrieHandler func, Object arg, boolean callOnUniq)
     {
         return rmHelper(pipe, new byte[0], 0, 0, func, arg, callOnUniq);
@@ -254,6 +257,7 @@ public class Mtrie
 
     //  Remove specific subscription from the trie. Return true is it was
     //  actually removed rather than de-duplicated.
+    @Override
     public boolean rm(byte[] prefix, int start, Pipe pipe)
     {
         return rmHelper(prefix, start, pipe);
@@ -350,6 +354,7 @@ public class Mtrie
     }
 
     //  Signal all the matching pipes.
+    @Override
     public void match(byte[] data, int size, IMtrieHandler func, Object arg)
     {
         Mtrie current = this;
@@ -285,6 +285,26 @@ public class MultiMap<K extends Comparable<? super K>, V> implements Map<K, V>
         return old;
     }
 
+    //  Removes the entry of the key holding this very value. Returns
+    //  false if there's none.
+    public boolean remove(Object key, Object value)
+    {
+        ArrayList<Long> l = keys.get(key);
+        if (l == null) {
+            return false;
+        }
+        for (int i = 0; i != l.size(); i++) {
+            if (values.get(l.get(i)) == value) {
+                values.remove(l.remove(i));
+                if (l.isEmpty()) {
+                    keys.remove(key);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public int size()
     {
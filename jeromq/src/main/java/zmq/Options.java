@@ -116,6 +116,42 @@ public class Options
     Class<? extends DecoderBase> decoder;
     Class<? extends EncoderBase> encoder;
 
+    //  Incoming frames of at least this size are read into direct buffers.
+    //  Defaults to -1 = always read into heap arrays.
+    int rcvDirectThreshold;
+    //  Supplies the direct buffers, null to use the context pool.
+    IMsgAllocator rcvAllocator;
+
+    //  Outgoing direct payloads of at least this size are written without
+    //  being copied into the batch buffer. Defaults to -1 = always copy.
+    int sndGatherThreshold;
+
+    //  Messages going to at least this many pipes are written by the I/O
+    //  threads in parallel. Defaults to 0 = always written by the sender.
+    int fanoutThreshold;
+
+    //  Weight given to the pipes of the connections made from now on by
+    //  a weighted load balancer. Defaults to 1.
+    int lbWeight;
+
+    //  Share of the inbound bytes, when the socket fair-queues by bytes,
+    //  and priority of the connections made from now on. Default to 1
+    //  and 0.
+    int fqWeight;
+    int fqPriority;
+
+    //  Bytes after which an engine stops reading, or writing, within a
+    //  single I/O event. Defaults to Config.IO_BUDGET, 0 = a single read
+    //  or write per event.
+    int ioBudget;
+
+    //  Bounds of the batch buffers of the engines. The buffers start at
+    //  the minimum size, double while reads or writes fill them, up to
+    //  the maximum, and go back to the minimum once they haven't been
+    //  filled for Config.BATCH_IDLE_IVL.
+    int batchSizeMin;
+    int batchSizeMax;
+
     public Options()
     {
         sendHwm = 1000;
@@ -151,6 +187,16 @@ public class Options
         tcpAcceptFilters = new ArrayList<TcpAddress.TcpAddressMask>();
         decoder = null;
         encoder = null;
+        rcvDirectThreshold = -1;
+        rcvAllocator = null;
+        sndGatherThreshold = -1;
+        fanoutThreshold = 0;
+        lbWeight = 1;
+        fqWeight = 1;
+        fqPriority = 0;
+        ioBudget = Config.IO_BUDGET.getValue();
+        batchSizeMin = ZMQ.ZMQ_BATCH_SIZE_MIN_DFLT;
+        batchSizeMax = ZMQ.ZMQ_BATCH_SIZE_MAX_DFLT;
     }
 
     @SuppressWarnings("unchecked")
@@ -332,6 +378,73 @@ public class Options
             }
             return;
 
+        case ZMQ.ZMQ_RCV_DIRECT_THRESHOLD:
+            rcvDirectThreshold = (Integer) optval;
+            if (rcvDirectThreshold < -1) {
+                throw new IllegalArgumentException("rcvDirectThreshold " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_RCV_ALLOCATOR:
+            if (optval != null && !(optval instanceof IMsgAllocator)) {
+                throw new IllegalArgumentException("rcvAllocator " + optval);
+            }
+            rcvAllocator = (IMsgAllocator) optval;
+            return;
+
+        case ZMQ.ZMQ_SND_GATHER_THRESHOLD:
+            sndGatherThreshold = (Integer) optval;
+            if (sndGatherThreshold < -1) {
+                throw new IllegalArgumentException("sndGatherThreshold " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_FANOUT_THRESHOLD:
+            fanoutThreshold = (Integer) optval;
+            if (fanoutThreshold < 0) {
+                throw new IllegalArgumentException("fanoutThreshold " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_LB_WEIGHT:
+            lbWeight = (Integer) optval;
+            if (lbWeight <= 0) {
+                throw new IllegalArgumentException("lbWeight " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_FQ_WEIGHT:
+            fqWeight = (Integer) optval;
+            if (fqWeight <= 0) {
+                throw new IllegalArgumentException("fqWeight " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_FQ_PRIORITY:
+            fqPriority = (Integer) optval;
+            return;
+
+        case ZMQ.ZMQ_IO_BUDGET:
+            ioBudget = (Integer) optval;
+            if (ioBudget < 0) {
+                throw new IllegalArgumentException("ioBudget " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_BATCH_SIZE_MIN:
+            batchSizeMin = (Integer) optval;
+            if (batchSizeMin <= 0) {
+                throw new IllegalArgumentException("batchSizeMin " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_BATCH_SIZE_MAX:
+            batchSizeMax = (Integer) optval;
+            if (batchSizeMax <= 0) {
+                throw new IllegalArgumentException("batchSizeMax " + optval);
+            }
+            return;
+
         default:
             throw new IllegalArgumentException("Unknown Option " + option);
         }
@@ -409,6 +522,36 @@ public class Options
         case ZMQ.ZMQ_LAST_ENDPOINT:
             return lastEndpoint;
 
+        case ZMQ.ZMQ_RCV_DIRECT_THRESHOLD:
+            return rcvDirectThreshold;
+
+        case ZMQ.ZMQ_RCV_ALLOCATOR:
+            return rcvAllocator;
+
+        case ZMQ.ZMQ_SND_GATHER_THRESHOLD:
+            return sndGatherThreshold;
+
+        case ZMQ.ZMQ_FANOUT_THRESHOLD:
+            return fanoutThreshold;
+
+        case ZMQ.ZMQ_LB_WEIGHT:
+            return lbWeight;
+
+        case ZMQ.ZMQ_FQ_WEIGHT:
+            return fqWeight;
+
+        case ZMQ.ZMQ_FQ_PRIORITY:
+            return fqPriority;
+
+        case ZMQ.ZMQ_IO_BUDGET:
+            return ioBudget;
+
+        case ZMQ.ZMQ_BATCH_SIZE_MIN:
+            return batchSizeMin;
+
+        case ZMQ.ZMQ_BATCH_SIZE_MAX:
+            return batchSizeMax;
+
         default:
             throw new IllegalArgumentException("option=" + option);
         }
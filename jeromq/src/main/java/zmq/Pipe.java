@@ -22,7 +22,7 @@ package zmq;
 //  Note that pipe can be stored in three different arrays.
 //  The array of inbound pipes (1), the array of outbound pipes (2) and
 //  the generic array of pipes to deallocate (3).
-class Pipe extends ZObject
+public class Pipe extends ZObject
 {
     interface IPipeEvents
     {
@@ -90,6 +90,29 @@ class Pipe extends ZObject
     // JeroMQ only
     private ZObject parent;
 
+    //  Position of the pipe in the array of outbound pipes (2) it is
+    //  stored in, maintained by Dist or LB.
+    int outIndex;
+
+    //  Share of the outbound messages given to the pipe by a weighted
+    //  load balancer, relative to the other pipes.
+    private int weight;
+
+    //  Position of the pipe among the inbound pipes of its priority,
+    //  maintained by FQ.
+    int inIndex;
+
+    //  Bytes the pipe may still deliver in the current round of deficit
+    //  round robin, maintained by FQ. Negative once it went over.
+    long deficit;
+
+    //  Share of the inbound bytes taken from the pipe by deficit round
+    //  robin, relative to the other pipes of the same priority.
+    private int inWeight;
+
+    //  Inbound pipes of higher priority are read first.
+    private int priority;
+
     //  Constructor is private. Pipe can only be created using
     //  pipepair function.
     private Pipe(ZObject parent, YPipe<Msg> inpipe, YPipe<Msg> outpipe,
@@ -111,6 +134,12 @@ class Pipe extends ZObject
         this.delay = delay;
 
         this.parent = parent;
+        outIndex = -1;
+        weight = 1;
+        inIndex = -1;
+        deficit = 0;
+        inWeight = 1;
+        priority = 0;
     }
 
     //  Create a pipepair for bi-directional transfer of messages.
@@ -147,6 +176,12 @@ class Pipe extends ZObject
         this.peer = peer;
     }
 
+    //  Returns the thread id of the object on the other side of the pipe.
+    int peerTid()
+    {
+        return peer.getTid();
+    }
+
     //  Specifies the object to send events to.
     public void setEventSink(IPipeEvents sink)
     {
@@ -239,6 +274,52 @@ class Pipe extends ZObject
         return true;
     }
 
+    //  Number of messages written that the peer is not known to have
+    //  read yet. The peer reports its progress every lwm messages.
+    int outstanding()
+    {
+        return (int) (msgsWritten - peersMsgsRead);
+    }
+
+    //  Takes the scheduling parameters of the connection from the options
+    //  of the socket or session owning this end of the pipe.
+    void setScheduling(Options options)
+    {
+        weight = options.lbWeight;
+        inWeight = options.fqWeight;
+        priority = options.fqPriority;
+    }
+
+    void setWeight(int weight)
+    {
+        this.weight = weight;
+    }
+
+    int getWeight()
+    {
+        return weight;
+    }
+
+    void setInWeight(int inWeight)
+    {
+        this.inWeight = inWeight;
+    }
+
+    int getInWeight()
+    {
+        return inWeight;
+    }
+
+    void setPriority(int priority)
+    {
+        this.priority = priority;
+    }
+
+    int getPriority()
+    {
+        return priority;
+    }
+
     //  Writes a message to the underlying pipe. Returns false if the
     //  message cannot be written because high watermark was reached.
     public boolean write(Msg msg)
@@ -25,33 +25,38 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Poller extends PollerBase implements Runnable
 {
     private static class PollSet
     {
+        protected final SelectableChannel fd;
         protected IPollEvents handler;
         protected SelectionKey key;
         protected int ops;
         protected boolean cancelled;
+        protected boolean pending;
 
-        protected PollSet(IPollEvents handler)
+        protected PollSet(SelectableChannel fd, IPollEvents handler)
         {
+            this.fd = fd;
             this.handler = handler;
             key = null;
             cancelled = false;
+            pending = false;
             ops = 0;
         }
     }
     //  This table stores data for registered descriptors.
     private final Map<SelectableChannel, PollSet> fdTable;
 
-    //  If true, there's at least one retired event source.
-    private final AtomicBoolean retired = new AtomicBoolean(false);
+    //  Descriptors to register with or cancel from the selector at the
+    //  beginning of the next loop, so that only the changes are visited.
+    private final ArrayDeque<PollSet> pending;
 
     //  If true, thread is in the process of shutting down.
     private volatile boolean stopping;
@@ -61,6 +66,20 @@ public class Poller extends PollerBase implements Runnable
     private Selector selector;
     private final String name;
 
+    //  Busy polling: for how long, in nanoseconds, the poller keeps
+    //  checking for events without blocking once idle, first spinning,
+    //  then yielding between the checks. Blocks afterwards.
+    private long spinNanos;
+    private long yieldNanos;
+
+    //  Mailbox of the thread, checked in memory while busy polling, and
+    //  its handler.
+    private Mailbox mailbox;
+    private IPollEvents mailboxEvents;
+
+    //  Start of the current idle period, 0 if not idle.
+    private long idleSince;
+
     public Poller()
     {
         this("poller");
@@ -68,11 +87,18 @@ public class Poller extends PollerBase implements Runnable
 
     public Poller(String name)
     {
+        this(name, false);
+    }
+
+    public Poller(String name, boolean timerWheel)
+    {
+        super(timerWheel);
         this.name = name;
         stopping = false;
         stopped = false;
 
         fdTable = new HashMap<SelectableChannel, PollSet>();
+        pending = new ArrayDeque<PollSet>();
         try {
             selector = Selector.open();
         }
@@ -99,17 +125,31 @@ public class Poller extends PollerBase implements Runnable
         }
     }
 
+    //  Makes the poller check for events without blocking for a while
+    //  once idle, and the commands of the mailbox without a system call.
+    //  Must be called before the poller is started.
+    public void setBusyPoll(long spinNanos, long yieldNanos, Mailbox mailbox, IPollEvents mailboxEvents)
+    {
+        this.spinNanos = spinNanos;
+        this.yieldNanos = yieldNanos;
+        this.mailbox = mailbox;
+        this.mailboxEvents = mailboxEvents;
+    }
+
     public final void addHandle(SelectableChannel fd, IPollEvents events)
     {
-        fdTable.put(fd, new PollSet(events));
+        PollSet pollset = new PollSet(fd, events);
+        fdTable.put(fd, pollset);
+        retire(pollset);
 
         adjustLoad(1);
     }
 
     public final void removeHandle(SelectableChannel handle)
     {
-        fdTable.get(handle).cancelled = true;
-        retired.set(true);
+        PollSet pollset = fdTable.get(handle);
+        pollset.cancelled = true;
+        retire(pollset);
 
         //  Decrease the load metric of the thread.
         adjustLoad(-1);
@@ -160,7 +200,47 @@ public class Poller extends PollerBase implements Runnable
             pollset.key.interestOps(pollset.ops);
         }
         else {
-            retired.set(true);
+            retire(pollset);
+        }
+    }
+
+    //  Queues the descriptor for registration or cancellation.
+    private void retire(PollSet pollset)
+    {
+        if (!pollset.pending) {
+            pollset.pending = true;
+            pending.add(pollset);
+        }
+    }
+
+    //  Applies the queued registrations and cancellations.
+    private void applyPending()
+    {
+        PollSet pollset;
+        while ((pollset = pending.poll()) != null) {
+            pollset.pending = false;
+            SelectableChannel ch = pollset.fd;
+
+            //  The handle was removed and added again in the meantime;
+            //  the new entry takes over the selection key.
+            boolean current = fdTable.get(ch) == pollset;
+
+            if (pollset.key == null && current && !pollset.cancelled) {
+                try {
+                    pollset.key = ch.register(selector, pollset.ops, pollset.handler);
+                }
+                catch (ClosedChannelException e) {
+                }
+            }
+
+            if (pollset.cancelled || !ch.isOpen()) {
+                if (current) {
+                    if (pollset.key != null) {
+                        pollset.key.cancel();
+                    }
+                    fdTable.remove(ch);
+                }
+            }
         }
     }
 
@@ -186,40 +266,35 @@ public class Poller extends PollerBase implements Runnable
             //  Execute any due timers.
             long timeout = executeTimers();
 
-            while (retired.compareAndSet(true, false)) {
-                Iterator<Map.Entry<SelectableChannel, PollSet>> it = fdTable.entrySet().iterator();
-                while (it.hasNext()) {
-                    Map.Entry<SelectableChannel, PollSet> entry = it.next();
-                    SelectableChannel ch = entry.getKey();
-                    PollSet pollset = entry.getValue();
-                    if (pollset.key == null) {
-                        try {
-                            pollset.key = ch.register(selector, pollset.ops, pollset.handler);
-                        }
-                        catch (ClosedChannelException e) {
-                        }
-                    }
+            applyPending();
 
-                    if (pollset.cancelled || !ch.isOpen()) {
-                        if (pollset.key != null) {
-                            pollset.key.cancel();
-                        }
-                        it.remove();
-                    }
+            //  Wait for events. Keys left over from the previous loop are
+            //  still selected, so do not block in that case.
+            boolean leftover = !selector.selectedKeys().isEmpty();
+            int rc = -1;
+            if (!leftover && spinNanos + yieldNanos > 0) {
+                rc = busyPoll();
+                if (rc == 0) {
+                    continue;
                 }
             }
-
-            //  Wait for events.
-            int rc;
             long start = System.currentTimeMillis();
             try {
-                rc = selector.select(timeout);
+                if (leftover) {
+                    rc = selector.selectNow();
+                }
+                else if (rc < 0) {
+                    rc = selector.select(timeout);
+                }
             }
             catch (IOException e) {
                 throw new ZError.IOException(e);
             }
+            if (rc > 0) {
+                idleSince = 0;
+            }
 
-            if (rc == 0) {
+            if (rc == 0 && !leftover) {
                 //  Guess JDK epoll bug
                 if (timeout == 0 ||
                         System.currentTimeMillis() - start < timeout / 2) {
@@ -236,8 +311,12 @@ public class Poller extends PollerBase implements Runnable
                 continue;
             }
 
+            //  Handle at most MAX_IO_EVENTS keys, so that a flood of events
+            //  cannot hold the timers back. The rest are handled next time.
+            int events = Config.MAX_IO_EVENTS.getValue();
             Iterator<SelectionKey> it = selector.selectedKeys().iterator();
-            while (it.hasNext()) {
+            countEvents(Math.min(events, selector.selectedKeys().size()));
+            while (it.hasNext() && events-- > 0) {
                 SelectionKey key = it.next();
                 IPollEvents evt = (IPollEvents) key.attachment();
                 it.remove();
@@ -260,11 +339,50 @@ public class Poller extends PollerBase implements Runnable
                     // channel might have been closed
                 }
             }
+            measure();
 
         }
         stopped = true;
     }
 
+    //  Checks for events and commands without blocking while the idle
+    //  period lasts. Returns the number of keys selected, or -1 once the
+    //  period is over and the poller has to block.
+    private int busyPoll()
+    {
+        long now = System.nanoTime();
+        if (idleSince == 0) {
+            idleSince = now;
+        }
+        long idle = now - idleSince;
+        if (idle >= spinNanos + yieldNanos) {
+            //  Let the senders signal the mailbox again before blocking.
+            //  The commands received meanwhile may have changed the
+            //  registrations or the timers, go round once more.
+            if (mailbox != null && mailbox.stopSpinning()) {
+                mailboxEvents.inEvent();
+                return 0;
+            }
+            return -1;
+        }
+        if (idle >= spinNanos) {
+            Thread.yield();
+        }
+
+        if (mailbox != null && mailbox.spin()) {
+            countEvents(1);
+            mailboxEvents.inEvent();
+            idleSince = 0;
+        }
+
+        try {
+            return selector.selectNow();
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+    }
+
     private void rebuildSelector()
     {
         Selector newSelector;
@@ -286,8 +404,7 @@ public class Poller extends PollerBase implements Runnable
 
         for (PollSet pollSet : fdTable.values()) {
             pollSet.key = null;
+            retire(pollSet);
         }
-
-        retired.set(true);
     }
 }
@@ -19,8 +19,9 @@
 
 package zmq;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,25 +31,67 @@ abstract class PollerBase
     //  registered.
     private final AtomicInteger load;
 
-    private final class TimerInfo
+    //  Work done since the last measurement, in events handled plus
+    //  kilobytes transferred, and when that measurement was taken.
+    //  Only accessed by the poller thread.
+    private long work;
+    private int workBytes;
+    private long measured;
+
+    //  Rate of work per second, smoothed over the last measurements, and
+    //  when it was last updated.
+    private volatile double activity;
+    private volatile long activityTime;
+
+    //  Pending timer, also the handle used to cancel it.
+    public static final class Timer
     {
-        IPollEvents sink;
-        int id;
+        final IPollEvents sink;
+        final int id;
+        final long expiration;
+        boolean cancelled;
 
-        public TimerInfo(IPollEvents sink, int id)
+        //  Position in the timing wheel, level is -1 when not in it.
+        Timer prev;
+        Timer next;
+        int level;
+        int slot;
+
+        Timer(IPollEvents sink, int id, long expiration)
         {
             this.sink = sink;
             this.id = id;
+            this.expiration = expiration;
+            cancelled = false;
+            level = -1;
         }
     }
-    private final Map<Long, TimerInfo> timers;
-    private final Map<Long, TimerInfo> addingTimers;
+    private final MultiMap<Long, Timer> timers;
+    private final MultiMap<Long, Timer> addingTimers;
+
+    //  Timers cancelled by the timers being executed, removed from the
+    //  maps once they are done iterating.
+    private final List<Timer> cancelledTimers;
+    private boolean executing;
+
+    //  If not null, timers are kept in this wheel instead of the maps.
+    private final TimerWheel wheel;
 
     protected PollerBase()
+    {
+        this(false);
+    }
+
+    protected PollerBase(boolean timerWheel)
     {
         load = new AtomicInteger(0);
-        timers = new MultiMap<Long, TimerInfo>();
-        addingTimers = new MultiMap<Long, TimerInfo>();
+        measured = Clock.nowMS();
+        activityTime = measured;
+        timers = new MultiMap<Long, Timer>();
+        addingTimers = new MultiMap<Long, Timer>();
+        cancelledTimers = new ArrayList<Timer>();
+        executing = false;
+        wheel = timerWheel ? new TimerWheel(Clock.monotonicMS()) : null;
     }
 
     //  Returns load of the poller. Note that this function can be
@@ -64,15 +107,95 @@ abstract class PollerBase
         load.addAndGet(amount);
     }
 
+    //  Returns the events handled plus kilobytes transferred per second
+    //  by the poller, recently. Note that this function can be invoked
+    //  from a different thread!
+    public final double getActivity()
+    {
+        long time = activityTime;
+        double rate = activity;
+
+        //  An idle poller may sleep without updating its rate, which then
+        //  halves every period it has not been updated for.
+        long periods = (Clock.nowMS() - time) / Config.IO_LOAD_PERIOD.getValue() - 1;
+        if (periods > 0) {
+            rate = periods >= 64 ? 0 : rate / (1L << periods);
+        }
+        return rate;
+    }
+
+    //  Called by individual poller implementations for each event handled.
+    protected final void countEvents(int count)
+    {
+        work += count;
+    }
+
+    //  Called by the objects living in the poller's thread for the bytes
+    //  they transfer.
+    public final void countBytes(int count)
+    {
+        workBytes += count;
+        if (workBytes >= 1024) {
+            work += workBytes >> 10;
+            workBytes &= 1023;
+        }
+    }
+
+    //  Updates the rate of work once per load period.
+    protected final void measure()
+    {
+        long now = Clock.nowMS();
+        long elapsed = now - measured;
+        if (elapsed < Config.IO_LOAD_PERIOD.getValue()) {
+            return;
+        }
+        double rate = work * 1000.0 / elapsed;
+
+        //  Weigh the new period like all the previous ones together.
+        activity = (getActivity() + rate) / 2;
+        activityTime = now;
+        work = 0;
+        measured = now;
+    }
+
     //  Add a timeout to expire in timeout_ milliseconds. After the
     //  expiration timerEvent on sink_ object will be called with
-    //  argument set to id_.
-    public void addTimer(long timeout, IPollEvents sink, int id)
+    //  argument set to id_. Returns the handle to cancel the timer with.
+    public Timer addTimer(long timeout, IPollEvents sink, int id)
     {
-        long expiration = Clock.nowMS() + timeout;
-        TimerInfo info = new TimerInfo(sink, id);
-        addingTimers.put(expiration, info);
+        long expiration = Clock.monotonicMS() + timeout;
+        Timer timer = new Timer(sink, id, expiration);
+        if (wheel != null) {
+            wheel.add(timer);
+        }
+        else {
+            addingTimers.put(expiration, timer);
+        }
+        return timer;
+    }
 
+    //  Cancel the timer of the given handle.
+    public void cancelTimer(Timer timer)
+    {
+        if (wheel != null) {
+            wheel.remove(timer);
+        }
+        else {
+            timer.cancelled = true;
+            if (executing) {
+                cancelledTimers.add(timer);
+            }
+            else {
+                removeTimer(timer);
+            }
+        }
+    }
+
+    private void removeTimer(Timer timer)
+    {
+        if (!timers.remove(timer.expiration, timer)) {
+            addingTimers.remove(timer.expiration, timer);
+        }
     }
 
     //  Cancel the timer created by sink_ object with ID equal to id_.
@@ -80,15 +203,24 @@ abstract class PollerBase
     {
         //  Complexity of this operation is O(n). We assume it is rarely used.
 
+        if (wheel != null) {
+            Timer timer = wheel.find(sink, id);
+            assert (timer != null);
+            if (timer != null) {
+                wheel.remove(timer);
+            }
+            return;
+        }
+
         if (!addingTimers.isEmpty()) {
             timers.putAll(addingTimers);
             addingTimers.clear();
         }
 
-        Iterator<Entry<Long, TimerInfo>> it = timers.entrySet().iterator();
+        Iterator<Entry<Long, Timer>> it = timers.entrySet().iterator();
         while (it.hasNext()) {
-            TimerInfo v = it.next().getValue();
-            if (v.sink == sink && v.id == id) {
+            Timer v = it.next().getValue();
+            if (!v.cancelled && v.sink == sink && v.id == id) {
                 it.remove();
                 return;
             }
@@ -101,6 +233,25 @@ abstract class PollerBase
     //  Executes any timers that are due. Returns number of milliseconds
     //  to wait to match the next timer or 0 meaning "no timers".
     protected long executeTimers()
+    {
+        if (wheel != null) {
+            return wheel.execute(Clock.monotonicMS());
+        }
+
+        executing = true;
+        try {
+            return executeDueTimers();
+        }
+        finally {
+            executing = false;
+            for (Timer timer : cancelledTimers) {
+                removeTimer(timer);
+            }
+            cancelledTimers.clear();
+        }
+    }
+
+    private long executeDueTimers()
     {
         if (!addingTimers.isEmpty()) {
             timers.putAll(addingTimers);
@@ -112,12 +263,16 @@ abstract class PollerBase
         }
 
         //  Get the current time.
-        long current = Clock.nowMS();
+        long current = Clock.monotonicMS();
 
         //   Execute the timers that are already due.
-        Iterator<Entry<Long, TimerInfo>> it = timers.entrySet().iterator();
+        Iterator<Entry<Long, Timer>> it = timers.entrySet().iterator();
         while (it.hasNext()) {
-            Entry<Long, TimerInfo> o = it.next();
+            Entry<Long, Timer> o = it.next();
+            if (o.getValue().cancelled) {
+                it.remove();
+                continue;
+            }
             //  If we have to wait to execute the item, same will be true about
             //  all the following items (multimap is sorted). Thus we can stop
             //  checking the subsequent timers and return the time to wait for
@@ -134,7 +289,7 @@ abstract class PollerBase
         }
 
         if (!addingTimers.isEmpty()) {
-            return executeTimers();
+            return executeDueTimers();
         }
 
         //  There are no more timers.
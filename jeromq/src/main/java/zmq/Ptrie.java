@@ -0,0 +1,419 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+//  Path-compressed (Patricia) multi-trie. Same contract as Mtrie, but
+//  a chain of nodes without subscriptions or branches is collapsed into
+//  a single node labelled with the whole run of bytes. Children are kept
+//  in arrays sorted by their first byte, and a topic subscribed by a
+//  single pipe holds it without a set. Suited to large numbers of long
+//  topics sharing few prefixes.
+public class Ptrie implements IMtrie
+{
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final class Node
+    {
+        //  Bytes leading from the parent node to this one. Empty for
+        //  the root only.
+        private byte[] key;
+
+        //  Subscribed pipes: null, a single Pipe or a Set<Pipe>.
+        private Object pipes;
+
+        //  First byte of every child's key, sorted, and the children in
+        //  the same order. Null if the node has no children.
+        private byte[] firsts;
+        private Node[] children;
+
+        private Node(byte[] key)
+        {
+            this.key = key;
+        }
+
+        //  Returns the index of the child starting with c, or
+        //  -(insertion point) - 1 if there's none.
+        private int find(byte c)
+        {
+            if (firsts == null) {
+                return -1;
+            }
+            int lo = 0;
+            int hi = firsts.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                byte b = firsts[mid];
+                if (b < c) {
+                    lo = mid + 1;
+                }
+                else if (b > c) {
+                    hi = mid - 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        private void insert(int idx, Node child)
+        {
+            int count = firsts == null ? 0 : firsts.length;
+            byte[] newFirsts = new byte[count + 1];
+            Node[] newChildren = new Node[count + 1];
+            if (count > 0) {
+                System.arraycopy(firsts, 0, newFirsts, 0, idx);
+                System.arraycopy(firsts, idx, newFirsts, idx + 1, count - idx);
+                System.arraycopy(children, 0, newChildren, 0, idx);
+                System.arraycopy(children, idx, newChildren, idx + 1, count - idx);
+            }
+            newFirsts[idx] = child.key[0];
+            newChildren[idx] = child;
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        private void remove(int idx)
+        {
+            int count = firsts.length;
+            if (count == 1) {
+                firsts = null;
+                children = null;
+                return;
+            }
+            byte[] newFirsts = new byte[count - 1];
+            Node[] newChildren = new Node[count - 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, idx);
+            System.arraycopy(firsts, idx + 1, newFirsts, idx, count - idx - 1);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            System.arraycopy(children, idx + 1, newChildren, idx, count - idx - 1);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        //  Returns true if the topic had no subscribers before.
+        @SuppressWarnings("unchecked")
+        private boolean addPipe(Pipe pipe)
+        {
+            if (pipes == null) {
+                pipes = pipe;
+                return true;
+            }
+            if (pipes instanceof Pipe) {
+                if (pipes != pipe) {
+                    Set<Pipe> set = new HashSet<Pipe>(4);
+                    set.add((Pipe) pipes);
+                    set.add(pipe);
+                    pipes = set;
+                }
+            }
+            else {
+                ((Set<Pipe>) pipes).add(pipe);
+            }
+            return false;
+        }
+
+        //  Returns true if the pipe was subscribed to the topic.
+        @SuppressWarnings("unchecked")
+        private boolean removePipe(Pipe pipe)
+        {
+            if (pipes == null) {
+                return false;
+            }
+            if (pipes instanceof Pipe) {
+                if (pipes != pipe) {
+                    return false;
+                }
+                pipes = null;
+                return true;
+            }
+            Set<Pipe> set = (Set<Pipe>) pipes;
+            if (!set.remove(pipe)) {
+                return false;
+            }
+            if (set.size() == 1) {
+                pipes = set.iterator().next();
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void invoke(Mtrie.IMtrieHandler func, Object arg)
+        {
+            if (pipes instanceof Pipe) {
+                func.invoke((Pipe) pipes, null, 0, arg);
+            }
+            else {
+                for (Pipe it : (Set<Pipe>) pipes) {
+                    func.invoke(it, null, 0, arg);
+                }
+            }
+        }
+
+        private boolean isRedundant()
+        {
+            return pipes == null && firsts == null;
+        }
+
+        //  A node with no subscriptions and a single child can be merged
+        //  with it.
+        private boolean isMergeable()
+        {
+            return pipes == null && firsts != null && firsts.length == 1;
+        }
+    }
+
+    private final Node root;
+
+    public Ptrie()
+    {
+        root = new Node(EMPTY);
+    }
+
+    @Override
+    public boolean add(byte[] prefix, Pipe pipe)
+    {
+        return add(prefix, 0, pipe);
+    }
+
+    //  Add key to the trie. Returns true if it's a new subscription
+    //  rather than a duplicate.
+    @Override
+    public boolean add(byte[] prefix, int start, Pipe pipe)
+    {
+        int end = prefix == null ? start : prefix.length;
+        Node node = root;
+        int pos = start;
+        while (pos < end) {
+            int idx = node.find(prefix[pos]);
+            if (idx < 0) {
+                //  No child shares the next byte, hang the rest of the
+                //  prefix under a new leaf.
+                Node leaf = new Node(Arrays.copyOfRange(prefix, pos, end));
+                node.insert(-idx - 1, leaf);
+                node = leaf;
+                break;
+            }
+
+            Node child = node.children[idx];
+            int common = commonLength(child.key, prefix, pos, end);
+            if (common < child.key.length) {
+                //  The prefix ends or diverges within the child's key.
+                //  Split the child where it does.
+                Node split = new Node(Arrays.copyOf(child.key, common));
+                child.key = Arrays.copyOfRange(child.key, common, child.key.length);
+                split.firsts = new byte[] {child.key[0]};
+                split.children = new Node[] {child};
+                node.children[idx] = split;
+                child = split;
+            }
+            node = child;
+            pos += common;
+        }
+        return node.addPipe(pipe);
+    }
+
+    //  Remove specific subscription from the trie. Return true is it was
+    //  actually removed rather than de-duplicated.
+    @Override
+    public boolean rm(byte[] prefix, int start, Pipe pipe)
+    {
+        int end = prefix == null ? start : prefix.length;
+        Node grandparent = null;
+        int parentIdx = -1;
+        Node parent = null;
+        int idx = -1;
+        Node node = root;
+        int pos = start;
+        while (pos < end) {
+            int next = node.find(prefix[pos]);
+            if (next < 0) {
+                return false;
+            }
+            Node child = node.children[next];
+            int common = commonLength(child.key, prefix, pos, end);
+            if (common < child.key.length) {
+                //  The prefix ends within the child's key, there's no
+                //  subscription for it. It diverges otherwise.
+                return pos + common == end;
+            }
+            grandparent = parent;
+            parentIdx = idx;
+            parent = node;
+            idx = next;
+            node = child;
+            pos += common;
+        }
+
+        node.removePipe(pipe);
+        if (node.pipes != null) {
+            return false;
+        }
+
+        if (node == root) {
+            return true;
+        }
+
+        //  Prune the node if it was made redundant by the removal, or
+        //  merge it with its only child.
+        if (node.isRedundant()) {
+            parent.remove(idx);
+            if (parent != root && parent.isMergeable()) {
+                grandparent.children[parentIdx] = merge(parent);
+            }
+        }
+        else if (node.isMergeable()) {
+            parent.children[idx] = merge(node);
+        }
+        return true;
+    }
+
+    //  Remove all subscriptions for a specific peer from the trie.
+    //  If there are no subscriptions left on some topics, invoke the
+    //  supplied callback function.
+    @Override
+    public boolean rm(Pipe pipe, Mtrie.IMtrieHandler func, Object arg, boolean callOnUniq)
+    {
+        rmHelper(root, pipe, new byte[256], 0, func, arg, callOnUniq);
+        return true;
+    }
+
+    private void rmHelper(Node node, Pipe pipe, byte[] buff, int buffsize,
+                          Mtrie.IMtrieHandler func, Object arg, boolean callOnUniq)
+    {
+        //  Append the node's key to the buffer.
+        if (buffsize + node.key.length > buff.length) {
+            buff = Utils.realloc(buff, buffsize + node.key.length + 256);
+        }
+        System.arraycopy(node.key, 0, buff, buffsize, node.key.length);
+        buffsize += node.key.length;
+
+        //  Remove the subscription from this node.
+        if (node.removePipe(pipe)) {
+            if (!callOnUniq || node.pipes == null) {
+                func.invoke(null, buff, buffsize, arg);
+            }
+        }
+
+        if (node.firsts == null) {
+            return;
+        }
+
+        //  Prune the children made redundant by the removal and merge
+        //  those left with a single child of their own.
+        int removed = 0;
+        for (int i = 0; i != node.children.length; i++) {
+            Node child = node.children[i];
+            rmHelper(child, pipe, buff, buffsize, func, arg, callOnUniq);
+            if (child.isRedundant()) {
+                node.children[i] = null;
+                removed++;
+            }
+            else if (child.isMergeable()) {
+                node.children[i] = merge(child);
+            }
+        }
+        if (removed == node.children.length) {
+            node.firsts = null;
+            node.children = null;
+        }
+        else if (removed > 0) {
+            int count = node.children.length - removed;
+            byte[] firsts = new byte[count];
+            Node[] children = new Node[count];
+            int j = 0;
+            for (int i = 0; i != node.children.length; i++) {
+                if (node.children[i] != null) {
+                    firsts[j] = node.firsts[i];
+                    children[j] = node.children[i];
+                    j++;
+                }
+            }
+            node.firsts = firsts;
+            node.children = children;
+        }
+    }
+
+    //  Signal all the matching pipes.
+    @Override
+    public void match(byte[] data, int size, Mtrie.IMtrieHandler func, Object arg)
+    {
+        Node current = root;
+        int pos = 0;
+        while (true) {
+            //  Signal the pipes attached to this node.
+            if (current.pipes != null) {
+                current.invoke(func, arg);
+            }
+
+            //  If we are at the end of the message, there's nothing more to match.
+            if (pos == size) {
+                break;
+            }
+
+            int idx = current.find(data[pos]);
+            if (idx < 0) {
+                break;
+            }
+
+            //  The whole key of the child has to match, the first byte
+            //  already does.
+            Node child = current.children[idx];
+            byte[] key = child.key;
+            if (size - pos < key.length) {
+                break;
+            }
+            for (int i = 1; i < key.length; i++) {
+                if (key[i] != data[pos + i]) {
+                    return;
+                }
+            }
+            current = child;
+            pos += key.length;
+        }
+    }
+
+    //  Returns the node replacing the given one once merged with its
+    //  only child.
+    private static Node merge(Node node)
+    {
+        Node child = node.children[0];
+        byte[] key = new byte[node.key.length + child.key.length];
+        System.arraycopy(node.key, 0, key, 0, node.key.length);
+        System.arraycopy(child.key, 0, key, node.key.length, child.key.length);
+        child.key = key;
+        return child;
+    }
+
+    //  Number of leading bytes of key equal to prefix[pos..end).
+    private static int commonLength(byte[] key, byte[] prefix, int pos, int end)
+    {
+        int max = Math.min(key.length, end - pos);
+        int i = 0;
+        while (i < max && key[i] == prefix[pos + i]) {
+            i++;
+        }
+        return i;
+    }
+}
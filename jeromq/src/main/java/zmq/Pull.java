@@ -61,6 +61,16 @@ class Pull extends SocketBase
         fq.terminated(pipe);
     }
 
+    @Override
+    public boolean xsetsockopt(int option, Object optval)
+    {
+        if (option == ZMQ.ZMQ_FQ_QUANTUM) {
+            fq.setQuantum((Integer) optval);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public Msg xrecv()
     {
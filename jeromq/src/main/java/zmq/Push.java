@@ -61,6 +61,16 @@ public class Push extends SocketBase
         lb.terminated(pipe);
     }
 
+    @Override
+    public boolean xsetsockopt(int option, Object optval)
+    {
+        if (option == ZMQ.ZMQ_LB_STRATEGY) {
+            lb.setStrategy((Integer) optval);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public boolean xsend(Msg msg)
     {
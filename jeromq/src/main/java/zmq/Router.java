@@ -75,6 +75,10 @@ public class Router extends SocketBase
     //  Outbound pipes indexed by the peer IDs.
     private final Map<Blob, Outpipe> outpipes;
 
+    //  Outbound pipes of peers with four byte IDs, indexed by the ID read
+    //  as a big-endian int. Only used with ZMQ_ROUTER_INT_ID.
+    private final IntMap<Outpipe> intOutpipes;
+
     //  The pipe we are currently writing to.
     private Pipe currentOut;
 
@@ -91,6 +95,13 @@ public class Router extends SocketBase
 
     private boolean handover;
 
+    //  If true, generated peer IDs are plain four byte integers and
+    //  outgoing messages to such IDs are routed without copying them.
+    private boolean intIds;
+
+    //  True once a pipe was attached, the kind of IDs can't change anymore.
+    private boolean attached;
+
     public Router(Ctx parent, int tid, int sid)
     {
         super(parent, tid, sid);
@@ -102,6 +113,8 @@ public class Router extends SocketBase
         nextPeerId = Utils.generateRandom();
         mandatory = false;
         handover = false;
+        intIds = false;
+        attached = false;
 
         options.type = ZMQ.ZMQ_ROUTER;
 
@@ -111,6 +124,7 @@ public class Router extends SocketBase
 
         anonymousPipes = new HashSet<Pipe>();
         outpipes = new HashMap<Blob, Outpipe>();
+        intOutpipes = new IntMap<Outpipe>();
 
         //  TODO: Uncomment the following line when ROUTER will become true ROUTER
         //  rather than generic router socket.
@@ -126,6 +140,7 @@ public class Router extends SocketBase
     {
         assert (pipe != null);
 
+        attached = true;
         boolean identityOk = identifyPeer(pipe);
         if (identityOk) {
             fq.attach(pipe);
@@ -146,6 +161,18 @@ public class Router extends SocketBase
             handover = (Integer) optval == 1;
             return true;
         }
+        if (option == ZMQ.ZMQ_ROUTER_INT_ID) {
+            //  Too late once peers are attached.
+            if (attached) {
+                return false;
+            }
+            intIds = (Integer) optval == 1;
+            return true;
+        }
+        if (option == ZMQ.ZMQ_FQ_QUANTUM) {
+            fq.setQuantum((Integer) optval);
+            return true;
+        }
         return false;
     }
 
@@ -153,7 +180,7 @@ public class Router extends SocketBase
     public void xpipeTerminated(Pipe pipe)
     {
         if (!anonymousPipes.remove(pipe)) {
-            Outpipe old = outpipes.remove(pipe.getIdentity());
+            Outpipe old = removeOutpipe(pipe.getIdentity());
             assert (old != null);
 
             fq.terminated(pipe);
@@ -181,14 +208,10 @@ public class Router extends SocketBase
     @Override
     public void xwriteActivated(Pipe pipe)
     {
-        for (Map.Entry<Blob, Outpipe> it : outpipes.entrySet()) {
-            if (it.getValue().pipe == pipe) {
-                assert (!it.getValue().active);
-                it.getValue().active = true;
-                return;
-            }
-        }
-        assert (false);
+        Outpipe op = findOutpipe(pipe.getIdentity());
+        assert (op != null && op.pipe == pipe);
+        assert (!op.active);
+        op.active = true;
     }
 
     @Override
@@ -208,8 +231,13 @@ public class Router extends SocketBase
                 //  Find the pipe associated with the identity stored in the prefix.
                 //  If there's no such pipe just silently ignore the message, unless
                 //  mandatory is set.
-                Blob identity = Blob.createBlob(msg.data(), true);
-                Outpipe op = outpipes.get(identity);
+                Outpipe op;
+                if (intIds && msg.size() == 4) {
+                    op = intOutpipes.get(intId(msg));
+                }
+                else {
+                    op = outpipes.get(Blob.createBlob(msg.data(), true));
+                }
 
                 if (op != null) {
                     currentOut = op.pipe;
@@ -380,32 +408,26 @@ public class Router extends SocketBase
 
         if (msg.size() == 0) {
             //  Fall back on the auto-generation
-            ByteBuffer buf = ByteBuffer.allocate(5);
-            buf.put((byte) 0);
-            buf.putInt(nextPeerId++);
-            identity = Blob.createBlob(buf.array(), false);
+            identity = generateIdentity();
         }
         else {
             identity = Blob.createBlob(msg.data(), true);
 
-            if (outpipes.containsKey(identity)) {
+            if (findOutpipe(identity) != null) {
                 if (!handover) {
                     return false;
                 }
                 //  We will allow the new connection to take over this
                 //  identity. Temporarily assign a new identity to the
                 //  existing pipe so we can terminate it asynchronously.
-                ByteBuffer buf = ByteBuffer.allocate(5);
-                buf.put((byte) 0);
-                buf.putInt(nextPeerId++);
-                Blob newIdentity = Blob.createBlob(buf.array(), false);
+                Blob newIdentity = generateIdentity();
 
                 //  Remove the existing identity entry to allow the new
                 //  connection to take the identity.
-                Outpipe existingOutpipe = outpipes.remove(identity);
+                Outpipe existingOutpipe = removeOutpipe(identity);
                 existingOutpipe.pipe.setIdentity(newIdentity);
 
-                outpipes.put(newIdentity, existingOutpipe);
+                putOutpipe(newIdentity, existingOutpipe);
 
                 existingOutpipe.pipe.terminate(true);
             }
@@ -414,8 +436,67 @@ public class Router extends SocketBase
         pipe.setIdentity(identity);
         //  Add the record into output pipes lookup table
         Outpipe outpipe = new Outpipe(pipe, true);
-        outpipes.put(identity, outpipe);
+        putOutpipe(identity, outpipe);
 
         return true;
     }
+
+    private Blob generateIdentity()
+    {
+        if (!intIds) {
+            ByteBuffer buf = ByteBuffer.allocate(5);
+            buf.put((byte) 0);
+            buf.putInt(nextPeerId++);
+            return Blob.createBlob(buf.array(), false);
+        }
+        //  Peers may have picked four byte identities of their own, skip
+        //  the IDs already taken.
+        while (intOutpipes.containsKey(nextPeerId)) {
+            nextPeerId++;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.putInt(nextPeerId++);
+        return Blob.createBlob(buf.array(), false);
+    }
+
+    //  With integer IDs, every identity of four bytes lives in the int
+    //  map, whether generated or assigned by the peer.
+    private Outpipe findOutpipe(Blob identity)
+    {
+        if (intIds && identity.size() == 4) {
+            return intOutpipes.get(intId(identity.data()));
+        }
+        return outpipes.get(identity);
+    }
+
+    private void putOutpipe(Blob identity, Outpipe outpipe)
+    {
+        if (intIds && identity.size() == 4) {
+            intOutpipes.put(intId(identity.data()), outpipe);
+        }
+        else {
+            outpipes.put(identity, outpipe);
+        }
+    }
+
+    private Outpipe removeOutpipe(Blob identity)
+    {
+        if (intIds && identity.size() == 4) {
+            return intOutpipes.remove(intId(identity.data()));
+        }
+        return outpipes.remove(identity);
+    }
+
+    private static int intId(byte[] data)
+    {
+        return (data[0] & 0xff) << 24 | (data[1] & 0xff) << 16
+                | (data[2] & 0xff) << 8 | (data[3] & 0xff);
+    }
+
+    //  Reads the ID straight from the message, without copying it out.
+    private static int intId(Msg msg)
+    {
+        return (msg.get(0) & 0xff) << 24 | (msg.get(1) & 0xff) << 16
+                | (msg.get(2) & 0xff) << 8 | (msg.get(3) & 0xff);
+    }
 }
@@ -150,6 +150,8 @@ class SessionBase extends Own implements
     {
         assert (pipe == null);
 
+        ioThread.unregister(this);
+
         //  If there's still a pending linger timer, remove it.
         if (hasLingerTimer) {
             ioObject.cancelTimer(LINGER_TIMER_ID);
@@ -331,11 +333,64 @@ class SessionBase extends Own implements
     protected void processPlug()
     {
         ioObject.setHandler(this);
+        ioThread.register(this);
         if (connect) {
             startConnecting(false);
         }
     }
 
+    long getAffinity()
+    {
+        return options.affinity;
+    }
+
+    //  Returns the activity of the engine since the last call.
+    long takeActivity()
+    {
+        if (engine instanceof StreamEngine) {
+            return ((StreamEngine) engine).takeActivity();
+        }
+        return 0;
+    }
+
+    //  A session is moved once at most, from the I/O thread it was
+    //  created in, for the commands forwarded from there to stay in order.
+    boolean isMigratable()
+    {
+        return host() == null && !isTerminating() && !hasLingerTimer
+                && terminatingPipes.isEmpty() && engine instanceof StreamEngine
+                && ((StreamEngine) engine).isMigratable();
+    }
+
+    //  Hands the session and its engine over to another I/O thread. The
+    //  commands for the session and its pipe keep being sent to this
+    //  thread, which forwards them.
+    void migrate(IOThread target)
+    {
+        assert (isMigratable());
+
+        ((StreamEngine) engine).unplugPoller();
+        ioObject.unplug();
+        ioThread.unregister(this);
+
+        ioThread = target;
+        setHost(target);
+        if (pipe != null) {
+            pipe.setHost(target);
+        }
+        sendMigrate(this, target);
+    }
+
+    @Override
+    protected void processMigrate()
+    {
+        ioObject.plug(ioThread);
+        ioObject.setHandler(this);
+        if (engine != null) {
+            ((StreamEngine) engine).plugPoller(ioThread);
+        }
+    }
+
     @Override
     protected void processAttach(IEngine engine)
     {
@@ -348,6 +403,7 @@ class SessionBase extends Own implements
             int[] hwms = {options.recvHwm, options.sendHwm};
             boolean[] delays = {options.delayOnClose, options.delayOnDisconnect};
             Pipe.pipepair(parents, pipes, hwms, delays);
+            pipes[1].setScheduling(options);
 
             //  Plug the local end of the pipe.
             pipes[0].setEventSink(this);
@@ -488,6 +544,13 @@ class SessionBase extends Own implements
             return;
         }
 
+        if (addr.protocol().equals("shm")) {
+            ShmConnecter connecter = new ShmConnecter(
+                ioThread, this, options, addr, wait);
+            launchChild(connecter);
+            return;
+        }
+
         assert (false);
     }
 
@@ -0,0 +1,58 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+
+//  Address of a shm:// endpoint. The name designates the ipc socket the
+//  listener accepts connections on, in the temporary directory; the
+//  shared memory of each connection is set up over that socket.
+public class ShmAddress extends IpcAddress
+{
+    private String shmName;
+
+    @Override
+    public String toString()
+    {
+        if (shmName == null) {
+            return "";
+        }
+
+        return "shm://" + shmName;
+    }
+
+    @Override
+    public void resolve(String name, boolean ip4only)
+    {
+        shmName = name;
+        super.resolve(controlPath(name), ip4only);
+    }
+
+    public String shmName()
+    {
+        return shmName;
+    }
+
+    //  Path of the socket accepting the connections to the named endpoint.
+    public static String controlPath(String name)
+    {
+        return new File(System.getProperty("java.io.tmpdir"), "jeromq-shm-" + name).getPath();
+    }
+}
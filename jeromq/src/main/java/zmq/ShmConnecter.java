@@ -0,0 +1,40 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.channels.SocketChannel;
+
+//  Connecter of the shm:// transport. Once connected to the listener's
+//  ipc socket, it creates the memory shared by the two ends.
+public class ShmConnecter extends IpcConnecter
+{
+    public ShmConnecter(IOThread ioThread,
+            SessionBase session, final Options options,
+            final Address addr, boolean wait)
+    {
+        super(ioThread, session, options, addr, wait);
+    }
+
+    @Override
+    protected IEngine createEngine(SocketChannel fd, String endpoint)
+    {
+        return new ShmEngine(fd, options, endpoint, true);
+    }
+}
@@ -0,0 +1,476 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+//  Engine of the shm:// transport. The connecting end creates a file in
+//  the temporary directory holding two rings, one per direction, maps it
+//  and sends its path over the socket; the accepting end maps it in turn
+//  and removes it. From then on the socket only carries one-byte wake-ups,
+//  sent when the peer went to sleep on an empty or full ring.
+public class ShmEngine implements IEngine, IPollEvents
+{
+    //  "ZSHM", followed by the ring capacity.
+    private static final int MAGIC = 0x5a53484d;
+    private static final int FILE_HEADER = 64;
+
+    private SocketChannel handle;
+    private final Options options;
+    private final String endpoint;
+
+    //  Shared memory file whose path hasn't been sent yet. Once it has,
+    //  removing it is up to the peer.
+    private File file;
+
+    //  Rings to the peer and from it, null until mapped.
+    private ShmRing out;
+    private ShmRing in;
+
+    //  Path of the shared memory file, being sent by the connecting end
+    //  or received by the accepting one.
+    private ByteBuffer handshake;
+    private boolean lengthReceived;
+
+    private final ByteBuffer wakeup;
+    private final ByteBuffer drain;
+
+    //  Message being copied into the ring, and how much of it has been.
+    private Msg outMsg;
+    private int outOffset;
+
+    //  Message read from the ring that the session couldn't accept yet.
+    private Msg inMsg;
+
+    //  True once the peer has closed the connection. What's left in the
+    //  ring is still delivered before detaching.
+    private boolean peerClosed;
+
+    private boolean ioEnabled;
+    private boolean plugged;
+    private SessionBase session;
+    private SocketBase socket;
+    private IOObject ioObject;
+
+    public ShmEngine(SocketChannel handle, final Options options, final String endpoint,
+            boolean create)
+    {
+        this.handle = handle;
+        this.options = options;
+        this.endpoint = endpoint;
+        wakeup = ByteBuffer.allocate(1);
+        drain = ByteBuffer.allocate(64);
+
+        try {
+            Utils.unblockSocket(this.handle);
+            if (create) {
+                create(Config.SHM_RING_SIZE.getValue());
+            }
+            else {
+                handshake = ByteBuffer.allocate(2);
+            }
+        }
+        catch (IOException e) {
+            throw new ZError.InstantiationException(e);
+        }
+    }
+
+    private void create(int capacity) throws IOException
+    {
+        file = File.createTempFile("jeromq-shm-", ".ring");
+        //  Every message goes through the file, keep other users out of it
+        //  before anything is written there.
+        if (!file.setReadable(false, false) || !file.setReadable(true, true)
+                || !file.setWritable(false, false) || !file.setWritable(true, true)
+                || !file.setExecutable(false, false)) {
+            file.delete();
+            file = null;
+            throw new IOException("Cannot restrict access to the shared memory file");
+        }
+        int ringSize = ShmRing.size(capacity);
+        MappedByteBuffer region = map(file, FILE_HEADER + 2 * ringSize);
+        region.putInt(0, MAGIC);
+        region.putInt(4, capacity);
+        ShmRing.format(region, FILE_HEADER);
+        ShmRing.format(region, FILE_HEADER + ringSize);
+        out = new ShmRing(region, FILE_HEADER, capacity);
+        in = new ShmRing(region, FILE_HEADER + ringSize, capacity);
+
+        byte[] path = file.getPath().getBytes(ZMQ.CHARSET);
+        handshake = ByteBuffer.allocate(2 + path.length);
+        handshake.putShort((short) path.length).put(path).flip();
+    }
+
+    //  Maps the file created by the connecting end. Returns false if it
+    //  isn't one. Since the path comes from whoever connected, only a
+    //  ring file in the temporary directory is accepted, and it isn't
+    //  removed before its header has been checked.
+    private boolean open(File path) throws IOException
+    {
+        File dir = new File(System.getProperty("java.io.tmpdir")).getCanonicalFile();
+        File canonical = path.getCanonicalFile();
+        String name = canonical.getName();
+        if (!dir.equals(canonical.getParentFile())
+                || !name.startsWith("jeromq-shm-") || !name.endsWith(".ring")
+                || !canonical.isFile()) {
+            return false;
+        }
+        long length = canonical.length();
+        if (length < FILE_HEADER || length > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(canonical, "rw");
+        MappedByteBuffer region;
+        int capacity;
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            FileChannel channel = raf.getChannel();
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) == -1) {
+                    return false;
+                }
+            }
+            capacity = header.getInt(4);
+            if (header.getInt(0) != MAGIC || capacity < 64 || Integer.bitCount(capacity) != 1
+                    || length != FILE_HEADER + 2L * ShmRing.size(capacity)) {
+                return false;
+            }
+            region = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            region.order(ByteOrder.nativeOrder());
+        }
+        finally {
+            raf.close();
+        }
+        canonical.delete();
+
+        in = new ShmRing(region, FILE_HEADER, capacity);
+        out = new ShmRing(region, FILE_HEADER + ShmRing.size(capacity), capacity);
+        return true;
+    }
+
+    private static MappedByteBuffer map(File path, int size) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(path, "rw");
+        try {
+            raf.setLength(size);
+            MappedByteBuffer region = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            region.order(ByteOrder.nativeOrder());
+            return region;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    public void destroy()
+    {
+        assert (!plugged);
+
+        if (handle != null) {
+            try {
+                handle.close();
+            }
+            catch (IOException e) {
+            }
+            handle = null;
+        }
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+        in = null;
+        out = null;
+    }
+
+    @Override
+    public void plug(IOThread ioThread, SessionBase session)
+    {
+        assert (!plugged);
+        plugged = true;
+
+        assert (this.session == null);
+        assert (session != null);
+        this.session = session;
+        socket = session.getSocket();
+
+        ioObject = new IOObject(null);
+        ioObject.setHandler(this);
+        ioObject.plug(ioThread);
+        ioObject.addHandle(handle);
+        ioObject.setPollIn(handle);
+        ioEnabled = true;
+
+        if (out != null) {
+            ioObject.setPollOut(handle);
+            outEvent();
+        }
+
+        //  Process whatever the peer may have sent already.
+        inEvent();
+    }
+
+    private void unplug()
+    {
+        assert (plugged);
+        plugged = false;
+
+        if (ioEnabled) {
+            ioObject.removeHandle(handle);
+            ioEnabled = false;
+        }
+        ioObject.unplug();
+        session = null;
+    }
+
+    @Override
+    public void terminate()
+    {
+        unplug();
+        destroy();
+    }
+
+    @Override
+    public void inEvent()
+    {
+        if (in == null && !receiveHandshake()) {
+            return;
+        }
+
+        //  Wake-ups carry no data, they only tell there's something to do.
+        while (true) {
+            drain.clear();
+            int n;
+            try {
+                n = handle.read(drain);
+            }
+            catch (IOException e) {
+                n = -1;
+            }
+            if (n == -1) {
+                peerClosed = true;
+                ioObject.removeHandle(handle);
+                ioEnabled = false;
+                break;
+            }
+            if (n < drain.capacity()) {
+                break;
+            }
+        }
+
+        receive();
+        if (!peerClosed) {
+            send();
+        }
+    }
+
+    //  Reads the path of the shared memory file. Returns true once it
+    //  has been mapped.
+    private boolean receiveHandshake()
+    {
+        try {
+            if (handle.read(handshake) == -1) {
+                error();
+                return false;
+            }
+            if (handshake.hasRemaining()) {
+                return false;
+            }
+            if (!lengthReceived) {
+                lengthReceived = true;
+                handshake = ByteBuffer.allocate(handshake.getShort(0) & 0xffff);
+                return receiveHandshake();
+            }
+            String path = new String(handshake.array(), ZMQ.CHARSET);
+            handshake = null;
+            if (!open(new File(path))) {
+                error();
+                return false;
+            }
+        }
+        catch (IOException e) {
+            error();
+            return false;
+        }
+        catch (RuntimeException e) {
+            //  A file altered under us can still fail to map.
+            error();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void outEvent()
+    {
+        //  Only the path of the shared memory file goes through the socket.
+        if (handshake == null) {
+            ioObject.resetPollOut(handle);
+            return;
+        }
+        try {
+            handle.write(handshake);
+        }
+        catch (IOException e) {
+            ioObject.resetPollOut(handle);
+            return;
+        }
+        if (!handshake.hasRemaining()) {
+            ioObject.resetPollOut(handle);
+            handshake = null;
+            file = null;
+            send();
+        }
+    }
+
+    //  Moves messages from the ring to the session, until either is out
+    //  of them or of room.
+    private void receive()
+    {
+        while (true) {
+            Msg msg = inMsg;
+            if (msg == null) {
+                msg = in.read(socket.getCtx().getMsgPool());
+            }
+            if (msg == null) {
+                if (peerClosed) {
+                    session.flush();
+                    error();
+                    return;
+                }
+                if (in.sleepConsumer()) {
+                    break;
+                }
+                continue;
+            }
+            if (session.pushMsg(msg) != 0) {
+                //  The session will call activateIn() once it has room.
+                inMsg = msg;
+                break;
+            }
+            inMsg = null;
+        }
+        session.flush();
+        if (in.release()) {
+            signal();
+        }
+    }
+
+    //  Moves messages from the session to the ring, until either is out
+    //  of them or of room.
+    private void send()
+    {
+        if (handshake != null) {
+            return;
+        }
+        while (true) {
+            if (outMsg == null) {
+                //  The session will call activateOut() once it has more.
+                outMsg = session.pullMsg();
+                if (outMsg == null) {
+                    break;
+                }
+                outOffset = 0;
+            }
+            int n = out.write(outMsg, outOffset);
+            if (n == -1) {
+                //  Let the consumer catch up, it wakes us up once it has
+                //  freed some space.
+                if (out.commit()) {
+                    signal();
+                }
+                out.sleepProducer();
+                n = out.write(outMsg, outOffset);
+                if (n == -1) {
+                    return;
+                }
+            }
+            outOffset += n;
+            if (outOffset == outMsg.size()) {
+                outMsg = null;
+            }
+        }
+        if (out.commit()) {
+            signal();
+        }
+    }
+
+    private void signal()
+    {
+        //  A full socket buffer means the peer has wake-ups pending already.
+        wakeup.clear();
+        try {
+            handle.write(wakeup);
+        }
+        catch (IOException e) {
+            //  The disconnection is noticed when reading.
+        }
+    }
+
+    @Override
+    public void connectEvent()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void acceptEvent()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void timerEvent(int id)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void activateOut()
+    {
+        if (out != null && !peerClosed) {
+            send();
+        }
+    }
+
+    @Override
+    public void activateIn()
+    {
+        if (in != null) {
+            receive();
+        }
+    }
+
+    private void error()
+    {
+        assert (session != null);
+        socket.eventDisconnected(endpoint, handle);
+        session.detach();
+        unplug();
+        destroy();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.channels.SocketChannel;
+
+//  Listener of the shm:// transport. Connections are accepted on an ipc
+//  socket and then carry wake-ups only, messages go through the memory
+//  shared by the two ends.
+public class ShmListener extends IpcListener
+{
+    private final ShmAddress address;
+
+    public ShmListener(IOThread ioThread, SocketBase socket, final Options options)
+    {
+        this(ioThread, socket, options, new ShmAddress());
+    }
+
+    private ShmListener(IOThread ioThread, SocketBase socket, final Options options,
+            ShmAddress address)
+    {
+        super(ioThread, socket, options, address);
+
+        this.address = address;
+    }
+
+    @Override
+    public int setAddress(String addr)
+    {
+        //  There's no such thing as a temporary name for shared memory.
+        if (addr.equals("*")) {
+            return ZError.EINVAL;
+        }
+        return super.setAddress(addr);
+    }
+
+    @Override
+    protected IEngine createEngine(SocketChannel fd)
+    {
+        return new ShmEngine(fd, options, getAddress(), false);
+    }
+
+    @Override
+    protected Address peerAddress(SocketChannel fd)
+    {
+        return new Address("shm", address.shmName(), true);
+    }
+}
@@ -0,0 +1,398 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//  Single-producer single-consumer ring of messages laid out in a region
+//  of shared memory, one per direction of a shm:// connection. The region
+//  starts with a control block holding the producer and consumer cursors
+//  and the flags each side raises before going to sleep, on separate cache
+//  lines, followed by the data area.
+//
+//  Cursors are byte positions that only grow; the data area size is a
+//  power of two. Each record is an 8-byte header (message size and flags)
+//  followed by a chunk of the payload, padded to 8 bytes. Messages larger
+//  than a quarter of the ring are split into several records, every one
+//  repeating the header, so that the consumer can tell the chunk sizes from
+//  the message size alone. A negative size marks the padding left at the
+//  end of the data area when a record doesn't fit there.
+//
+//  The other process sees the memory through its own mapping, so ordering
+//  can't rely on the Java memory model and takes explicit fences: release
+//  before a cursor update, acquire after a cursor read, and a full fence
+//  between raising a flag or moving a cursor and reading what the other
+//  side raised or moved, without which a wake-up could be lost. Fences are
+//  only paid for when a cursor actually moves or is found to. They come
+//  from VarHandle (Java 9 and later) or Unsafe, reached through reflection
+//  so that the code still builds and runs on Android; where neither has
+//  them shm:// isn't supported.
+public class ShmRing
+{
+    private static final int TAIL = 0;
+    private static final int HEAD = 64;
+    private static final int CONSUMER_WAITING = 128;
+    private static final int PRODUCER_WAITING = 192;
+
+    //  Size of the control block preceding the data area.
+    public static final int CONTROL_SIZE = 256;
+
+    private static final int RECORD_HEADER = 8;
+    private static final int PADDING = -1;
+
+    private static final Object FENCES;
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final Method FULL_FENCE;
+    private static final Method RELEASE_FENCE;
+    private static final Method ACQUIRE_FENCE;
+
+    static
+    {
+        Object fences = null;
+        Method full = null;
+        Method release = null;
+        Method acquire = null;
+        try {
+            Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+            full = varHandle.getMethod("fullFence");
+            release = varHandle.getMethod("releaseFence");
+            acquire = varHandle.getMethod("acquireFence");
+        }
+        catch (ClassNotFoundException e) {
+            full = null;
+        }
+        catch (NoSuchMethodException e) {
+            full = null;
+        }
+        if (full == null) {
+            try {
+                Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+                Field field = unsafe.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                fences = field.get(null);
+                full = unsafe.getMethod("fullFence");
+                release = unsafe.getMethod("storeFence");
+                acquire = unsafe.getMethod("loadFence");
+            }
+            catch (ClassNotFoundException e) {
+                full = null;
+            }
+            catch (NoSuchFieldException e) {
+                full = null;
+            }
+            catch (NoSuchMethodException e) {
+                full = null;
+            }
+            catch (IllegalAccessException e) {
+                full = null;
+            }
+            catch (RuntimeException e) {
+                //  Access denied by a security manager or the module system.
+                full = null;
+            }
+        }
+        if (full == null) {
+            FENCES = null;
+            FULL_FENCE = null;
+            RELEASE_FENCE = null;
+            ACQUIRE_FENCE = null;
+        }
+        else {
+            FENCES = fences;
+            FULL_FENCE = full;
+            RELEASE_FENCE = release;
+            ACQUIRE_FENCE = acquire;
+        }
+    }
+
+    private final ByteBuffer control;
+    private final ByteBuffer data;
+
+    //  Views of the data area used to copy payloads in and out.
+    private final ByteBuffer writeView;
+    private final ByteBuffer readView;
+    private final int capacity;
+    private final int mask;
+    private final int maxChunk;
+
+    //  Producer side: next position to write, and last known consumer
+    //  position.
+    private long tail;
+    private long cachedHead;
+
+    //  Last positions made visible to the other side. Nothing to publish
+    //  means no fences to pay for.
+    private long committed;
+    private long released;
+
+    //  Consumer side: next position to read, last known producer position
+    //  and the message being assembled from several records.
+    private long head;
+    private long cachedTail;
+    private Msg partial;
+    private int received;
+
+    //  True if the runtime provides the fences the ring needs.
+    public static boolean isSupported()
+    {
+        return FULL_FENCE != null;
+    }
+
+    //  Wraps the ring starting at offset in region, of the given data
+    //  capacity.
+    public ShmRing(ByteBuffer region, int offset, int capacity)
+    {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("shm");
+        }
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity=" + capacity);
+        }
+        ByteBuffer dup = region.duplicate();
+        dup.position(offset).limit(offset + CONTROL_SIZE);
+        control = dup.slice().order(ByteOrder.nativeOrder());
+        dup.limit(offset + CONTROL_SIZE + capacity).position(offset + CONTROL_SIZE);
+        data = dup.slice().order(ByteOrder.nativeOrder());
+        writeView = data.duplicate();
+        readView = data.duplicate();
+        this.capacity = capacity;
+        mask = capacity - 1;
+        maxChunk = capacity / 4;
+
+        tail = control.getLong(TAIL);
+        cachedHead = control.getLong(HEAD);
+        head = cachedHead;
+        cachedTail = tail;
+        committed = tail;
+        released = head;
+    }
+
+    //  Total number of bytes a ring of the given capacity takes.
+    public static int size(int capacity)
+    {
+        return CONTROL_SIZE + capacity;
+    }
+
+    //  Initialises the control block of a fresh ring. Both sides start
+    //  asleep, so that the first message and the first freed space are
+    //  signalled.
+    public static void format(ByteBuffer region, int offset)
+    {
+        region.putLong(offset + TAIL, 0);
+        region.putLong(offset + HEAD, 0);
+        region.putInt(offset + CONSUMER_WAITING, 1);
+        region.putInt(offset + PRODUCER_WAITING, 1);
+    }
+
+    //  Copies the message, or its next chunk, into the ring. Returns the
+    //  number of payload bytes written starting at offset, or -1 if there
+    //  isn't room for the record. The record isn't visible to the consumer
+    //  until commit() is called.
+    public int write(Msg msg, int offset)
+    {
+        int size = msg.size();
+        int chunk = Math.min(size - offset, maxChunk);
+        int length = RECORD_HEADER + align(chunk);
+
+        int index = (int) (tail & mask);
+        int contiguous = capacity - index;
+        int needed = length > contiguous ? contiguous + length : length;
+        if (!hasRoom(needed)) {
+            return -1;
+        }
+        if (length > contiguous) {
+            data.putInt(index, PADDING);
+            tail += contiguous;
+            index = 0;
+        }
+
+        data.putInt(index, size);
+        data.putInt(index + 4, msg.flags() & Msg.MORE);
+        if (chunk > 0) {
+            writeView.limit(index + RECORD_HEADER + chunk).position(index + RECORD_HEADER);
+            msg.getBytes(offset, writeView, chunk);
+        }
+        tail += length;
+        return chunk;
+    }
+
+    private boolean hasRoom(int needed)
+    {
+        if (tail + needed - cachedHead <= capacity) {
+            return true;
+        }
+        cachedHead = control.getLong(HEAD);
+        if (tail + needed - cachedHead > capacity) {
+            return false;
+        }
+        acquireFence();
+        return true;
+    }
+
+    //  Publishes the records written so far. Returns true if the consumer
+    //  is asleep and has to be woken up.
+    public boolean commit()
+    {
+        if (tail == committed) {
+            //  The consumer saw this position before going to sleep.
+            return false;
+        }
+        committed = tail;
+        releaseFence();
+        control.putLong(TAIL, tail);
+        fullFence();
+        if (control.getInt(CONSUMER_WAITING) == 0) {
+            return false;
+        }
+        control.putInt(CONSUMER_WAITING, 0);
+        return true;
+    }
+
+    //  Returns the next complete message, or null if there's none yet.
+    public Msg read(BufferPool pool)
+    {
+        while (true) {
+            if (head == cachedTail) {
+                cachedTail = control.getLong(TAIL);
+                acquireFence();
+                if (head == cachedTail) {
+                    return null;
+                }
+            }
+
+            int index = (int) (head & mask);
+            int size = data.getInt(index);
+            if (size == PADDING) {
+                head += capacity - index;
+                continue;
+            }
+            int flags = data.getInt(index + 4);
+            int chunk = Math.min(size - received, maxChunk);
+            head += RECORD_HEADER + align(chunk);
+
+            if (partial == null) {
+                if (size == 0) {
+                    partial = new Msg();
+                }
+                else if (pool != null) {
+                    partial = pool.allocate(size);
+                }
+                else {
+                    partial = new Msg(size);
+                }
+            }
+            if (chunk > 0) {
+                readView.limit(index + RECORD_HEADER + chunk).position(index + RECORD_HEADER);
+                partial.put(readView);
+                received += chunk;
+            }
+            if (received == size) {
+                Msg msg = partial;
+                msg.setFlags(flags);
+                partial = null;
+                received = 0;
+                return msg;
+            }
+        }
+    }
+
+    //  Hands the space read so far back to the producer. Returns true if
+    //  the producer is asleep and has to be woken up.
+    public boolean release()
+    {
+        if (head == released) {
+            //  The producer saw this position before going to sleep.
+            return false;
+        }
+        released = head;
+        releaseFence();
+        control.putLong(HEAD, head);
+        fullFence();
+        if (control.getInt(PRODUCER_WAITING) == 0) {
+            return false;
+        }
+        control.putInt(PRODUCER_WAITING, 0);
+        return true;
+    }
+
+    //  Called by the consumer before going to sleep. Returns false if
+    //  messages arrived meanwhile, in which case it should keep reading.
+    public boolean sleepConsumer()
+    {
+        control.putInt(CONSUMER_WAITING, 1);
+        fullFence();
+        cachedTail = control.getLong(TAIL);
+        if (head == cachedTail) {
+            return true;
+        }
+        acquireFence();
+        control.putInt(CONSUMER_WAITING, 0);
+        return false;
+    }
+
+    //  Called by the producer when the ring is full. It has to retry the
+    //  write afterwards, as the consumer may have freed space meanwhile;
+    //  if so the next wake-up is a spurious one.
+    public void sleepProducer()
+    {
+        control.putInt(PRODUCER_WAITING, 1);
+        fullFence();
+    }
+
+    //  Orders the preceding loads and stores before the following ones.
+    private static void fullFence()
+    {
+        fence(FULL_FENCE);
+    }
+
+    //  Orders the preceding loads and stores before the following stores.
+    private static void releaseFence()
+    {
+        fence(RELEASE_FENCE);
+    }
+
+    //  Orders the preceding loads before the following loads and stores.
+    private static void acquireFence()
+    {
+        fence(ACQUIRE_FENCE);
+    }
+
+    private static void fence(Method method)
+    {
+        try {
+            method.invoke(FENCES, NO_ARGS);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int align(int size)
+    {
+        return (size + 7) & ~7;
+    }
+}
@@ -26,20 +26,39 @@ import java.nio.channels.Pipe;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 //  This is a cross-platform equivalent to signal_fd. However, as opposed
 //  to signal_fd there can be at most one signal in the signaler at any
 //  given moment. Attempt to send a signal before receiving the previous
 //  one will result in undefined behaviour.
+//
+//  The pipe and selector are only opened once somebody asks for the file
+//  descriptor (to poll on it). Until then, the reader spins for a while
+//  and then parks its thread, and the sender simply unparks it. Virtual
+//  threads always park, straight away, so that they do not hold their
+//  carrier thread while waiting.
 
 public class Signaler
         implements Closeable
 {
-    //  Underlying write & read file descriptor.
-    private final Pipe.SinkChannel w;
-    private final Pipe.SourceChannel r;
-    private final Selector selector;
+    //  Number of checks before a waiting reader parks its thread.
+    private static final int SPIN_COUNT = 1000;
+
+    //  Underlying write & read file descriptor, opened on demand.
+    private volatile Pipe.SinkChannel w;
+    private Pipe.SourceChannel r;
+    private Selector selector;
+
+    //  Serialises opening the pipe with the senders that do not see it yet.
+    private final Lock sync = new ReentrantLock();
+
+    //  Thread parked in waitEvent, if any.
+    private volatile Thread waiter;
 
     // Selector.selectNow at every sending message doesn't show enough performance
     private final AtomicInteger wcursor = new AtomicInteger(0);
@@ -47,40 +66,20 @@ public class Signaler
 
     public Signaler()
     {
-        //  Create the socketpair for signaling.
-        Pipe pipe;
-
-        try {
-            pipe = Pipe.open();
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
-        r = pipe.source();
-        w = pipe.sink();
-
-        //  Set both fds to non-blocking mode.
-        try {
-            Utils.unblockSocket(w);
-            Utils.unblockSocket(r);
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
-
-        try {
-            selector = Selector.open();
-            r.register(selector, SelectionKey.OP_READ);
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
-
     }
 
     @Override
     public void close() throws IOException
     {
+        sync.lock();
+        try {
+            if (w == null) {
+                return;
+            }
+        }
+        finally {
+            sync.unlock();
+        }
         IOException exception = null;
         try {
             r.close();
@@ -105,12 +104,95 @@ public class Signaler
         }
     }
 
+    //  Returns the channel that becomes readable when a signal is pending.
+    //  Must be called from the receiving thread.
     public SelectableChannel getFd()
     {
+        sync.lock();
+        try {
+            if (w == null) {
+                open();
+            }
+        }
+        finally {
+            sync.unlock();
+        }
         return r;
     }
 
+    private void open()
+    {
+        //  Create the socketpair for signaling.
+        Pipe pipe;
+
+        try {
+            pipe = Pipe.open();
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+        r = pipe.source();
+
+        //  Set both fds to non-blocking mode.
+        try {
+            Utils.unblockSocket(pipe.sink());
+            Utils.unblockSocket(r);
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+
+        try {
+            selector = Selector.open();
+            r.register(selector, SelectionKey.OP_READ);
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+
+        //  A signal sent before the pipe existed has to be visible on it.
+        if (rcursor < wcursor.get()) {
+            write(pipe.sink());
+        }
+        w = pipe.sink();
+    }
+
     public void send()
+    {
+        Pipe.SinkChannel sink = w;
+        if (sink == null) {
+            sync.lock();
+            try {
+                sink = w;
+                if (sink == null) {
+                    wcursor.incrementAndGet();
+                }
+            }
+            finally {
+                sync.unlock();
+            }
+            if (sink == null) {
+                Thread thread = waiter;
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                }
+                return;
+            }
+        }
+        //  Count the signal before writing the byte. A reader woken up by
+        //  the byte must find the signal, or it would keep being woken up
+        //  by the byte without being able to receive it.
+        wcursor.incrementAndGet();
+        write(sink);
+
+        //  The reader may be parked rather than selecting.
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void write(Pipe.SinkChannel sink)
     {
         int nbytes = 0;
         ByteBuffer dummy = ByteBuffer.allocate(1);
@@ -118,7 +200,7 @@ public class Signaler
         while (true) {
             try {
                 Thread.interrupted();
-                nbytes = w.write(dummy);
+                nbytes = sink.write(dummy);
             }
             catch (IOException e) {
                 throw new ZError.IOException(e);
@@ -127,24 +209,27 @@ public class Signaler
                 continue;
             }
             assert (nbytes == 1);
-            wcursor.incrementAndGet();
             break;
         }
     }
 
     public boolean waitEvent(long timeout)
     {
+        if (timeout == 0) {
+            // waitEvent(0) is called every read/send of SocketBase
+            // instant readiness is not strictly required
+            // On the other hand, we can save lots of system call and increase performance
+            return rcursor < wcursor.get();
+        }
+        boolean virtual = Utils.isVirtual(Thread.currentThread());
+        if (w == null || virtual) {
+            return park(timeout, !virtual);
+        }
+
         int rc = 0;
 
         try {
-            if (timeout == 0) {
-                // waitEvent(0) is called every read/send of SocketBase
-                // instant readiness is not strictly required
-                // On the other hand, we can save lots of system call and increase performance
-                return rcursor < wcursor.get();
-
-            }
-            else if (timeout < 0) {
+            if (timeout < 0) {
                 rc = selector.select(0);
             }
             else {
@@ -164,16 +249,60 @@ public class Signaler
         return true;
     }
 
-    public void recv()
+    //  Waits for a signal without the selector: spin for a short while if
+    //  allowed, then park until the sender unparks us or the timeout
+    //  expires.
+    private boolean park(long timeout, boolean spin)
     {
-        int nbytes = 0;
+        for (int i = 0; i != (spin ? SPIN_COUNT : 1); i++) {
+            if (rcursor < wcursor.get()) {
+                return true;
+            }
+        }
+
+        long deadline = timeout < 0 ? 0 : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        waiter = Thread.currentThread();
         try {
-            ByteBuffer dummy = ByteBuffer.allocate(1);
-            nbytes = r.read(dummy);
-            assert nbytes == 1;
+            while (rcursor >= wcursor.get()) {
+                //  Like a selector, an interrupt ends the wait.
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                if (timeout < 0) {
+                    LockSupport.park(this);
+                }
+                else {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, nanos);
+                }
+            }
+            return true;
         }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
+        finally {
+            waiter = null;
+        }
+    }
+
+    public void recv()
+    {
+        if (w != null) {
+            int nbytes = 0;
+            try {
+                //  The signal is counted before its byte is written, so the
+                //  byte may still be on its way. Let the sender run rather
+                //  than spin on the empty pipe, as it may share our CPU.
+                ByteBuffer dummy = ByteBuffer.allocate(1);
+                while ((nbytes = r.read(dummy)) == 0) {
+                    Thread.yield();
+                }
+                assert nbytes == 1;
+            }
+            catch (IOException e) {
+                throw new ZError.IOException(e);
+            }
         }
         rcursor++;
     }
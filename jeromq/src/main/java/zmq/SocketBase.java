@@ -88,6 +88,8 @@ public abstract class SocketBase extends Own
 
         options.socketId = sid;
         options.linger = parent.get(ZMQ.ZMQ_BLOCKY) != 0 ? -1 : 0;
+        options.batchSizeMin = parent.get(ZMQ.ZMQ_BATCH_SIZE_MIN);
+        options.batchSizeMax = parent.get(ZMQ.ZMQ_BATCH_SIZE_MAX);
 
         endpoints = new MultiMap<String, Own>();
         inprocs = new MultiMap<String, Pipe>();
@@ -190,11 +192,17 @@ public abstract class SocketBase extends Own
     private void checkProtocol(String protocol)
     {
         //  First check out whether the protcol is something we are aware of.
-        if (!protocol.equals("inproc") && !protocol.equals("ipc") && !protocol.equals("tcp") /*&&
+        if (!protocol.equals("inproc") && !protocol.equals("ipc") && !protocol.equals("tcp")
+                && !protocol.equals("shm") /*&&
               !protocol.equals("pgm") && !protocol.equals("epgm")*/) {
             throw new UnsupportedOperationException(protocol);
         }
 
+        //  Shared memory rings need fences the runtime may not provide.
+        if (protocol.equals("shm") && !ShmRing.isSupported()) {
+            throw new UnsupportedOperationException(protocol);
+        }
+
         //  Check whether socket type and transport protocol match.
         //  Specifically, multicast protocols can't be combined with
         //  bi-directional messaging patterns (socket types).
@@ -387,6 +395,23 @@ public abstract class SocketBase extends Own
             return true;
         }
 
+        if (protocol.equals("shm")) {
+            ShmListener listener = new ShmListener(ioThread, this, options);
+            int rc = listener.setAddress(address);
+            if (rc != 0) {
+                listener.destroy();
+                eventBindFailed(address, rc);
+                errno.set(rc);
+                return false;
+            }
+
+            // Save last endpoint URI
+            options.lastEndpoint = listener.getAddress();
+
+            addEndpoint(addr, listener);
+            return true;
+        }
+
         throw new IllegalArgumentException(addr);
     }
 
@@ -435,6 +460,8 @@ public abstract class SocketBase extends Own
             int[] hwms = {sndhwm, rcvhwm};
             boolean[] delays = {options.delayOnDisconnect, options.delayOnClose};
             Pipe.pipepair(parents, pipes, hwms, delays);
+            pipes[0].setScheduling(options);
+            pipes[1].setScheduling(peer.options);
 
             //  Attach local end of the pipe to this socket object.
             attachPipe(pipes[0]);
@@ -503,6 +530,7 @@ public abstract class SocketBase extends Own
             int[] hwms = {options.sendHwm, options.recvHwm};
             boolean[] delays = {options.delayOnDisconnect, options.delayOnClose};
             Pipe.pipepair(parents, pipes, hwms, delays);
+            pipes[0].setScheduling(options);
 
             //  Attach local end of the pipe to the socket object.
             attachPipe(pipes[0], icanhasall);
@@ -597,6 +625,10 @@ public abstract class SocketBase extends Own
             return false;
         }
 
+        //  From now on the message belongs to the library and may be shared
+        //  by several pipes, so its payload must never go back to a pool.
+        msg.detach();
+
         //  Clear any user-visible flags that are set on the message.
         msg.resetFlags(Msg.MORE);
 
@@ -655,6 +687,9 @@ public abstract class SocketBase extends Own
         return true;
     }
 
+    //  Receives a message. If the context has a message pool, the caller
+    //  may hand the payload back by calling release() (or close(), e.g. in
+    //  a try-with-resources block) once done with the message.
     public Msg recv(int flags)
     {
         if (ctxTerminated) {
@@ -750,6 +785,9 @@ public abstract class SocketBase extends Own
         //  Mark the socket as dead
         tag = 0xdeadbeef;
 
+        //  The reaper thread takes over the pipes.
+        xquiesce();
+
         //  Transfer the ownership of the socket from this application thread
         //  to the reaper thread which will take care of the rest of shutdown
         //  process.
@@ -822,6 +860,11 @@ public abstract class SocketBase extends Own
             cmd = mailbox.recv(0);
         }
 
+        //  Commands may act on pipes other threads are still writing to.
+        if (cmd != null) {
+            xquiesce();
+        }
+
         //  Process all the commands available at the moment.
         while (true) {
             if (cmd == null) {
@@ -895,6 +938,12 @@ public abstract class SocketBase extends Own
         return false;
     }
 
+    //  Waits for the writes to the pipes handed to other threads, if the
+    //  socket type does that, before the pipes are otherwise used.
+    protected void xquiesce()
+    {
+    }
+
     protected boolean xsend(Msg msg)
     {
         throw new UnsupportedOperationException("Must Override");
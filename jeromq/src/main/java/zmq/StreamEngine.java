@@ -77,6 +77,16 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
 
     private IOObject ioObject;
 
+    //  Events handled plus kilobytes transferred since the last call to
+    //  takeActivity().
+    private long activity;
+    private int activityBytes;
+
+    //  Set while the batch buffers are larger than their minimum size,
+    //  and a timer checks whether they are still needed.
+    private static final int BATCH_TIMER_ID = 0x30;
+    private boolean hasBatchTimer;
+
     public StreamEngine(SocketChannel handle, final Options options, final String endpoint)
     {
         this.handle = handle;
@@ -95,17 +105,30 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         greetingOutputBuffer = ByteBuffer.allocate(GREETING_SIZE).order(ByteOrder.BIG_ENDIAN);
         encoder = null;
         decoder = null;
+        hasBatchTimer = false;
 
         //  Put the socket into non-blocking mode.
         try {
             Utils.unblockSocket(this.handle);
 
             //  Set the socket buffer limits for the underlying socket.
-            if (this.options.sndbuf != 0) {
-                this.handle.socket().setSendBufferSize(this.options.sndbuf);
+            //  Unix domain channels have no socket adaptor, their limits
+            //  are set on the channel itself.
+            try {
+                if (this.options.sndbuf != 0) {
+                    this.handle.socket().setSendBufferSize(this.options.sndbuf);
+                }
+                if (this.options.rcvbuf != 0) {
+                    this.handle.socket().setReceiveBufferSize(this.options.rcvbuf);
+                }
             }
-            if (this.options.rcvbuf != 0) {
-                this.handle.socket().setReceiveBufferSize(this.options.rcvbuf);
+            catch (UnsupportedOperationException e) {
+                if (this.options.sndbuf != 0) {
+                    IpcAddress.setOption(this.handle, "SO_SNDBUF", this.options.sndbuf);
+                }
+                if (this.options.rcvbuf != 0) {
+                    IpcAddress.setOption(this.handle, "SO_RCVBUF", this.options.rcvbuf);
+                }
             }
         }
         catch (IOException e) {
@@ -260,15 +283,33 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             ioEnabled = false;
         }
 
+        if (hasBatchTimer) {
+            ioObject.cancelTimer(BATCH_TIMER_ID);
+            hasBatchTimer = false;
+        }
+
         //  Disconnect from I/O threads poller object.
         ioObject.unplug();
 
-        //  Disconnect from session object.
+        //  Close the file being sent, if any. A file the encoder opened
+        //  but hasn't handed out yet is closed with the encoder below.
+        if (outsize > 0 && outbuf instanceof Transfer.FileChannelTransfer) {
+            try {
+                ((Transfer.FileChannelTransfer) outbuf).close();
+            }
+            catch (IOException e) {
+            }
+        }
+
+        //  Disconnect from session object, and give the buffers back.
         if (encoder != null) {
             encoder.setMsgSource(null);
+            encoder.closeFile();
+            encoder.releaseBuffer();
         }
         if (decoder != null) {
             decoder.setMsgSink(null);
+            decoder.releaseBuffer();
         }
         session = null;
     }
@@ -280,9 +321,57 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         destroy();
     }
 
+    //  True if the engine can be moved to another I/O thread.
+    boolean isMigratable()
+    {
+        return plugged && ioEnabled && !handshaking;
+    }
+
+    //  Disconnects the engine from the poller of its I/O thread, to plug
+    //  it to another one.
+    void unplugPoller()
+    {
+        assert (isMigratable());
+        ioObject.removeHandle(handle);
+        if (hasBatchTimer) {
+            ioObject.cancelTimer(BATCH_TIMER_ID);
+        }
+        ioObject.unplug();
+    }
+
+    void plugPoller(IOThread ioThread)
+    {
+        ioObject.plug(ioThread);
+        ioObject.setHandler(this);
+        ioObject.addHandle(handle);
+
+        //  Input left in the buffer means the session is full and the
+        //  engine waits to be activated. Output, if there is none left,
+        //  is reset by the first event.
+        if (insize == 0) {
+            ioObject.setPollIn(handle);
+        }
+        ioObject.setPollOut(handle);
+        if (hasBatchTimer) {
+            ioObject.addTimer(Config.BATCH_IDLE_IVL.getValue(), BATCH_TIMER_ID);
+        }
+    }
+
+    //  Returns the events handled plus kilobytes transferred since the
+    //  last call.
+    long takeActivity()
+    {
+        long rc = activity + (activityBytes >> 10);
+        activity = 0;
+        activityBytes &= 1023;
+        return rc;
+    }
+
     @Override
     public void inEvent()
     {
+        activity++;
+
         //  If still handshaking, receive and process the greeting message.
         if (handshaking) {
             if (!handshake()) {
@@ -293,42 +382,65 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         assert (decoder != null);
         boolean disconnection = false;
 
-        //  If there's no data to process in the buffer...
-        if (insize == 0) {
-            //  Retrieve the buffer and read as much data as possible.
-            //  Note that buffer can be arbitrarily large. However, we assume
-            //  the underlying TCP layer has fixed buffer size and thus the
-            //  number of bytes read will be always limited.
-            inbuf = decoder.getBuffer();
-            insize = read(inbuf);
-            inbuf.flip();
-
-            //  Check whether the peer has closed the connection.
-            if (insize == -1) {
-                insize = 0;
+        //  Keep reading until there is no more data, the decoder gets stuck
+        //  or the budget of the event is spent, whichever comes first.
+        int budget = options.ioBudget;
+        int consumed = 0;
+        while (true) {
+            //  If there's no data to process in the buffer...
+            if (insize == 0) {
+                //  Retrieve the buffer and read as much data as possible.
+                //  Note that buffer can be arbitrarily large. However, we assume
+                //  the underlying TCP layer has fixed buffer size and thus the
+                //  number of bytes read will be always limited.
+                inbuf = decoder.getBuffer();
+                insize = read(inbuf);
+                inbuf.flip();
+
+                //  Check whether the peer has closed the connection.
+                if (insize == -1) {
+                    insize = 0;
+                    disconnection = true;
+                }
+            }
+            int size = insize;
+
+            //  Push the data to the decoder.
+            int processed = decoder.processBuffer(inbuf, insize);
+
+            if (processed == -1) {
                 disconnection = true;
+                break;
             }
-        }
 
-        //  Push the data to the decoder.
-        int processed = decoder.processBuffer(inbuf, insize);
+            //  Adjust the buffer.
+            insize -= processed;
 
-        if (processed == -1) {
-            disconnection = true;
-        }
-        else {
             //  Stop polling for input if we got stuck.
-            if (processed < insize) {
+            if (insize > 0) {
                 ioObject.resetPollIn(handle);
+                break;
             }
 
-            //  Adjust the buffer.
-            insize -= processed;
+            consumed += size;
+            if (disconnection || size == 0 || consumed >= budget) {
+                break;
+            }
         }
 
         //  Flush all messages the decoder may have produced.
         session.flush();
 
+        //  Nothing left to decode, the buffer is leased again by the
+        //  next read.
+        if (insize == 0) {
+            decoder.releaseBuffer();
+        }
+
+        if (!hasBatchTimer && decoder.isGrown()) {
+            addBatchTimer();
+        }
+
         //  An input error has occurred. If the last decoded message
         //  has already been accepted, we terminate the engine immediately.
         //  Otherwise, we stop waiting for socket events and postpone
@@ -347,60 +459,81 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
     @Override
     public void outEvent()
     {
-        //  If write buffer is empty, try to read new data from the encoder.
-        if (outsize == 0) {
-            //  Even when we stop polling as soon as there is no
-            //  data to send, the poller may invoke outEvent one
-            //  more time due to 'speculative write' optimisation.
-            if (encoder == null) {
-                 assert (handshaking);
-                 return;
-            }
-
-            outbuf = encoder.getData(null);
-            outsize = outbuf.remaining();
-            //  If there is no data to send, stop polling for output.
-            if (outbuf.remaining() == 0) {
-                ioObject.resetPollOut(handle);
+        activity++;
+
+        //  Keep writing until the socket buffer is full, there is no more
+        //  data or the budget of the event is spent, whichever comes first.
+        int budget = options.ioBudget;
+        int written = 0;
+        while (true) {
+            //  If write buffer is empty, try to read new data from the encoder.
+            if (outsize == 0) {
+                //  Even when we stop polling as soon as there is no
+                //  data to send, the poller may invoke outEvent one
+                //  more time due to 'speculative write' optimisation.
+                if (encoder == null) {
+                     assert (handshaking);
+                     return;
+                }
 
-                // when we use custom encoder, we might want to close
-                if (encoder.isError()) {
-                    error();
+                outbuf = encoder.getData(null);
+                outsize = outbuf.remaining();
+                if (!hasBatchTimer && encoder.isGrown()) {
+                    addBatchTimer();
+                }
+                //  If there is no data to send, stop polling for output
+                //  and give the buffer back until there is.
+                if (outbuf.remaining() == 0) {
+                    ioObject.resetPollOut(handle);
+                    encoder.releaseBuffer();
+
+                    // when we use custom encoder, we might want to close
+                    if (encoder.isError()) {
+                        error();
+                    }
+
+                    return;
                 }
+            }
 
+            //  If there are any data to write in write buffer, write as much as
+            //  possible to the socket. Note that amount of data to write can be
+            //  arbitratily large. However, we assume that underlying TCP layer has
+            //  limited transmission buffer and thus the actual number of bytes
+            //  written should be reasonably modest.
+            int nbytes = write(outbuf);
+
+            //  IO error has occurred. We stop waiting for output events.
+            //  The engine is not terminated until we detect input error;
+            //  this is necessary to prevent losing incomming messages.
+            if (nbytes == -1) {
+                ioObject.resetPollOut(handle);
                 return;
             }
-        }
-
-        //  If there are any data to write in write buffer, write as much as
-        //  possible to the socket. Note that amount of data to write can be
-        //  arbitratily large. However, we assume that underlying TCP layer has
-        //  limited transmission buffer and thus the actual number of bytes
-        //  written should be reasonably modest.
-        int nbytes = write(outbuf);
 
-        //  IO error has occurred. We stop waiting for output events.
-        //  The engine is not terminated until we detect input error;
-        //  this is necessary to prevent losing incomming messages.
-        if (nbytes == -1) {
-            ioObject.resetPollOut(handle);
-            return;
-        }
+            outsize -= nbytes;
+            written += nbytes;
 
-        outsize -= nbytes;
+            //  If we are still handshaking and there are no data
+            //  to send, stop polling for output.
+            if (handshaking) {
+                if (outsize == 0) {
+                    ioObject.resetPollOut(handle);
+                }
+                return;
+            }
 
-        //  If we are still handshaking and there are no data
-        //  to send, stop polling for output.
-        if (handshaking) {
+            // when we use custom encoder, we might want to close after sending a response
             if (outsize == 0) {
-                ioObject.resetPollOut(handle);
+                if (encoder != null && encoder.isError()) {
+                    error();
+                    return;
+                }
             }
-        }
 
-        // when we use custom encoder, we might want to close after sending a response
-        if (outsize == 0) {
-            if (encoder != null && encoder.isError()) {
-                error();
+            //  The socket buffer is full.
+            if (outsize > 0 || written >= budget) {
+                return;
             }
         }
     }
@@ -420,7 +553,33 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
     @Override
     public void timerEvent(int id)
     {
-        throw new UnsupportedOperationException();
+        assert (id == BATCH_TIMER_ID);
+        hasBatchTimer = false;
+
+        //  Shrink the batch buffers that haven't been filled since the
+        //  previous check, unless they still hold data.
+        boolean grown = false;
+        if (insize == 0) {
+            grown |= decoder.shrink();
+        }
+        else {
+            grown |= decoder.isGrown();
+        }
+        if (outsize == 0) {
+            grown |= encoder.shrink();
+        }
+        else {
+            grown |= encoder.isGrown();
+        }
+        if (grown) {
+            addBatchTimer();
+        }
+    }
+
+    private void addBatchTimer()
+    {
+        ioObject.addTimer(Config.BATCH_IDLE_IVL.getValue(), BATCH_TIMER_ID);
+        hasBatchTimer = true;
     }
 
     @Override
@@ -512,10 +671,10 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         //  If so, we send and receive rests of identity
         //  messages.
         if ((greeting.get(0) & 0xff) != 0xff || (greeting.get(9) & 0x01) == 0) {
-            encoder = newEncoder(Config.OUT_BATCH_SIZE.getValue(), null, 0);
+            encoder = newEncoder(options.batchSizeMin, null, 0);
             encoder.setMsgSource(session);
 
-            decoder = newDecoder(Config.IN_BATCH_SIZE.getValue(), options.maxMsgSize, null, 0);
+            decoder = newDecoder(options.batchSizeMin, options.maxMsgSize, null, 0);
             decoder.setMsgSink(session);
 
             //  We have already sent the message header.
@@ -546,18 +705,28 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         else
         if (greeting.get(versionPos) == 0) {
             //  ZMTP/1.0 framing.
-            encoder = newEncoder(Config.OUT_BATCH_SIZE.getValue(), null, 0);
+            encoder = newEncoder(options.batchSizeMin, null, 0);
             encoder.setMsgSource(session);
 
-            decoder = newDecoder(Config.IN_BATCH_SIZE.getValue(), options.maxMsgSize, null, 0);
+            decoder = newDecoder(options.batchSizeMin, options.maxMsgSize, null, 0);
             decoder.setMsgSink(session);
         }
         else {
             //  v1 framing protocol.
-            encoder = newEncoder(Config.OUT_BATCH_SIZE.getValue(), session, V1Protocol.VERSION);
+            encoder = newEncoder(options.batchSizeMin, session, V1Protocol.VERSION);
 
-            decoder = newDecoder(Config.IN_BATCH_SIZE.getValue(), options.maxMsgSize, session, V1Protocol.VERSION);
+            decoder = newDecoder(options.batchSizeMin, options.maxMsgSize, session, V1Protocol.VERSION);
         }
+        //  Draw message bodies from the context-wide pool, if any, and
+        //  lease the batch buffers from the context.
+        decoder.setBufferPool(socket.getCtx().getMsgPool());
+        decoder.setBatchPool(socket.getCtx().getBatchPool());
+        encoder.setBatchPool(socket.getCtx().getBatchPool());
+        decoder.setDirectAllocation(options.rcvDirectThreshold, options.rcvAllocator);
+        encoder.setGatherThreshold(options.sndGatherThreshold);
+        decoder.setMaxBufferSize(options.batchSizeMax);
+        encoder.setMaxBufferSize(options.batchSizeMax);
+
         // Start polling for output if necessary.
         if (outsize == 0) {
             ioObject.setPollOut(handle);
@@ -612,6 +781,10 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         catch (IOException e) {
             return -1;
         }
+        if (nbytes > 0) {
+            activityBytes += nbytes;
+            ioObject.countBytes(nbytes);
+        }
 
         return nbytes;
     }
@@ -625,6 +798,10 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         catch (IOException e) {
             return -1;
         }
+        if (nbytes > 0) {
+            activityBytes += nbytes;
+            ioObject.countBytes(nbytes);
+        }
 
         return nbytes;
     }
@@ -173,17 +173,16 @@ public class TcpConnecter extends Own implements IPollEvents
         handle = null;
 
         try {
-            Utils.tuneTcpSocket(fd);
-            Utils.tuneTcpKeepalives(fd, options.tcpKeepAlive, options.tcpKeepAliveCnt, options.tcpKeepAliveIdle, options.tcpKeepAliveIntvl);
+            tune(fd);
         }
         catch (SocketException e) {
             throw new RuntimeException(e);
         }
 
         //  Create the engine object for this connection.
-        StreamEngine engine = null;
+        IEngine engine = null;
         try {
-            engine = new StreamEngine(fd, options, address.toString());
+            engine = createEngine(fd, address.toString());
         }
         catch (ZError.InstantiationException e) {
             socket.eventConnectDelayed(address.toString(), -1);
@@ -238,6 +237,25 @@ public class TcpConnecter extends Own implements IPollEvents
         }
     }
 
+    //  Creates the connecting socket.
+    protected SocketChannel openChannel() throws IOException
+    {
+        return SocketChannel.open();
+    }
+
+    //  Creates the engine driving the connection.
+    protected IEngine createEngine(SocketChannel fd, String endpoint)
+    {
+        return new StreamEngine(fd, options, endpoint);
+    }
+
+    //  Sets the options of the connected socket.
+    protected void tune(SocketChannel fd) throws SocketException
+    {
+        Utils.tuneTcpSocket(fd);
+        Utils.tuneTcpKeepalives(fd, options.tcpKeepAlive, options.tcpKeepAliveCnt, options.tcpKeepAliveIdle, options.tcpKeepAliveIntvl);
+    }
+
     //  Internal function to add a reconnect timer
     private void addreconnectTimer()
     {
@@ -289,7 +307,7 @@ public class TcpConnecter extends Own implements IPollEvents
         assert (handle == null);
 
         //  Create the socket.
-        handle = SocketChannel.open();
+        handle = openChannel();
 
         // Set the socket to non-blocking mode so that we get async connect().
         Utils.unblockSocket(handle);
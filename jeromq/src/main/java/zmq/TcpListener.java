@@ -20,7 +20,6 @@
 package zmq;
 
 import java.io.IOException;
-import java.net.Socket;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 
@@ -88,8 +87,10 @@ public class TcpListener extends Own implements IPollEvents
 
         try {
             fd = accept();
-            Utils.tuneTcpSocket(fd);
-            Utils.tuneTcpKeepalives(fd, options.tcpKeepAlive, options.tcpKeepAliveCnt, options.tcpKeepAliveIdle, options.tcpKeepAliveIntvl);
+            if (fd == null) {
+                return;
+            }
+            tune(fd);
         }
         catch (IOException e) {
             //  If connection was reset by the peer in the meantime, just ignore it.
@@ -99,9 +100,9 @@ public class TcpListener extends Own implements IPollEvents
         }
 
         //  Create the engine object for this connection.
-        StreamEngine engine = null;
+        IEngine engine = null;
         try {
-            engine = new StreamEngine(fd, options, endpoint);
+            engine = createEngine(fd);
         }
         catch (ZError.InstantiationException e) {
             socket.eventAcceptFailed(endpoint, ZError.EINVAL);
@@ -113,13 +114,54 @@ public class TcpListener extends Own implements IPollEvents
 
         //  Create and launch a session object.
         SessionBase session = SessionBase.create(ioThread, false, socket,
-            options, new Address(fd.socket().getRemoteSocketAddress()));
+            options, peerAddress(fd));
         session.incSeqnum();
         launchChild(session);
         sendAttach(session, engine, false);
         socket.eventAccepted(endpoint, fd);
     }
 
+    //  Creates the engine driving an accepted connection.
+    protected IEngine createEngine(SocketChannel fd)
+    {
+        return new StreamEngine(fd, options, endpoint);
+    }
+
+    //  Sets the options of an accepted connection.
+    protected void tune(SocketChannel fd) throws IOException
+    {
+        Utils.tuneTcpSocket(fd);
+        Utils.tuneTcpKeepalives(fd, options.tcpKeepAlive, options.tcpKeepAliveCnt, options.tcpKeepAliveIdle, options.tcpKeepAliveIntvl);
+    }
+
+    //  Address of the peer of an accepted connection.
+    protected Address peerAddress(SocketChannel fd)
+    {
+        return new Address(fd.socket().getRemoteSocketAddress());
+    }
+
+    //  Returns false if the accepted connection is denied by the filters.
+    protected boolean accepts(SocketChannel fd)
+    {
+        if (options.tcpAcceptFilters.isEmpty()) {
+            return true;
+        }
+        for (TcpAddress.TcpAddressMask am : options.tcpAcceptFilters) {
+            if (am.matchAddress(address.address())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //  Takes over a listening socket bound by a subclass.
+    protected void listening(ServerSocketChannel handle, String endpoint)
+    {
+        this.handle = handle;
+        this.endpoint = endpoint;
+        socket.eventListening(endpoint, handle);
+    }
+
     //  Close the listening socket.
     private void close()
     {
@@ -173,32 +215,26 @@ public class TcpListener extends Own implements IPollEvents
     //  or was denied because of accept filters.
     private SocketChannel accept()
     {
-        Socket sock = null;
+        SocketChannel fd = null;
         try {
-            sock = handle.socket().accept();
+            fd = handle.accept();
         }
         catch (IOException e) {
             return null;
         }
+        if (fd == null) {
+            return null;
+        }
 
-        if (!options.tcpAcceptFilters.isEmpty()) {
-            boolean matched = false;
-            for (TcpAddress.TcpAddressMask am : options.tcpAcceptFilters) {
-                if (am.matchAddress(address.address())) {
-                    matched = true;
-                    break;
-                }
+        if (!accepts(fd)) {
+            try {
+                fd.close();
             }
-            if (!matched) {
-                try {
-                    sock.close();
-                }
-                catch (IOException e) {
-                }
-                return null;
+            catch (IOException e) {
             }
+            return null;
         }
-        return sock.getChannel();
+        return fd;
     }
 
     @Override
@@ -0,0 +1,214 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Hashed hierarchical timing wheel with a resolution of one millisecond.
+//  Four levels of 256 slots each cover 2^32 ms. A timer is hashed into the
+//  lowest level whose range holds its expiration; when the lower levels
+//  wrap around, the timers of the next slot of the level above are moved
+//  down. Adding and cancelling a timer are O(1). Executing jumps over the
+//  empty slots instead of walking every millisecond elapsed.
+
+final class TimerWheel
+{
+    private static final int LEVELS = 4;
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    //  Heads of the doubly-linked timer lists, per level and slot.
+    private final PollerBase.Timer[][] wheels;
+
+    //  Last millisecond processed.
+    private long now;
+
+    //  Number of pending timers.
+    private int size;
+
+    TimerWheel(long now)
+    {
+        this.now = now;
+        wheels = new PollerBase.Timer[LEVELS][SLOTS];
+        size = 0;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    void add(PollerBase.Timer timer)
+    {
+        insert(timer);
+        size++;
+    }
+
+    //  Removes a pending timer. Timers that already fired are ignored.
+    void remove(PollerBase.Timer timer)
+    {
+        if (timer.level < 0) {
+            return;
+        }
+        unlink(timer);
+        size--;
+    }
+
+    //  Returns a pending timer of the sink with the given ID, or null.
+    //  Complexity of this operation is O(n).
+    PollerBase.Timer find(IPollEvents sink, int id)
+    {
+        for (PollerBase.Timer[] level : wheels) {
+            for (PollerBase.Timer timer : level) {
+                for (; timer != null; timer = timer.next) {
+                    if (timer.sink == sink && timer.id == id) {
+                        return timer;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    //  Fires the timers due up to current. Returns number of milliseconds
+    //  to wait for the next timer or 0 meaning "no timers".
+    long execute(long current)
+    {
+        if (size == 0) {
+            now = Math.max(now, current);
+            return 0L;
+        }
+
+        while (now < current) {
+            //  Jump to the next millisecond something happens at, the
+            //  slots in between are empty.
+            long next = nextEvent();
+            if (next > current) {
+                now = current;
+                break;
+            }
+            now = next;
+
+            //  Move the timers of the upper levels down as the lower
+            //  levels wrap around.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((now & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (now >>> (BITS * level)) & MASK);
+                }
+            }
+
+            int slot = (int) now & MASK;
+            PollerBase.Timer timer;
+            while ((timer = wheels[0][slot]) != null) {
+                unlink(timer);
+                size--;
+                timer.sink.timerEvent(timer.id);
+            }
+            if (size == 0) {
+                now = current;
+                return 0L;
+            }
+        }
+
+        return nextEvent() - now;
+    }
+
+    //  Earliest millisecond after now at which a timer fires or the timers
+    //  of a slot of an upper level are moved down. Levels are scanned from
+    //  the bottom, an upper level is skipped once its first move down comes
+    //  after what was already found.
+    private long nextEvent()
+    {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level != LEVELS; level++) {
+            int shift = BITS * level;
+            long base = now >>> shift;
+            if ((base + 1) << shift >= next) {
+                break;
+            }
+            for (int i = 1; i != SLOTS && (base + i) << shift < next; i++) {
+                if (wheels[level][(int) (base + i) & MASK] != null) {
+                    next = (base + i) << shift;
+                    break;
+                }
+            }
+        }
+        return next == Long.MAX_VALUE ? now + 1 : next;
+    }
+
+    private void cascade(int level, int slot)
+    {
+        PollerBase.Timer timer = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (timer != null) {
+            PollerBase.Timer next = timer.next;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(PollerBase.Timer timer)
+    {
+        long expiration = timer.expiration;
+
+        //  Timers already due fire on the next millisecond.
+        if (expiration <= now) {
+            expiration = now + 1;
+        }
+
+        int level = 0;
+        while (level != LEVELS - 1
+                && (expiration >>> (BITS * level)) - (now >>> (BITS * level)) >= SLOTS) {
+            level++;
+        }
+        long index = expiration >>> (BITS * level);
+
+        //  Beyond the range of the wheel, park it in the last slot of the
+        //  top level, it will be moved down and rehashed in time.
+        if (index - (now >>> (BITS * level)) >= SLOTS) {
+            index = (now >>> (BITS * level)) + SLOTS - 1;
+        }
+
+        int slot = (int) index & MASK;
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = wheels[level][slot];
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+        wheels[level][slot] = timer;
+    }
+
+    private void unlink(PollerBase.Timer timer)
+    {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        }
+        else {
+            wheels[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+}
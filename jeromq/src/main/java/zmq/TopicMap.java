@@ -0,0 +1,199 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//  Subscriptions of an XPub socket matched by exact topic, the
+//  counterpart of TopicSet with the same contract as Mtrie. The empty
+//  subscription still matches all messages.
+public class TopicMap implements IMtrie
+{
+    private final int topicLength;
+
+    //  Pipes subscribed to each topic: a single Pipe or a Set<Pipe>.
+    private final TopicTable<Object> topics;
+
+    //  Pipes subscribed to all messages.
+    private final Set<Pipe> all;
+
+    public TopicMap(int topicLength)
+    {
+        if (topicLength <= 0 && topicLength != ZMQ.ZMQ_EXACT_TOPIC_FRAME) {
+            throw new IllegalArgumentException("topicLength " + topicLength);
+        }
+        this.topicLength = topicLength;
+        topics = new TopicTable<Object>();
+        all = new HashSet<Pipe>();
+    }
+
+    @Override
+    public boolean add(byte[] prefix, Pipe pipe)
+    {
+        return add(prefix, 0, pipe);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean add(byte[] prefix, int start, Pipe pipe)
+    {
+        if (prefix == null || prefix.length == start) {
+            boolean result = all.isEmpty();
+            all.add(pipe);
+            return result;
+        }
+        int length = prefix.length - start;
+        Object pipes = topics.get(prefix, start, length);
+        if (pipes == null) {
+            topics.put(prefix, start, length, pipe);
+            return true;
+        }
+        if (pipes instanceof Pipe) {
+            if (pipes != pipe) {
+                Set<Pipe> set = new HashSet<Pipe>(4);
+                set.add((Pipe) pipes);
+                set.add(pipe);
+                topics.put(prefix, start, length, set);
+            }
+        }
+        else {
+            ((Set<Pipe>) pipes).add(pipe);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean rm(byte[] prefix, int start, Pipe pipe)
+    {
+        if (prefix == null || prefix.length == start) {
+            all.remove(pipe);
+            return all.isEmpty();
+        }
+        int length = prefix.length - start;
+        Object pipes = topics.get(prefix, start, length);
+        if (pipes == null) {
+            return false;
+        }
+        Object left = remove(pipes, pipe);
+        if (left == null) {
+            topics.remove(prefix, start, length);
+            return true;
+        }
+        if (left != pipes) {
+            topics.put(prefix, start, length, left);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean rm(Pipe pipe, Mtrie.IMtrieHandler func, Object arg, boolean callOnUniq)
+    {
+        if (all.remove(pipe)) {
+            if (!callOnUniq || all.isEmpty()) {
+                func.invoke(null, new byte[0], 0, arg);
+            }
+        }
+
+        List<byte[]> emptied = new ArrayList<byte[]>();
+        for (int slot = 0; slot != topics.capacity(); slot++) {
+            byte[] key = topics.keyAt(slot);
+            if (key == null) {
+                continue;
+            }
+            Object pipes = topics.valueAt(slot);
+            if (!contains(pipes, pipe)) {
+                continue;
+            }
+            Object left = remove(pipes, pipe);
+            if (!callOnUniq || left == null) {
+                func.invoke(null, key, key.length, arg);
+            }
+            if (left == null) {
+                emptied.add(key);
+            }
+            else if (left != pipes) {
+                topics.put(key, 0, key.length, left);
+            }
+        }
+
+        //  Drop the topics nobody is subscribed to anymore once done
+        //  walking the table, removal moves entries around.
+        for (byte[] key : emptied) {
+            topics.remove(key, 0, key.length);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void match(byte[] data, int size, Mtrie.IMtrieHandler func, Object arg)
+    {
+        for (Pipe it : all) {
+            func.invoke(it, null, 0, arg);
+        }
+
+        int length = topicLength == ZMQ.ZMQ_EXACT_TOPIC_FRAME ? size : topicLength;
+        if (size < length) {
+            return;
+        }
+        Object pipes = topics.get(data, 0, length);
+        if (pipes == null) {
+            return;
+        }
+        if (pipes instanceof Pipe) {
+            func.invoke((Pipe) pipes, null, 0, arg);
+        }
+        else {
+            for (Pipe it : (Set<Pipe>) pipes) {
+                func.invoke(it, null, 0, arg);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean contains(Object pipes, Pipe pipe)
+    {
+        if (pipes instanceof Pipe) {
+            return pipes == pipe;
+        }
+        return ((Set<Pipe>) pipes).contains(pipe);
+    }
+
+    //  Returns what is left of the subscribers once the pipe is removed,
+    //  null if none is left.
+    @SuppressWarnings("unchecked")
+    private static Object remove(Object pipes, Pipe pipe)
+    {
+        if (pipes instanceof Pipe) {
+            return pipes == pipe ? null : pipes;
+        }
+        Set<Pipe> set = (Set<Pipe>) pipes;
+        if (!set.remove(pipe)) {
+            return pipes;
+        }
+        if (set.size() == 1) {
+            return set.iterator().next();
+        }
+        return set;
+    }
+}
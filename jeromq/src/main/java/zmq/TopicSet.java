@@ -0,0 +1,126 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package zmq;
+
+//  Subscriptions of an XSub socket matched by exact topic rather than by
+//  prefix. The topic of a message is its first topicLength bytes, or the
+//  whole first frame if topicLength is ZMQ_EXACT_TOPIC_FRAME, and is looked
+//  up in a hash table: the cost of filtering does not depend on the number
+//  of subscriptions. The empty subscription still matches all messages.
+public class TopicSet implements ITrie
+{
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int topicLength;
+
+    //  Reference counts of the subscribed topics.
+    private final TopicTable<Integer> topics;
+
+    //  Reference count of the empty subscription.
+    private int all;
+
+    public TopicSet(int topicLength)
+    {
+        if (topicLength <= 0 && topicLength != ZMQ.ZMQ_EXACT_TOPIC_FRAME) {
+            throw new IllegalArgumentException("topicLength " + topicLength);
+        }
+        this.topicLength = topicLength;
+        topics = new TopicTable<Integer>();
+        all = 0;
+    }
+
+    @Override
+    public boolean add(byte[] prefix)
+    {
+        return add(prefix, 0);
+    }
+
+    @Override
+    public boolean add(byte[] prefix, int start)
+    {
+        if (prefix == null || prefix.length == start) {
+            ++all;
+            return all == 1;
+        }
+        int length = prefix.length - start;
+        Integer refcnt = topics.get(prefix, start, length);
+        if (refcnt == null) {
+            topics.put(prefix, start, length, 1);
+            return true;
+        }
+        topics.put(prefix, start, length, refcnt + 1);
+        return false;
+    }
+
+    @Override
+    public boolean rm(byte[] prefix, int start)
+    {
+        if (prefix == null || prefix.length == start) {
+            if (all == 0) {
+                return false;
+            }
+            all--;
+            return all == 0;
+        }
+        int length = prefix.length - start;
+        Integer refcnt = topics.get(prefix, start, length);
+        if (refcnt == null) {
+            return false;
+        }
+        if (refcnt == 1) {
+            topics.remove(prefix, start, length);
+            return true;
+        }
+        topics.put(prefix, start, length, refcnt - 1);
+        return false;
+    }
+
+    @Override
+    public boolean check(byte[] data)
+    {
+        return check(data, 0, data.length);
+    }
+
+    @Override
+    public boolean check(byte[] data, int offset, int size)
+    {
+        if (all > 0) {
+            return true;
+        }
+        int length = topicLength == ZMQ.ZMQ_EXACT_TOPIC_FRAME ? size : topicLength;
+        if (size < length) {
+            return false;
+        }
+        return topics.get(data, offset, length) != null;
+    }
+
+    @Override
+    public void apply(Trie.ITrieHandler func, Object arg)
+    {
+        if (all > 0) {
+            func.added(EMPTY, 0, arg);
+        }
+        for (int slot = 0; slot != topics.capacity(); slot++) {
+            byte[] key = topics.keyAt(slot);
+            if (key != null) {
+                func.added(key, key.length, arg);
+            }
+        }
+    }
+}
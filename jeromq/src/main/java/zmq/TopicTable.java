@@ -0,0 +1,193 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package zmq;
+
+import java.util.Arrays;
+
+//  Hash table keyed by topics, using open addressing with linear probing.
+//  Lookups take the topic as a slice of a larger array, so that messages
+//  can be checked without copying their topic out.
+class TopicTable<V>
+{
+    private byte[][] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public TopicTable()
+    {
+        keys = new byte[16][];
+        hashes = new int[16];
+        values = new Object[16];
+        size = 0;
+        mask = 15;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    //  Number of slots, for iterating with keyAt() and valueAt().
+    public int capacity()
+    {
+        return keys.length;
+    }
+
+    //  Key in the given slot, null if the slot is free.
+    public byte[] keyAt(int slot)
+    {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot)
+    {
+        return (V) values[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(byte[] data, int offset, int length)
+    {
+        int slot = find(data, offset, length, hash(data, offset, length));
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    //  Associates the value with a copy of the length bytes at offset.
+    public void put(byte[] data, int offset, int length, V value)
+    {
+        int hash = hash(data, offset, length);
+        int slot = find(data, offset, length, hash);
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+            slot = find(data, offset, length, hash);
+        }
+        slot = -slot - 1;
+        keys[slot] = Arrays.copyOfRange(data, offset, offset + length);
+        hashes[slot] = hash;
+        values[slot] = value;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(byte[] data, int offset, int length)
+    {
+        int slot = find(data, offset, length, hash(data, offset, length));
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) values[slot];
+        delete(slot);
+        return value;
+    }
+
+    //  Returns the slot holding the key, or -(free slot) - 1 if the key
+    //  is not in the table.
+    private int find(byte[] data, int offset, int length, int hash)
+    {
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], data, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    //  Frees the slot and moves back the entries that would otherwise
+    //  become unreachable, so that no tombstones are needed.
+    private void delete(int slot)
+    {
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == null) {
+                return;
+            }
+            int home = hashes[next] & mask;
+            boolean reachable = slot <= next ? (slot < home && home <= next)
+                    : (slot < home || home <= next);
+            if (!reachable) {
+                keys[slot] = keys[next];
+                hashes[slot] = hashes[next];
+                values[slot] = values[next];
+                keys[next] = null;
+                values[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        keys = new byte[capacity][];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i != oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    //  FNV-1a, with the high bits folded in as the table only uses the
+    //  low ones.
+    private static int hash(byte[] data, int offset, int length)
+    {
+        int hash = 0x811c9dc5;
+        for (int i = offset; i != offset + length; i++) {
+            hash ^= data[i];
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] data, int offset, int length)
+    {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i != length; i++) {
+            if (key[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
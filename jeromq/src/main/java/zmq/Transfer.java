@@ -19,9 +19,11 @@
 
 package zmq;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 public interface Transfer
@@ -78,6 +80,12 @@ public interface Transfer
 
             if (parent.remaining() == 0) {
                 long fileSent = channel.transferTo(position, count, s);
+                if (fileSent == 0 && position >= channel.size()) {
+                    //  The file got truncated, what's missing will never
+                    //  come.
+                    channel.close();
+                    throw new EOFException("File truncated at " + position);
+                }
                 position += fileSent;
                 count -= fileSent;
                 sent += fileSent;
@@ -92,6 +100,65 @@ public interface Transfer
             return sent;
         }
 
+        //  Closes the file before the transfer is complete.
+        public final void close() throws IOException
+        {
+            channel.close();
+        }
+
+        @Override
+        public final int remaining()
+        {
+            return remaining;
+        }
+    }
+
+    //  Sequence of buffers (typically the batch buffer and the message
+    //  payloads that were not copied into it), handed to the channel in a
+    //  single gathering write when the channel supports it. Partial writes
+    //  are resumed from the first buffer not fully written.
+    public static class GatheringTransfer implements Transfer
+    {
+        private final ByteBuffer[] buffers;
+        private int offset;
+        private int remaining;
+
+        public GatheringTransfer(ByteBuffer... buffers)
+        {
+            this.buffers = buffers;
+            offset = 0;
+            remaining = 0;
+            for (ByteBuffer buf : buffers) {
+                remaining += buf.remaining();
+            }
+        }
+
+        @Override
+        public final int transferTo(WritableByteChannel s) throws IOException
+        {
+            int sent = 0;
+            if (s instanceof GatheringByteChannel) {
+                sent = (int) ((GatheringByteChannel) s).write(buffers, offset, buffers.length - offset);
+            }
+            else {
+                while (offset < buffers.length) {
+                    ByteBuffer buf = buffers[offset];
+                    if (buf.hasRemaining()) {
+                        sent += s.write(buf);
+                        if (buf.hasRemaining()) {
+                            break;
+                        }
+                    }
+                    offset++;
+                }
+            }
+            while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+            remaining -= sent;
+            return sent;
+        }
+
         @Override
         public final int remaining()
         {
@@ -19,7 +19,7 @@
 
 package zmq;
 
-public class Trie
+public class Trie implements ITrie
 {
     private int refcnt;
 
@@ -45,11 +45,13 @@ public class Trie
 
     //  Add key to the trie. Returns true if this is a new item in the trie
     //  rather than a duplicate.
+    @Override
     public boolean add(byte[] prefix)
     {
         return add(prefix, 0);
     }
 
+    @Override
     public boolean add(byte[] prefix, int start)
     {
         //  We are at the node corresponding to the prefix. We are done.
@@ -115,6 +117,7 @@ public class Trie
 
     //  Remove key from the trie. Returns true if the item is actually
     //  removed from the trie.
+    @Override
     public boolean rm(byte[] prefix, int start)
     {
         if (prefix == null || prefix.length == start) {
@@ -213,12 +216,21 @@ public class Trie
     }
 
     //  Check whether particular key is in the trie.
+    @Override
     public boolean check(byte[] data)
+    {
+        return check(data, 0, data.length);
+    }
+
+    //  Check whether size bytes of data starting at offset match a subscription.
+    @Override
+    public boolean check(byte[] data, int offset, int size)
     {
         //  This function is on critical path. It deliberately doesn't use
         //  recursion to get a bit better performance.
         Trie current = this;
-        int start = 0;
+        int start = offset;
+        int end = offset + size;
         while (true) {
             //  We've found a corresponding subscription!
             if (current.refcnt > 0) {
@@ -226,7 +238,7 @@ public class Trie
             }
 
             //  We've checked all the data and haven't found matching subscription.
-            if (data.length == start) {
+            if (end == start) {
                 return false;
             }
 
@@ -252,6 +264,7 @@ public class Trie
     }
 
     //  Apply the function supplied to each subscription in the trie.
+    @Override
     public void apply(ITrieHandler func, Object arg)
     {
         applyHelper(null, 0, 0, func, arg);
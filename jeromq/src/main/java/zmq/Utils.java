@@ -22,6 +22,8 @@ package zmq;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
@@ -37,6 +39,21 @@ class Utils
 
     private static SecureRandom random = new SecureRandom();
 
+    //  Thread.isVirtual(), on runtimes with virtual threads.
+    private static final Method IS_VIRTUAL;
+
+    static
+    {
+        Method isVirtual = null;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+        }
+        catch (NoSuchMethodException e) {
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+    }
+
     public static int generateRandom()
     {
         return random.nextInt();
@@ -130,6 +147,24 @@ class Utils
         return dest;
     }
 
+    //  Returns true if the thread is a virtual one, which must not spin
+    //  nor block in a selector while waiting.
+    public static boolean isVirtual(Thread thread)
+    {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        }
+        catch (IllegalAccessException e) {
+            return false;
+        }
+        catch (InvocationTargetException e) {
+            return false;
+        }
+    }
+
     public static boolean delete(File path)
     {
         if (!path.exists()) {
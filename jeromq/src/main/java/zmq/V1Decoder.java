@@ -29,6 +29,7 @@ public class V1Decoder extends DecoderBase
     private static final int MESSAGE_READY = 3;
 
     private final byte[] tmpbuf;
+    private final ByteBuffer tmpview;
     private Msg inProgress;
     private IMsgSink msgSink;
     private final long maxmsgsize;
@@ -42,6 +43,7 @@ public class V1Decoder extends DecoderBase
         msgSink = session;
 
         tmpbuf = new byte[8];
+        tmpview = ByteBuffer.wrap(tmpbuf);
 
         //  At the beginning, read one byte and go to ONE_BYTE_SIZE_READY state.
         nextStep(tmpbuf, 1, FLAGS_READY);
@@ -71,6 +73,47 @@ public class V1Decoder extends DecoderBase
         }
     }
 
+    @Override
+    protected int decodeFrames(ByteBuffer buf, int size)
+    {
+        //  Only applies at the beginning of a frame.
+        if (state() != FLAGS_READY || msgSink == null) {
+            return 0;
+        }
+
+        int start = buf.position();
+        int end = start + size;
+        int pos = start;
+        while (end - pos >= 2) {
+            int flags = buf.get(pos);
+            int length = buf.get(pos + 1) & 0xff;
+
+            //  Leave large, oversized and incomplete frames to the state
+            //  machine.
+            if ((flags & V1Protocol.LARGE_FLAG) > 0 || end - pos < 2 + length
+                    || (maxmsgsize >= 0 && length > maxmsgsize)) {
+                break;
+            }
+
+            Msg msg = allocate(length);
+            if ((flags & V1Protocol.MORE_FLAG) > 0) {
+                msg.setFlags(Msg.MORE);
+            }
+            buf.position(pos + 2);
+            readBody(buf, msg);
+            pos += 2 + length;
+
+            if (msgSink.pushMsg(msg) != 0) {
+                //  Let messageReady() retry once the sink has room.
+                inProgress = msg;
+                nextStep(tmpbuf, 0, MESSAGE_READY);
+                break;
+            }
+        }
+        buf.position(pos);
+        return pos - start;
+    }
+
     private boolean oneByteSizeReady()
     {
         int size = tmpbuf[0];
@@ -89,11 +132,10 @@ public class V1Decoder extends DecoderBase
         //  inProgress is initialised at this point so in theory we should
         //  close it before calling msgInitWithSize, however, it's a 0-byte
         //  message and thus we can treat it as uninitialised...
-        inProgress = new Msg(size);
+        inProgress = allocate(size);
 
         inProgress.setFlags(msgFlags);
-        nextStep(inProgress.data(), inProgress.size(),
-                MESSAGE_READY);
+        nextStep(inProgress, MESSAGE_READY);
 
         return true;
     }
@@ -102,7 +144,7 @@ public class V1Decoder extends DecoderBase
     {
         //  The payload size is encoded as 64-bit unsigned integer.
         //  The most significant byte comes first.
-        final long msgSize = ByteBuffer.wrap(tmpbuf).getLong();
+        final long msgSize = tmpview.getLong(0);
 
         //  Message size must not exceed the maximum allowed size.
         if (maxmsgsize >= 0) {
@@ -121,11 +163,10 @@ public class V1Decoder extends DecoderBase
         //  inProgress is initialised at this point so in theory we should
         //  close it before calling init_size, however, it's a 0-byte
         //  message and thus we can treat it as uninitialised.
-        inProgress = new Msg((int) msgSize);
+        inProgress = allocate((int) msgSize);
 
         inProgress.setFlags(msgFlags);
-        nextStep(inProgress.data(), inProgress.size(),
-                MESSAGE_READY);
+        nextStep(inProgress, MESSAGE_READY);
 
         return true;
     }
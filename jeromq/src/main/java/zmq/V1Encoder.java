@@ -30,12 +30,14 @@ public class V1Encoder extends EncoderBase
 
     private Msg inProgress;
     private final byte[] tmpbuf;
+    private final ByteBuffer tmpview;
     private IMsgSource msgSource;
 
     public V1Encoder(int bufsize, IMsgSource session)
     {
         super(bufsize);
         tmpbuf = new byte[9];
+        tmpview = ByteBuffer.wrap(tmpbuf);
         msgSource = session;
 
         //  Write 0 bytes to the batch and go to messageReady state.
@@ -64,7 +66,7 @@ public class V1Encoder extends EncoderBase
     private boolean sizeReady()
     {
         //  Write message body into the buffer.
-        nextStep(inProgress.data(), inProgress.size(),
+        nextStep(inProgress,
                 MESSAGE_READY, !inProgress.hasMore());
         return true;
     }
@@ -99,9 +101,7 @@ public class V1Encoder extends EncoderBase
         //  messages, 64-bit unsigned integer in network byte order is used.
         final int size = inProgress.size();
         if (size > 255) {
-            ByteBuffer b = ByteBuffer.wrap(tmpbuf);
-            b.position(1);
-            b.putLong(size);
+            tmpview.putLong(1, size);
             nextStep(tmpbuf, 9, SIZE_READY, false);
         }
         else {
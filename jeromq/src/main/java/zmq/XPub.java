@@ -35,7 +35,15 @@ class XPub extends SocketBase
     }
 
     //  List of all subscriptions mapped to corresponding pipes.
-    private final Mtrie subscriptions;
+    private IMtrie subscriptions;
+
+    //  True once a pipe was attached, the kind of trie can't change anymore.
+    private boolean attached;
+
+    //  Kind of trie to use: path-compressed, and exact topic matching if
+    //  topicLength isn't 0.
+    private boolean patricia;
+    private int topicLength;
 
     //  Distributor of messages holding the list of outbound pipes.
     private final Dist dist;
@@ -54,6 +62,10 @@ class XPub extends SocketBase
     //  Drop messages if HWM reached, otherwise return with false
     private boolean lossy;
 
+    //  Writes large distributions in the I/O threads, created on demand.
+    private Fanout fanout;
+    private int fanoutThreshold;
+
     //  List of pending (un)subscriptions, ie. those that were already
     //  applied to the trie, but not yet received by the user.
     private final Deque<Blob> pendingData;
@@ -102,8 +114,13 @@ class XPub extends SocketBase
         verboseUnsubs = false;
         more = false;
         lossy = true;
+        fanout = null;
+        fanoutThreshold = 0;
 
         subscriptions = new Mtrie();
+        attached = false;
+        patricia = false;
+        topicLength = 0;
         dist = new Dist();
         pendingData = new ArrayDeque<Blob>();
         pendingFlags = new ArrayDeque<Integer>();
@@ -114,6 +131,7 @@ class XPub extends SocketBase
     {
         assert (pipe != null);
         dist.attach(pipe);
+        attached = true;
 
         //  If icanhasall_ is specified, the caller would like to subscribe
         //  to all data on this pipe, implicitly.
@@ -177,6 +195,23 @@ class XPub extends SocketBase
         }
         else if (option == ZMQ.ZMQ_XPUB_NODROP) {
             lossy = (Integer) optval == 0;
+            //  Reconsider the fan-out on the next message.
+            fanoutThreshold = -1;
+        }
+        else if (option == ZMQ.ZMQ_XPUB_PATRICIA) {
+            //  Too late once peers are attached.
+            if (attached) {
+                return false;
+            }
+            patricia = (Integer) optval == 1;
+            subscriptions = createSubscriptions();
+        }
+        else if (option == ZMQ.ZMQ_EXACT_TOPIC) {
+            if (attached) {
+                return false;
+            }
+            topicLength = (Integer) optval;
+            subscriptions = createSubscriptions();
         }
         else {
             return false;
@@ -185,6 +220,14 @@ class XPub extends SocketBase
         return true;
     }
 
+    private IMtrie createSubscriptions()
+    {
+        if (topicLength != 0) {
+            return new TopicMap(topicLength);
+        }
+        return patricia ? new Ptrie() : new Mtrie();
+    }
+
     @Override
     protected void xpipeTerminated(Pipe pipe)
     {
@@ -204,6 +247,9 @@ class XPub extends SocketBase
 
         //  For the first part of multi-part message, find the matching pipes.
         if (!more) {
+            if (options.fanoutThreshold != fanoutThreshold) {
+                applyFanoutThreshold();
+            }
             subscriptions.match(msg.data(), msg.size(),
                     markAsMatching, this);
         }
@@ -228,6 +274,28 @@ class XPub extends SocketBase
         return false;
     }
 
+    private void applyFanoutThreshold()
+    {
+        fanoutThreshold = options.fanoutThreshold;
+        if (fanoutThreshold > 0 && fanout == null) {
+            fanout = new Fanout(getCtx());
+        }
+        //  Without dropping, the HWM has to be checked before writing, which
+        //  can't be done while the I/O threads are writing.
+        if (fanoutThreshold > 0 && lossy && fanout.partitions() > 0) {
+            dist.setFanout(fanout, fanoutThreshold);
+        }
+        else {
+            dist.setFanout(null, 0);
+        }
+    }
+
+    @Override
+    protected void xquiesce()
+    {
+        dist.quiesce();
+    }
+
     @Override
     protected boolean xhasOut()
     {
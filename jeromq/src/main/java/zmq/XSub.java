@@ -37,7 +37,11 @@ public class XSub extends SocketBase
     private final Dist dist;
 
     //  The repository of subscriptions.
-    private final Trie subscriptions;
+    private ITrie subscriptions;
+
+    //  True once a subscription was made or a pipe attached, the kind of
+    //  repository can't change anymore.
+    private boolean used;
 
     //  If true, 'message' contains a matching message to return on the
     //  next recv call.
@@ -86,6 +90,7 @@ public class XSub extends SocketBase
         fq = new FQ();
         dist = new Dist();
         subscriptions = new Trie();
+        used = false;
     }
 
     @Override
@@ -94,6 +99,7 @@ public class XSub extends SocketBase
         assert (pipe != null);
         fq.attach(pipe);
         dist.attach(pipe);
+        used = true;
 
         //  Send all the cached subscriptions to the new upstream peer.
         subscriptions.apply(sendSubscription, pipe);
@@ -136,6 +142,8 @@ public class XSub extends SocketBase
             throw new IllegalArgumentException("subscription flag");
         }
 
+        used = true;
+
         // Process the subscription.
         if (data[0] == 1) {
             // this used to filter out duplicate subscriptions,
@@ -155,6 +163,25 @@ public class XSub extends SocketBase
         return true;
     }
 
+    @Override
+    public boolean xsetsockopt(int option, Object optval)
+    {
+        if (option == ZMQ.ZMQ_FQ_QUANTUM) {
+            fq.setQuantum((Integer) optval);
+            return true;
+        }
+        if (option != ZMQ.ZMQ_EXACT_TOPIC) {
+            return false;
+        }
+        //  Too late once there are subscriptions.
+        if (used) {
+            return false;
+        }
+        int topicLength = (Integer) optval;
+        subscriptions = topicLength == 0 ? new Trie() : new TopicSet(topicLength);
+        return true;
+    }
+
     @Override
     protected boolean xhasOut()
     {
@@ -199,9 +226,11 @@ public class XSub extends SocketBase
             //  Message doesn't match. Pop any remaining parts of the message
             //  from the pipe.
             while (msg.hasMore()) {
+                msg.release();
                 msg = fq.recv(errno);
                 assert (msg != null);
             }
+            msg.release();
         }
     }
 
@@ -240,14 +269,16 @@ public class XSub extends SocketBase
             //  Message doesn't match. Pop any remaining parts of the message
             //  from the pipe.
             while (message.hasMore()) {
+                message.release();
                 message = fq.recv(errno);
                 assert (message != null);
             }
+            message.release();
         }
     }
 
     private boolean match(Msg msg)
     {
-        return subscriptions.check(msg.data());
+        return subscriptions.check(msg.array(), msg.offset(), msg.size());
     }
 }
@@ -47,6 +47,15 @@ public class ZMQ
     /*  Default for new contexts                                                  */
     public static final int ZMQ_IO_THREADS_DFLT = 1;
     public static final int ZMQ_MAX_SOCKETS_DFLT = 1024;
+    public static final int ZMQ_MSG_POOL_SIZE_DFLT = 0;
+    public static final int ZMQ_MSG_POOL_CAPACITY_DFLT = 1024;
+    public static final int ZMQ_TIMER_WHEEL_DFLT = 0;
+    public static final int ZMQ_IO_REBALANCE_DFLT = 0;
+    public static final int ZMQ_IO_BUSY_POLL_DFLT = 0;
+    public static final int ZMQ_IO_BUSY_YIELD_DFLT = 0;
+    public static final int ZMQ_BATCH_SIZE_MIN_DFLT = 8192;
+    public static final int ZMQ_BATCH_SIZE_MAX_DFLT = 128 * 1024;
+    public static final int ZMQ_BATCH_POOL_CAPACITY_DFLT = 64;
 
     /******************************************************************************/
     /*  0MQ socket definition.                                                    */
@@ -113,6 +122,40 @@ public class ZMQ
     /* Custom options */
     public static final int ZMQ_ENCODER = 1001;
     public static final int ZMQ_DECODER = 1002;
+    public static final int ZMQ_RCV_DIRECT_THRESHOLD = 1005;
+    public static final int ZMQ_RCV_ALLOCATOR = 1006;
+    public static final int ZMQ_SND_GATHER_THRESHOLD = 1007;
+    public static final int ZMQ_FANOUT_THRESHOLD = 1009;
+    public static final int ZMQ_XPUB_PATRICIA = 1010;
+    public static final int ZMQ_EXACT_TOPIC = 1011;
+    public static final int ZMQ_ROUTER_INT_ID = 1012;
+    public static final int ZMQ_LB_STRATEGY = 1013;
+    public static final int ZMQ_LB_WEIGHT = 1014;
+    public static final int ZMQ_FQ_QUANTUM = 1015;
+    public static final int ZMQ_FQ_WEIGHT = 1016;
+    public static final int ZMQ_FQ_PRIORITY = 1017;
+    public static final int ZMQ_IO_BUDGET = 1021;
+    //  Also context options, giving the defaults of the context's sockets.
+    public static final int ZMQ_BATCH_SIZE_MIN = 1022;
+    public static final int ZMQ_BATCH_SIZE_MAX = 1023;
+
+    /* Custom context options */
+    public static final int ZMQ_MSG_POOL_SIZE = 1003;
+    public static final int ZMQ_MSG_POOL_CAPACITY = 1004;
+    public static final int ZMQ_TIMER_WHEEL = 1008;
+    public static final int ZMQ_IO_REBALANCE = 1018;
+    public static final int ZMQ_IO_BUSY_POLL = 1019;
+    public static final int ZMQ_IO_BUSY_YIELD = 1020;
+    public static final int ZMQ_BATCH_POOL_CAPACITY = 1024;
+
+    /*  ZMQ_EXACT_TOPIC value: the whole first frame is the topic.                */
+    public static final int ZMQ_EXACT_TOPIC_FRAME = -1;
+
+    /*  ZMQ_LB_STRATEGY values.                                                   */
+    public static final int ZMQ_LB_ROUND_ROBIN = 0;
+    public static final int ZMQ_LB_LEAST_OUTSTANDING = 1;
+    public static final int ZMQ_LB_POWER_OF_TWO = 2;
+    public static final int ZMQ_LB_WEIGHTED = 3;
 
     /*  Message options                                                           */
     public static final int ZMQ_MORE = 1;
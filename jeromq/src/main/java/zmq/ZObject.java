@@ -29,6 +29,11 @@ public abstract class ZObject
     //  Thread ID of the thread the object belongs to.
     private final int tid;
 
+    //  I/O thread the object has been moved to, null while it runs in the
+    //  thread of its ID. Commands keep being sent to the thread of its ID,
+    //  which forwards them so that they are processed in order.
+    private IOThread host;
+
     protected ZObject(Ctx ctx, int tid)
     {
         this.ctx = ctx;
@@ -38,6 +43,7 @@ public abstract class ZObject
     protected ZObject(ZObject parent)
     {
         this(parent.ctx, parent.tid);
+        host = parent.host;
     }
 
     protected int getTid()
@@ -50,6 +56,16 @@ public abstract class ZObject
         return ctx;
     }
 
+    IOThread host()
+    {
+        return host;
+    }
+
+    void setHost(IOThread host)
+    {
+        this.host = host;
+    }
+
     protected void processCommand(Command cmd)
     {
         switch (cmd.type()) {
@@ -117,6 +133,14 @@ public abstract class ZObject
             processReaped();
             break;
 
+        case FANOUT:
+            processFanout((Fanout.Task) cmd.arg);
+            break;
+
+        case MIGRATE:
+            processMigrate();
+            break;
+
         default:
             throw new IllegalArgumentException();
         }
@@ -268,6 +292,14 @@ public abstract class ZObject
         sendCommand(cmd);
     }
 
+    //  Unlike other commands, goes straight to the thread the destination
+    //  is moved to.
+    protected void sendMigrate(ZObject destination, IOThread ioThread)
+    {
+        Command cmd = new Command(destination, Command.Type.MIGRATE);
+        ctx.sendCommand(ioThread.getTid(), cmd);
+    }
+
     protected void sendDone()
     {
         Command cmd = new Command(null, Command.Type.DONE);
@@ -349,6 +381,16 @@ public abstract class ZObject
         throw new UnsupportedOperationException();
     }
 
+    protected void processFanout(Fanout.Task task)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void processMigrate()
+    {
+        throw new UnsupportedOperationException();
+    }
+
     //  Special handler called after a command that requires a seqnum
     //  was processed. The implementation should catch up with its counter
     //  of processed commands here.
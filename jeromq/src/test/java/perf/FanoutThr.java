@@ -0,0 +1,154 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class FanoutThr
+{
+    private FanoutThr()
+    {
+    }
+
+    public static void main(String[] argv)
+    {
+        int subscriberCount;
+        int hwm;
+        int roundCount;
+        int ioThreads;
+        int fanoutThreshold;
+        Ctx ctx;
+        SocketBase pub;
+        SocketBase[] subs;
+        boolean rc;
+        long watch;
+        long elapsed;
+
+        if (argv.length != 3 && argv.length != 5) {
+            printf("usage: fanout_thr <subscriber-count> <hwm> <round-count> "
+                    + "[<io-threads> <fanout-threshold>]\n");
+            return;
+        }
+        subscriberCount = atoi(argv [0]);
+        hwm = atoi(argv [1]);
+        roundCount = atoi(argv [2]);
+        ioThreads = argv.length == 5 ? atoi(argv [3]) : 1;
+        fanoutThreshold = argv.length == 5 ? atoi(argv [4]) : 0;
+
+        ctx = ZMQ.init(ioThreads);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MAX_SOCKETS, subscriberCount + 1);
+
+        pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_SNDHWM, hwm);
+        if (fanoutThreshold > 0) {
+            ZMQ.setSocketOption(pub, ZMQ.ZMQ_FANOUT_THRESHOLD, fanoutThreshold);
+        }
+        rc = ZMQ.bind(pub, "inproc://fanout_thr");
+        if (!rc) {
+            printf("error in bind\n");
+            return;
+        }
+
+        subs = new SocketBase[subscriberCount];
+        for (int i = 0; i != subscriberCount; i++) {
+            subs[i] = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+            ZMQ.setSocketOption(subs[i], ZMQ.ZMQ_RCVHWM, hwm);
+            ZMQ.setSocketOption(subs[i], ZMQ.ZMQ_SUBSCRIBE, "");
+            rc = ZMQ.connect(subs[i], "inproc://fanout_thr");
+            if (!rc) {
+                printf("error in connect\n");
+                return;
+            }
+        }
+
+        //  Make sure every subscription has reached the publisher.
+        ZMQ.sleep(1);
+        ZMQ.send(pub, "warm-up", 0);
+        for (int i = 0; i != subscriberCount; i++) {
+            if (ZMQ.recv(subs[i], 0) == null) {
+                printf("error in recv\n");
+                return;
+            }
+        }
+
+        //  Each round publishes as many messages as fit in the pipes, then
+        //  waits for every subscriber to receive them. Publishing returns
+        //  before the I/O threads are done with fan-out on, so delivery
+        //  time is the one to compare.
+        int messageCount = hwm;
+        byte[] body = new byte[32];
+        long published = 0;
+        elapsed = 0;
+        for (int round = 0; round != roundCount; round++) {
+            watch = ZMQ.startStopwatch();
+            for (int i = 0; i != messageCount; i++) {
+                ZMQ.sendMsg(pub, new Msg(body), 0);
+            }
+            published += ZMQ.stopStopwatch(watch);
+
+            for (int i = 0; i != subscriberCount; i++) {
+                for (int j = 0; j != messageCount; j++) {
+                    if (ZMQ.recv(subs[i], 0) == null) {
+                        printf("error in recv\n");
+                        return;
+                    }
+                }
+            }
+            elapsed += ZMQ.stopStopwatch(watch);
+        }
+
+        printf("subscribers: %d\n", subscriberCount);
+        printf("messages published: %d\n", messageCount * roundCount);
+        printf("publish time: %.3f [ms]\n", (double) published / 1000);
+        printf("delivery time: %.3f [ms]\n", (double) elapsed / 1000);
+        printf("mean publish time: %.3f [us/msg]\n", (double) published / (messageCount * roundCount));
+        printf("mean delivery time: %.3f [us/msg]\n", (double) elapsed / (messageCount * roundCount));
+
+        //  The reaper opens a signaler for every socket it is closing, so
+        //  close the subscribers in batches to stay within the process file
+        //  descriptor limit.
+        ZMQ.close(pub);
+        for (int i = 0; i != subscriberCount; i++) {
+            ZMQ.close(subs[i]);
+            if (i % 1000 == 999) {
+                ZMQ.sleep(1);
+            }
+        }
+        ZMQ.term(ctx);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static void printf(String string)
+    {
+        System.out.println(string);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.nio.ByteBuffer;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Throughput of PUSH to PULL over loopback TCP within one process, with
+//  payloads held in direct buffers, to compare copying them into the
+//  batch buffer with handing them to a gathering write.
+public class GatherThr
+{
+    private GatherThr()
+    {
+    }
+
+    static class Worker implements Runnable
+    {
+        private final Ctx ctx;
+        private final int messageCount;
+
+        Worker(Ctx ctx, int messageCount)
+        {
+            this.ctx = ctx;
+            this.messageCount = messageCount;
+        }
+
+        @Override
+        public void run()
+        {
+            SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+            boolean rc = ZMQ.connect(s, "tcp://127.0.0.1:7830");
+            if (!rc) {
+                printf("error in connect\n");
+                return;
+            }
+            for (int i = 0; i != messageCount; i++) {
+                if (ZMQ.recvMsg(s, 0) == null) {
+                    printf("error in recvmsg\n");
+                    return;
+                }
+            }
+            ZMQ.close(s);
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 3) {
+            printf("usage: gather_thr <message-size> <message-count> <gather-threshold>\n");
+            return;
+        }
+        int messageSize = atoi(argv [0]);
+        int messageCount = atoi(argv [1]);
+        int gatherThreshold = atoi(argv [2]);
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(s, ZMQ.ZMQ_SND_GATHER_THRESHOLD, gatherThreshold);
+        boolean rc = ZMQ.bind(s, "tcp://127.0.0.1:7830");
+        if (!rc) {
+            printf("error in bind\n");
+            return;
+        }
+
+        Thread worker = new Thread(new Worker(ctx, messageCount));
+        worker.start();
+
+        ByteBuffer payload = ByteBuffer.allocateDirect(messageSize);
+
+        long watch = ZMQ.startStopwatch();
+        for (int i = 0; i != messageCount; i++) {
+            if (ZMQ.sendMsg(s, new Msg(payload), 0) < 0) {
+                printf("error in sendmsg\n");
+                return;
+            }
+        }
+        worker.join();
+        long elapsed = ZMQ.stopStopwatch(watch);
+
+        double throughput = (double) messageCount / elapsed * 1000000;
+        double megabits = throughput * messageSize * 8 / 1000000;
+
+        printf("message size: %d [B]\n", messageSize);
+        printf("message count: %d\n", messageCount);
+        printf("gather threshold: %d\n", gatherThreshold);
+        printf("mean throughput: %d [msg/s]\n", (int) throughput);
+        printf("mean throughput: %.3f [Mb/s]\n", megabits);
+
+        ZMQ.close(s);
+        ZMQ.term(ctx);
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.parseInt(string);
+    }
+
+    private static void printf(String string)
+    {
+        System.out.println(string);
+    }
+
+    private static void printf(String string, Object ... args)
+    {
+        System.out.println(String.format(string, args));
+    }
+}
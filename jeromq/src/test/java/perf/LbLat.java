@@ -0,0 +1,186 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Completion latency of tasks pushed to workers of unequal speed. The
+//  fast workers take fast-us per task, the slow ones ten times as long,
+//  and a task is sent every interval-us.
+//
+//  usage: lb_lat <rr|lo|p2c|wrr> <worker-count> <slow-count> <task-count>
+//         <fast-us> <interval-us> <hwm>
+public class LbLat
+{
+    private LbLat()
+    {
+    }
+
+    private static class Worker implements Runnable
+    {
+        private final SocketBase pull;
+        private final long serviceNanos;
+        private final long[] latencies;
+        private final AtomicInteger done;
+
+        private Worker(SocketBase pull, long serviceNanos, long[] latencies, AtomicInteger done)
+        {
+            this.pull = pull;
+            this.serviceNanos = serviceNanos;
+            this.latencies = latencies;
+            this.done = done;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true) {
+                Msg msg = ZMQ.recv(pull, 0);
+                if (msg == null) {
+                    break;
+                }
+                LockSupport.parkNanos(serviceNanos);
+                ByteBuffer buf = ByteBuffer.wrap(msg.data());
+                int task = buf.getInt();
+                latencies[task] = System.nanoTime() - buf.getLong();
+                done.incrementAndGet();
+            }
+            ZMQ.close(pull);
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 7) {
+            printf("usage: lb_lat <rr|lo|p2c|wrr> <worker-count> <slow-count> <task-count> "
+                    + "<fast-us> <interval-us> <hwm>\n");
+            return;
+        }
+        String kind = argv [0];
+        int workerCount = atoi(argv [1]);
+        int slowCount = atoi(argv [2]);
+        int taskCount = atoi(argv [3]);
+        long fastNanos = atoi(argv [4]) * 1000L;
+        long intervalNanos = atoi(argv [5]) * 1000L;
+        int hwm = atoi(argv [6]);
+
+        int strategy = ZMQ.ZMQ_LB_ROUND_ROBIN;
+        if (kind.equals("lo")) {
+            strategy = ZMQ.ZMQ_LB_LEAST_OUTSTANDING;
+        }
+        else if (kind.equals("p2c")) {
+            strategy = ZMQ.ZMQ_LB_POWER_OF_TWO;
+        }
+        else if (kind.equals("wrr")) {
+            strategy = ZMQ.ZMQ_LB_WEIGHTED;
+        }
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, hwm);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_STRATEGY, strategy);
+
+        long[] latencies = new long[taskCount];
+        AtomicInteger done = new AtomicInteger();
+        Thread[] threads = new Thread[workerCount];
+        for (int i = 0; i != workerCount; i++) {
+            //  The slow workers come first, where round robin starts.
+            boolean slow = i < slowCount;
+            SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+            ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, hwm);
+            boolean rc = ZMQ.bind(pull, "inproc://lb_lat_" + i);
+            if (!rc) {
+                printf("error in bind\n");
+                return;
+            }
+
+            //  The weights are those of the workers' speeds.
+            ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_WEIGHT, slow ? 1 : 10);
+            rc = ZMQ.connect(push, "inproc://lb_lat_" + i);
+            if (!rc) {
+                printf("error in connect\n");
+                return;
+            }
+            threads[i] = new Thread(new Worker(pull, slow ? fastNanos * 10 : fastNanos,
+                    latencies, done));
+            threads[i].start();
+        }
+
+        long watch = ZMQ.startStopwatch();
+        long next = System.nanoTime();
+        for (int i = 0; i != taskCount; i++) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+            }
+            next += intervalNanos;
+
+            ByteBuffer buf = ByteBuffer.allocate(12);
+            buf.putInt(i);
+            buf.putLong(System.nanoTime());
+            int sent = ZMQ.send(push, buf.array(), 12, 0);
+            if (sent != 12) {
+                printf("error in send\n");
+                return;
+            }
+        }
+        while (done.get() < taskCount) {
+            Thread.sleep(1);
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+
+        ZMQ.close(push);
+        ZMQ.term(ctx);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        printf("strategy: %s\n", kind);
+        printf("workers: %d, %d slow\n", workerCount, slowCount);
+        printf("elapsed: %.3f [s]\n", (double) elapsed / 1000000);
+        printf("mean latency: %.1f [us]\n", (double) total / taskCount / 1000);
+        printf("p50 latency: %.1f [us]\n", (double) latencies [taskCount / 2] / 1000);
+        printf("p99 latency: %.1f [us]\n", (double) latencies [(int) (taskCount * 0.99)] / 1000);
+        printf("max latency: %.1f [us]\n", (double) latencies [taskCount - 1] / 1000);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
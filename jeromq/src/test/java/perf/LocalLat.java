@@ -19,6 +19,8 @@
 
 package perf;
 
+import java.util.Arrays;
+
 import zmq.Ctx;
 import zmq.Msg;
 import zmq.SocketBase;
@@ -42,9 +44,9 @@ public class LocalLat
         int i;
         Msg msg;
 
-        if (args.length != 3) {
+        if (args.length < 3 || args.length > 5 || (args.length > 3 && !args[3].equals("self"))) {
             printf("usage: local_lat <bind-to> <message-size> "
-               + "<roundtrip-count>\n");
+               + "<roundtrip-count> [self [busy-poll-us]]\n");
             return;
         }
         bindTo = args [0];
@@ -57,6 +59,11 @@ public class LocalLat
             return;
         }
 
+        //  Compares blocking I/O threads with busy-polling ones.
+        if (args.length == 5) {
+            ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL, atoi(args [4]));
+        }
+
         s = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
         if (s == null) {
             printf("error in socket: %s\n", ZMQ.strerror(s.errno()));
@@ -69,6 +76,15 @@ public class LocalLat
             return;
         }
 
+        //  With "self" the requester runs in this process, so that the same
+        //  command compares transports, e.g. tcp://127.0.0.1:5555 against
+        //  ipc:///tmp/local_lat.
+        Thread remote = null;
+        if (args.length >= 4) {
+            remote = new Thread(new Requester(ctx, bindTo, messageSize, roundtripCount));
+            remote.start();
+        }
+
         for (i = 0; i != roundtripCount; i++) {
             msg = ZMQ.recvMsg(s, 0);
             if (msg == null) {
@@ -86,13 +102,89 @@ public class LocalLat
             }
         }
 
-        ZMQ.sleep(1000);
+        if (remote != null) {
+            try {
+                remote.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else {
+            ZMQ.sleep(1000);
+        }
 
         ZMQ.close(s);
 
         ZMQ.term(ctx);
     }
 
+    private static class Requester implements Runnable
+    {
+        private final Ctx ctx;
+        private final String connectTo;
+        private final int messageSize;
+        private final int roundtripCount;
+
+        private Requester(Ctx ctx, String connectTo, int messageSize, int roundtripCount)
+        {
+            this.ctx = ctx;
+            this.connectTo = connectTo;
+            this.messageSize = messageSize;
+            this.roundtripCount = roundtripCount;
+        }
+
+        @Override
+        public void run()
+        {
+            SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+            if (!ZMQ.connect(s, connectTo)) {
+                printf("error in connect: %s\n", ZMQ.strerror(s.errno()));
+                return;
+            }
+
+            long[] latencies = new long[roundtripCount];
+            long watch = ZMQ.startStopwatch();
+            for (int i = 0; i != roundtripCount; i++) {
+                long start = System.nanoTime();
+                Msg msg = ZMQ.msgInitWithSize(messageSize);
+                if (ZMQ.sendMsg(s, msg, 0) < 0) {
+                    printf("error in sendmsg: %s\n", ZMQ.strerror(s.errno()));
+                    return;
+                }
+                msg = ZMQ.recvMsg(s, 0);
+                if (msg == null) {
+                    printf("error in recvmsg: %s\n", ZMQ.strerror(s.errno()));
+                    return;
+                }
+                latencies[i] = System.nanoTime() - start;
+            }
+            long elapsed = ZMQ.stopStopwatch(watch);
+            double latency = (double) elapsed / (roundtripCount * 2);
+
+            //  Half of the roundtrips, like the average.
+            Arrays.sort(latencies);
+            printf("endpoint: %s", connectTo);
+            printf("message size: %d [B]", messageSize);
+            printf("roundtrip count: %d", roundtripCount);
+            printf("busy poll: %d [us]", ctx.get(ZMQ.ZMQ_IO_BUSY_POLL));
+            printf("average latency: %.3f [us]", latency);
+            printf("p50 latency: %.3f [us]", percentile(latencies, 0.5));
+            printf("p99 latency: %.3f [us]", percentile(latencies, 0.99));
+            printf("p99.9 latency: %.3f [us]", percentile(latencies, 0.999));
+            printf("max latency: %.3f [us]", percentile(latencies, 1));
+
+            ZMQ.close(s);
+        }
+    }
+
+    //  One-way latency at the given rank of the sorted roundtrip times.
+    private static double percentile(long[] latencies, double rank)
+    {
+        int index = Math.min(latencies.length - 1, (int) (latencies.length * rank));
+        return (double) latencies [index] / 2000;
+    }
+
     private static int atoi(String string)
     {
         return Integer.parseInt(string);
@@ -45,8 +45,8 @@ public class LocalThr
         long throughput;
         double megabits;
 
-        if (argv.length != 3) {
-            printf("usage: local_thr <bind-to> <message-size> <message-count>\n");
+        if (argv.length < 3 || argv.length > 5 || (argv.length > 3 && !argv[3].equals("self"))) {
+            printf("usage: local_thr <bind-to> <message-size> <message-count> [self [io-budget]]\n");
             return;
         }
         bindTo = argv [0];
@@ -66,6 +66,10 @@ public class LocalThr
 
         //  Add your socket options here.
         //  For example ZMQ_RATE, ZMQ_RECOVERY_IVL and ZMQ_MCAST_LOOP for PGM.
+        int ioBudget = argv.length == 5 ? atoi(argv [4]) : -1;
+        if (ioBudget >= 0) {
+            ZMQ.setSocketOption(s, ZMQ.ZMQ_IO_BUDGET, ioBudget);
+        }
 
         rc = ZMQ.bind(s, bindTo);
         if (!rc) {
@@ -73,6 +77,13 @@ public class LocalThr
             return;
         }
 
+        //  With "self" the sender runs in this process, so that the same
+        //  command compares transports, e.g. tcp://127.0.0.1:5555 against
+        //  ipc:///tmp/local_thr.
+        if (argv.length >= 4) {
+            new Thread(new Sender(ctx, bindTo, messageSize, messageCount, ioBudget)).start();
+        }
+
         msg = ZMQ.recvMsg(s, 0);
         if (msg == null) {
             printf("error in recvmsg: %s\n");
@@ -102,6 +113,7 @@ public class LocalThr
                 ((double) messageCount / (double) elapsed * 1000000L);
         megabits = (double) (throughput * messageSize * 8) / 1000000;
 
+        printf("endpoint: %s", bindTo);
         printf("message elapsed: %.3f \n", (double) elapsed / 1000000L);
         printf("message size: %d [B]\n", (int) messageSize);
         printf("message count: %d\n", (int) messageCount);
@@ -113,6 +125,44 @@ public class LocalThr
         ZMQ.term(ctx);
     }
 
+    private static class Sender implements Runnable
+    {
+        private final Ctx ctx;
+        private final String connectTo;
+        private final int messageSize;
+        private final long messageCount;
+        private final int ioBudget;
+
+        private Sender(Ctx ctx, String connectTo, int messageSize, long messageCount, int ioBudget)
+        {
+            this.ctx = ctx;
+            this.connectTo = connectTo;
+            this.messageSize = messageSize;
+            this.messageCount = messageCount;
+            this.ioBudget = ioBudget;
+        }
+
+        @Override
+        public void run()
+        {
+            SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+            if (ioBudget >= 0) {
+                ZMQ.setSocketOption(s, ZMQ.ZMQ_IO_BUDGET, ioBudget);
+            }
+            if (!ZMQ.connect(s, connectTo)) {
+                printf("error in connect: %s\n", ZMQ.strerror(s.errno()));
+                return;
+            }
+            for (long i = 0; i != messageCount; i++) {
+                if (ZMQ.sendMsg(s, ZMQ.msgInitWithSize(messageSize), 0) < 0) {
+                    printf("error in sendmsg: %s\n", ZMQ.strerror(s.errno()));
+                    return;
+                }
+            }
+            ZMQ.close(s);
+        }
+    }
+
     private static void printf(String str, Object ... args)
     {
         // TODO Auto-generated method stub
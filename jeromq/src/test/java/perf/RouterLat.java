@@ -0,0 +1,124 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import zmq.Blob;
+import zmq.IntMap;
+import zmq.Msg;
+import zmq.ZMQ;
+
+//  Cost of finding the outbound pipe for the identity frame of a message
+//  sent on a ROUTER socket, with the default five byte identities kept in
+//  a HashMap of blobs and with ZMQ_ROUTER_INT_ID.
+//
+//  usage: router_lat <blob|int> <peer-count> <lookup-count>
+public class RouterLat
+{
+    private RouterLat()
+    {
+    }
+
+    public static void main(String[] argv)
+    {
+        if (argv.length != 3) {
+            printf("usage: router_lat <blob|int> <peer-count> <lookup-count>\n");
+            return;
+        }
+        String kind = argv [0];
+        int peerCount = atoi(argv [1]);
+        int lookupCount = atoi(argv [2]);
+        boolean intIds = kind.equals("int");
+
+        //  Peer IDs start at a random value like the ones of the ROUTER.
+        int first = new Random(1).nextInt();
+        Map<Blob, Object> outpipes = new HashMap<Blob, Object>();
+        IntMap<Object> intOutpipes = new IntMap<Object>();
+        for (int i = 0; i != peerCount; i++) {
+            if (intIds) {
+                intOutpipes.put(first + i, Integer.valueOf(i));
+            }
+            else {
+                outpipes.put(Blob.createBlob(identity(first + i, false), false), Integer.valueOf(i));
+            }
+        }
+
+        //  Replies go to random peers.
+        Random random = new Random(2);
+        Msg[] samples = new Msg[4096];
+        for (int i = 0; i != samples.length; i++) {
+            samples[i] = new Msg(identity(first + random.nextInt(peerCount), intIds));
+        }
+
+        long found = 0;
+        for (int round = 0; round != 2; round++) {
+            found = 0;
+            long watch = ZMQ.startStopwatch();
+            for (int i = 0; i != lookupCount; i++) {
+                Msg msg = samples[i & (samples.length - 1)];
+                Object op;
+                if (intIds) {
+                    op = intOutpipes.get((msg.get(0) & 0xff) << 24 | (msg.get(1) & 0xff) << 16
+                            | (msg.get(2) & 0xff) << 8 | (msg.get(3) & 0xff));
+                }
+                else {
+                    op = outpipes.get(Blob.createBlob(msg.data(), true));
+                }
+                if (op != null) {
+                    found++;
+                }
+            }
+            long elapsed = ZMQ.stopStopwatch(watch);
+
+            //  The first round warms up.
+            if (round == 1) {
+                printf("ids: %s\n", kind);
+                printf("peers: %d\n", peerCount);
+                printf("lookup: %.1f [ns/op], %d found\n", (double) elapsed * 1000 / lookupCount,
+                        found);
+            }
+        }
+    }
+
+    //  Identity the ROUTER generates for the given peer ID.
+    private static byte[] identity(int id, boolean intIds)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(intIds ? 4 : 5);
+        if (!intIds) {
+            buf.put((byte) 0);
+        }
+        buf.putInt(id);
+        return buf.array();
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
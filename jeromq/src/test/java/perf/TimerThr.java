@@ -0,0 +1,128 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.util.Random;
+
+import zmq.IPollEvents;
+import zmq.Poller;
+
+public class TimerThr
+{
+    private TimerThr()
+    {
+    }
+
+    private static class Sink implements IPollEvents
+    {
+        @Override
+        public void inEvent()
+        {
+        }
+
+        @Override
+        public void outEvent()
+        {
+        }
+
+        @Override
+        public void connectEvent()
+        {
+        }
+
+        @Override
+        public void acceptEvent()
+        {
+        }
+
+        @Override
+        public void timerEvent(int id)
+        {
+        }
+    }
+
+    public static void main(String[] argv)
+    {
+        int timerCount;
+        int roundCount;
+
+        if (argv.length != 2) {
+            printf("usage: timer_thr <timer-count> <round-count>\n");
+            return;
+        }
+        timerCount = atoi(argv [0]);
+        roundCount = atoi(argv [1]);
+
+        Sink[] sinks = new Sink[timerCount];
+        long[] timeouts = new long[timerCount];
+        Random random = new Random(42);
+        for (int i = 0; i != timerCount; i++) {
+            sinks[i] = new Sink();
+            timeouts[i] = 100 + random.nextInt(60000);
+        }
+
+        //  Reconnect, linger and handshake timers are mostly cancelled
+        //  before they expire, measure add + cancel.
+        for (int round = 0; round != roundCount; round++) {
+            run("map, cancel by id", new Poller("map", false), sinks, timeouts, false);
+            run("map, cancel by handle", new Poller("map", false), sinks, timeouts, true);
+            run("wheel, cancel by handle", new Poller("wheel", true), sinks, timeouts, true);
+        }
+    }
+
+    private static void run(String name, Poller poller, Sink[] sinks, long[] timeouts, boolean byHandle)
+    {
+        int count = sinks.length;
+        Poller.Timer[] handles = new Poller.Timer[count];
+
+        long start = System.nanoTime();
+        for (int i = 0; i != count; i++) {
+            handles[i] = poller.addTimer(timeouts[i], sinks[i], 1);
+        }
+        long added = System.nanoTime();
+        for (int i = 0; i != count; i++) {
+            if (byHandle) {
+                poller.cancelTimer(handles[i]);
+            }
+            else {
+                poller.cancelTimer(sinks[i], 1);
+            }
+        }
+        long cancelled = System.nanoTime();
+
+        printf("%-24s add: %8.1f [ns/timer]  cancel: %10.1f [ns/timer]", name,
+                (double) (added - start) / count, (double) (cancelled - added) / count);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static void printf(String string)
+    {
+        System.out.println(string);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.util.Random;
+
+import zmq.Ctx;
+import zmq.IMtrie;
+import zmq.Mtrie;
+import zmq.Pipe;
+import zmq.Ptrie;
+import zmq.TopicMap;
+import zmq.ZMQ;
+import zmq.ZObject;
+
+//  Memory footprint and match latency of the XPub subscription tries.
+//
+//  usage: trie_lat <mtrie|ptrie|exact> <topic-count> <match-count>
+public class TrieLat
+{
+    private static final String[] CLASSES = {"EQ", "FX", "FI", "CM"};
+    private static final String[] VENUES = {
+        "XNAS", "XNYS", "ARCX", "BATS", "XLON", "XPAR", "XETR", "XAMS",
+        "XTKS", "XHKG", "XASX", "XTSE", "XSWX", "XMIL", "XMAD", "XSTO"
+    };
+
+    private static final Mtrie.IMtrieHandler count = new Mtrie.IMtrieHandler()
+    {
+        @Override
+        public void invoke(Pipe pipe, byte[] data, int size, Object arg)
+        {
+            ((int[]) arg) [0]++;
+        }
+    };
+
+    private TrieLat()
+    {
+    }
+
+    public static void main(String[] argv)
+    {
+        if (argv.length != 3) {
+            printf("usage: trie_lat <mtrie|ptrie|exact> <topic-count> <match-count>\n");
+            return;
+        }
+        String kind = argv [0];
+        int topicCount = atoi(argv [1]);
+        int matchCount = atoi(argv [2]);
+
+        Ctx ctx = new Ctx();
+        ZObject parent = new ZObject(ctx, 0)
+        {
+        };
+        Pipe[] pipes = new Pipe[64];
+        for (int i = 0; i != pipes.length; i++) {
+            Pipe[] pair = new Pipe[2];
+            Pipe.pipepair(new ZObject[] {parent, parent}, pair, new int[] {0, 0},
+                    new boolean[] {false, false});
+            pipes[i] = pair[0];
+        }
+
+        long before = usedMemory();
+        long watch = ZMQ.startStopwatch();
+        IMtrie trie;
+        if (kind.equals("ptrie")) {
+            trie = new Ptrie();
+        }
+        else if (kind.equals("exact")) {
+            trie = new TopicMap(ZMQ.ZMQ_EXACT_TOPIC_FRAME);
+        }
+        else {
+            trie = new Mtrie();
+        }
+        for (int i = 0; i != topicCount; i++) {
+            trie.add(topic(i), pipes [i % pipes.length]);
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+        long after = usedMemory();
+
+        //  Mostly hits, one message in eight is for an unknown symbol.
+        Random random = new Random(1);
+        byte[][] samples = new byte[4096][];
+        for (int i = 0; i != samples.length; i++) {
+            int n = random.nextInt(topicCount);
+            samples[i] = i % 8 == 0 ? topic(n + topicCount) : topic(n);
+        }
+
+        int[] matched = new int[1];
+        for (int i = 0; i != matchCount; i++) {
+            byte[] data = samples[i % samples.length];
+            trie.match(data, data.length, count, matched);
+        }
+        matched[0] = 0;
+        watch = ZMQ.startStopwatch();
+        for (int i = 0; i != matchCount; i++) {
+            byte[] data = samples[i % samples.length];
+            trie.match(data, data.length, count, matched);
+        }
+        long matchTime = ZMQ.stopStopwatch(watch);
+
+        printf("trie: %s\n", kind);
+        printf("topics: %d\n", topicCount);
+        printf("build time: %.3f [s]\n", (double) elapsed / 1000000);
+        printf("memory: %d [MB], %.1f [B/subscription]\n", (after - before) >> 20,
+                (double) (after - before) / topicCount);
+        printf("match: %.1f [ns/op], %d matched\n", (double) matchTime * 1000 / matchCount,
+                matched[0]);
+
+        //  Keep the trie reachable until the memory has been measured.
+        if (trie.add(null, pipes [0])) {
+            printf("\n");
+        }
+    }
+
+    //  Topics look like md.EQ.XNAS.AAPL.L1, unique for every index.
+    private static byte[] topic(int index)
+    {
+        StringBuilder symbol = new StringBuilder();
+        int n = index / (CLASSES.length * VENUES.length);
+        do {
+            symbol.append((char) ('A' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        while (symbol.length() < 4) {
+            symbol.append('A');
+        }
+        String topic = "md." + CLASSES [index % CLASSES.length]
+                + "." + VENUES [(index / CLASSES.length) % VENUES.length]
+                + "." + symbol + ".L" + (1 + index % 2);
+        return topic.getBytes(ZMQ.CHARSET);
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i != 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Round trips of many concurrent REQ clients, each running in a thread
+//  of its own, against a single ROUTER echo server. The clients run in
+//  virtual threads when the runtime has them, in platform threads
+//  otherwise.
+//
+//  usage: virtual_req_rep <client-count> <roundtrip-count> <message-size>
+//         [endpoint]
+public class VirtualReqRep
+{
+    private VirtualReqRep()
+    {
+    }
+
+    private static class Server implements Runnable
+    {
+        private final SocketBase router;
+
+        private Server(SocketBase router)
+        {
+            this.router = router;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true) {
+                //  Identity, delimiter and body go back the way they came.
+                Msg msg = ZMQ.recv(router, 0);
+                if (msg == null) {
+                    break;
+                }
+                boolean more = msg.hasMore();
+                if (ZMQ.send(router, msg, more ? ZMQ.ZMQ_SNDMORE : 0) < 0) {
+                    break;
+                }
+            }
+            ZMQ.close(router);
+        }
+    }
+
+    private static class Client implements Runnable
+    {
+        private final Ctx ctx;
+        private final String endpoint;
+        private final int roundtripCount;
+        private final int messageSize;
+        private final long[] latencies;
+        private final int offset;
+        private final CountDownLatch done;
+
+        private Client(Ctx ctx, String endpoint, int roundtripCount, int messageSize,
+                       long[] latencies, int offset, CountDownLatch done)
+        {
+            this.ctx = ctx;
+            this.endpoint = endpoint;
+            this.roundtripCount = roundtripCount;
+            this.messageSize = messageSize;
+            this.latencies = latencies;
+            this.offset = offset;
+            this.done = done;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                SocketBase req = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+                if (!ZMQ.connect(req, endpoint)) {
+                    printf("error in connect\n");
+                    return;
+                }
+                byte[] body = new byte[messageSize];
+                for (int i = 0; i != roundtripCount; i++) {
+                    long start = System.nanoTime();
+                    if (ZMQ.send(req, body, messageSize, 0) != messageSize) {
+                        printf("error in send\n");
+                        return;
+                    }
+                    Msg msg = ZMQ.recv(req, 0);
+                    if (msg == null || msg.size() != messageSize) {
+                        printf("error in recv\n");
+                        return;
+                    }
+                    latencies[offset + i] = System.nanoTime() - start;
+                }
+                ZMQ.close(req);
+            }
+            finally {
+                done.countDown();
+            }
+        }
+    }
+
+    //  One virtual thread per task if available, one platform thread per
+    //  task otherwise.
+    private static ExecutorService newExecutor()
+    {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 3 && argv.length != 4) {
+            printf("usage: virtual_req_rep <client-count> <roundtrip-count> <message-size> "
+                    + "[endpoint]\n");
+            return;
+        }
+        int clientCount = atoi(argv [0]);
+        int roundtripCount = atoi(argv [1]);
+        int messageSize = atoi(argv [2]);
+        String endpoint = argv.length == 4 ? argv [3] : "inproc://virtual_req_rep";
+
+        Ctx ctx = ZMQ.init(1);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MAX_SOCKETS, clientCount + 16);
+
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_SNDHWM, 0);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_RCVHWM, 0);
+        if (!ZMQ.bind(router, endpoint)) {
+            printf("error in bind\n");
+            return;
+        }
+        Thread server = new Thread(new Server(router));
+        server.start();
+
+        ExecutorService executor = newExecutor();
+        boolean virtual = executor != null;
+        if (!virtual) {
+            executor = Executors.newCachedThreadPool();
+        }
+
+        long[] latencies = new long[clientCount * roundtripCount];
+        CountDownLatch done = new CountDownLatch(clientCount);
+        long watch = ZMQ.startStopwatch();
+        for (int i = 0; i != clientCount; i++) {
+            executor.execute(new Client(ctx, endpoint, roundtripCount, messageSize,
+                    latencies, i * roundtripCount, done));
+        }
+        done.await();
+        long elapsed = ZMQ.stopStopwatch(watch);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        ZMQ.term(ctx);
+        server.join();
+
+        int count = latencies.length;
+        Arrays.sort(latencies);
+        printf("threads: %s\n", virtual ? "virtual" : "platform");
+        printf("clients: %d\n", clientCount);
+        printf("roundtrip count: %d\n", roundtripCount);
+        printf("message size: %d [B]\n", messageSize);
+        printf("elapsed: %.3f [s]\n", (double) elapsed / 1000000);
+        printf("throughput: %d [roundtrips/s]\n", (long) count * 1000000 / elapsed);
+        printf("p50 latency: %.1f [us]\n", (double) latencies [count / 2] / 1000);
+        printf("p99 latency: %.1f [us]\n", (double) latencies [(int) (count * 0.99)] / 1000);
+        printf("max latency: %.1f [us]\n", (double) latencies [count - 1] / 1000);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TestBatchSize
+{
+    @Test
+    public void testOptions()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MIN), is(ZMQ.ZMQ_BATCH_SIZE_MIN_DFLT));
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MAX), is(ZMQ.ZMQ_BATCH_SIZE_MAX_DFLT));
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MIN, 1024);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MAX, 65536);
+
+        //  Sockets take the bounds of their context.
+        SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(ZMQ.getSocketOption(s, ZMQ.ZMQ_BATCH_SIZE_MIN), is(1024));
+        assertThat(ZMQ.getSocketOption(s, ZMQ.ZMQ_BATCH_SIZE_MAX), is(65536));
+        ZMQ.setSocketOption(s, ZMQ.ZMQ_BATCH_SIZE_MAX, 4096);
+        assertThat(ZMQ.getSocketOption(s, ZMQ.ZMQ_BATCH_SIZE_MAX), is(4096));
+
+        ZMQ.close(s);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOption()
+    {
+        new Options().setSocketOpt(ZMQ.ZMQ_BATCH_SIZE_MIN, 0);
+    }
+
+    @Test
+    public void testDecoderGrowsAndShrinks()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        Decoder decoder = new Decoder(64, -1);
+        decoder.setMsgSink(session);
+        decoder.setMaxBufferSize(128);
+
+        //  Eight frames of 8 bytes fill the buffer.
+        for (int round = 0; round < 2; round++) {
+            ByteBuffer in = decoder.getBuffer();
+            int size = in.remaining();
+            while (in.hasRemaining()) {
+                in.put((byte) 7).put((byte) 0).put("batch!".getBytes(ZMQ.CHARSET));
+            }
+            in.flip();
+            assertThat(decoder.processBuffer(in, size), is(size));
+        }
+        assertThat(session.out.size(), is(8 + 16));
+
+        //  Growth stops at the maximum.
+        assertThat(decoder.getBuffer().capacity(), is(128));
+        assertThat(decoder.bufferSize(), is(128));
+
+        //  Back to the minimum once a period went by without filling it.
+        assertThat(decoder.shrink(), is(true));
+        assertThat(decoder.shrink(), is(false));
+        assertThat(decoder.getBuffer().capacity(), is(64));
+    }
+
+    @Test
+    public void testEncoderGrowsAndShrinks()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        Encoder encoder = new Encoder(64);
+        encoder.setMsgSource(session);
+        encoder.setMaxBufferSize(256);
+        for (int i = 0; i < 40; i++) {
+            session.pushMsg(new Msg("hello".getBytes(ZMQ.CHARSET)));
+        }
+
+        //  Batches of 7 byte frames, the buffer doubling after each.
+        assertThat(encoder.getData(null).remaining(), is(64));
+        assertThat(encoder.getData(null).remaining(), is(128));
+        assertThat(encoder.bufferSize(), is(128));
+        assertThat(encoder.getData(null).remaining(), is(40 * 7 - 64 - 128));
+        assertThat(encoder.bufferSize(), is(256));
+
+        assertThat(encoder.shrink(), is(true));
+        assertThat(encoder.shrink(), is(false));
+        assertThat(encoder.bufferSize(), is(64));
+    }
+
+    @Test
+    public void testBuffersBeyondPool()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        Encoder encoder = new Encoder(64);
+        encoder.setMsgSource(session);
+        encoder.setMaxBufferSize(256);
+        BufferPool pool = new BufferPool(64, 4);
+        encoder.setBatchPool(pool);
+        for (int i = 0; i < 40; i++) {
+            session.pushMsg(new Msg("hello".getBytes(ZMQ.CHARSET)));
+        }
+
+        assertThat(encoder.getData(null).remaining(), is(64));
+        assertThat(pool.leased(), is(64L));
+
+        //  Grown past the largest size of the pool, the buffer isn't
+        //  leased and stays with the encoder while idle.
+        assertThat(encoder.getData(null).remaining(), is(128));
+        assertThat(pool.leased(), is(0L));
+        assertThat(pool.free(), is(64L));
+        encoder.releaseBuffer();
+        assertThat(pool.free(), is(64L));
+
+        assertThat(encoder.shrink(), is(true));
+        assertThat(encoder.shrink(), is(false));
+        assertThat(encoder.getData(null).remaining(), is(64));
+        assertThat(pool.leased(), is(64L));
+        encoder.releaseBuffer();
+        assertThat(pool.leased(), is(0L));
+    }
+
+    @Test
+    public void testTransfer() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MIN, 256);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_BATCH_SIZE_MAX, 16384);
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(ZMQ.bind(pull, "tcp://127.0.0.1:7814"), is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(ZMQ.connect(push, "tcp://127.0.0.1:7814"), is(true));
+
+        //  Frames both smaller and larger than the buffers.
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[i % 3 == 0 ? 1000 : 10 + i % 100];
+            data[0] = (byte) i;
+            data[data.length - 1] = (byte) i;
+            assertThat(ZMQ.send(push, data, data.length, 0), is(data.length));
+        }
+        for (int i = 0; i < count; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.size(), is(i % 3 == 0 ? 1000 : 10 + i % 100));
+            byte[] data = msg.data();
+            assertThat(data[0], is((byte) i));
+            assertThat(data[data.length - 1], is((byte) i));
+        }
+
+        //  Once idle, the engines give their buffers back.
+        BufferPool pool = ctx.getBatchPool();
+        for (int i = 0; i < 100 && pool.leased() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.leased(), is(0L));
+        assertThat(pool.highWater() >= 256, is(true));
+        assertThat(pool.free() >= 256, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
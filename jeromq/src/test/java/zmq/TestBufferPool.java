@@ -0,0 +1,233 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+public class TestBufferPool
+{
+    @Test
+    public void testReleaseRecyclesPayload()
+    {
+        BufferPool pool = new BufferPool(1000, 4);
+        assertThat(pool.maxSize(), is(1024));
+
+        Msg msg = pool.allocate(20);
+        assertThat(msg.size(), is(20));
+        assertThat(msg.isPooled(), is(true));
+        byte[] array = msg.array();
+        assertThat(array.length, is(32));
+
+        msg.release();
+        assertThat(msg.size(), is(0));
+        assertThat(pool.available(20), is(1));
+
+        //  Same size class gets the same array back.
+        Msg other = pool.allocate(31);
+        assertThat(other.array(), sameInstance(array));
+        assertThat(pool.available(20), is(0));
+    }
+
+    @Test
+    public void testOversizedAndEmptyNotPooled()
+    {
+        BufferPool pool = new BufferPool(64, 4);
+        assertThat(pool.allocate(65).isPooled(), is(false));
+        assertThat(pool.allocate(0).isPooled(), is(false));
+    }
+
+    @Test
+    public void testCapacityBound()
+    {
+        BufferPool pool = new BufferPool(64, 2);
+        Msg a = pool.allocate(40);
+        Msg b = pool.allocate(40);
+        Msg c = pool.allocate(40);
+        a.close();
+        b.close();
+        c.close();
+        assertThat(pool.available(40), is(2));
+    }
+
+    @Test
+    public void testDataDetachesExactFit()
+    {
+        BufferPool pool = new BufferPool(64, 2);
+
+        //  Exact fit, the array is handed to the caller.
+        Msg msg = pool.allocate(32);
+        byte[] data = msg.data();
+        assertThat(data, sameInstance(msg.array()));
+        msg.release();
+        assertThat(pool.available(32), is(0));
+
+        //  Partial fit, the caller gets a trimmed copy.
+        msg = pool.allocate(5);
+        msg.put("hello".getBytes(ZMQ.CHARSET));
+        data = msg.data();
+        assertThat(data.length, is(5));
+        assertThat(data, not(sameInstance(msg.array())));
+        assertThat(new String(data, ZMQ.CHARSET), is("hello"));
+        msg.release();
+        assertThat(pool.available(5), is(1));
+    }
+
+    @Test
+    public void testDirectReleaseRecycles()
+    {
+        BufferPool pool = new BufferPool(256, 4);
+        Msg msg = pool.allocateDirect(100);
+        assertThat(msg.isPooled(), is(true));
+        assertThat(msg.hasArray(), is(false));
+        assertThat(msg.size(), is(100));
+        assertThat(msg.buf().isDirect(), is(true));
+
+        msg.release();
+        assertThat(pool.availableDirect(100), is(1));
+        assertThat(pool.available(100), is(0));
+
+        msg = pool.allocateDirect(120);
+        assertThat(msg.size(), is(120));
+        assertThat(pool.availableDirect(100), is(0));
+    }
+
+    @Test
+    public void testDirectStats()
+    {
+        BufferPool pool = new BufferPool(256, 4);
+        ByteBuffer a = pool.acquireDirect(100);
+        ByteBuffer b = pool.acquireDirect(100);
+        assertThat(a.capacity(), is(128));
+        assertThat(pool.leased(), is(256L));
+        assertThat(pool.highWater(), is(256L));
+        assertThat(pool.free(), is(0L));
+
+        pool.release(a);
+        assertThat(pool.leased(), is(128L));
+        assertThat(pool.free(), is(128L));
+        assertThat(pool.acquireDirect(120), sameInstance(a));
+        assertThat(pool.free(), is(0L));
+
+        //  Too large for the pool, counted but not retained.
+        ByteBuffer large = pool.acquireDirect(1000);
+        assertThat(large.capacity(), is(1000));
+        assertThat(pool.highWater(), is(1256L));
+        pool.release(large);
+        pool.release(a);
+        pool.release(b);
+        assertThat(pool.leased(), is(0L));
+        assertThat(pool.free(), is(256L));
+        assertThat(pool.highWater(), is(1256L));
+    }
+
+    @Test
+    public void testDecoderLeasesBuffer()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        BufferPool pool = new BufferPool(256, 4);
+        Decoder decoder = new Decoder(64, 256);
+        decoder.setMsgSink(session);
+        decoder.setBatchPool(pool);
+        assertThat(pool.leased(), is(0L));
+
+        ByteBuffer in = decoder.getBuffer();
+        assertThat(pool.leased(), is(64L));
+        in.put((byte) 6).put((byte) 0).put("hello".getBytes(ZMQ.CHARSET));
+        int size = in.position();
+        in.flip();
+        assertThat(decoder.processBuffer(in, size), is(size));
+
+        decoder.releaseBuffer();
+        assertThat(pool.leased(), is(0L));
+        assertThat(pool.free(), is(64L));
+        assertThat(decoder.getBuffer(), sameInstance(in));
+    }
+
+    @Test
+    public void testDecoderDrawsFromPool()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        BufferPool pool = new BufferPool(256, 16);
+        Decoder decoder = new Decoder(64, 256);
+        decoder.setMsgSink(session);
+        decoder.setBufferPool(pool);
+
+        ByteBuffer in = decoder.getBuffer();
+        in.put((byte) 6).put((byte) 0).put("hello".getBytes(ZMQ.CHARSET));
+        in.put((byte) 3).put((byte) 1).put("hi".getBytes(ZMQ.CHARSET));
+        int size = in.position();
+        in.flip();
+
+        assertThat(decoder.processBuffer(in, size), is(size));
+        assertThat(session.out.size(), is(2));
+
+        Msg first = session.out.get(0);
+        assertThat(first.isPooled(), is(true));
+        assertThat(first.size(), is(5));
+        assertThat(new String(first.data(), ZMQ.CHARSET), is("hello"));
+        assertThat(session.out.get(1).hasMore(), is(true));
+
+        first.release();
+        session.out.get(1).release();
+        assertThat(pool.available(5), is(2));
+    }
+
+    @Test
+    public void testPooledReceiveOverTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MSG_POOL_SIZE, 1024);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_MSG_POOL_SIZE), is(1024));
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:7801");
+        assertThat(rc, is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:7801");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "message " + i, 0);
+        }
+        for (int i = 0; i < 10; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.isPooled(), is(true));
+            byte[] body = new byte[msg.size()];
+            msg.getBytes(0, body, 0, body.length);
+            assertThat(new String(body, ZMQ.CHARSET), is("message " + i));
+            msg.release();
+        }
+        assertThat(ctx.getMsgPool().available(16) > 0, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
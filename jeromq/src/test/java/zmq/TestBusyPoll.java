@@ -0,0 +1,102 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestBusyPoll
+{
+    private static void roundtrips(SocketBase req, SocketBase rep, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            assertThat(ZMQ.send(req, "ping " + i, 0), is(5 + String.valueOf(i).length()));
+            Msg msg = ZMQ.recv(rep, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("ping " + i));
+            assertThat(ZMQ.send(rep, msg, 0), is(msg.size()));
+            msg = ZMQ.recv(req, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("ping " + i));
+        }
+    }
+
+    @Test
+    public void testOptions()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL), is(ZMQ.ZMQ_IO_BUSY_POLL_DFLT));
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_BUSY_YIELD), is(ZMQ.ZMQ_IO_BUSY_YIELD_DFLT));
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL, 50);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_YIELD, 200);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL), is(50));
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_BUSY_YIELD), is(200));
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testMailboxSpin()
+    {
+        Mailbox mailbox = new Mailbox("test");
+        ZObject destination = new ZObject(null, 0) { };
+
+        //  The senders don't signal a spinning reader.
+        assertThat(mailbox.spin(), is(false));
+        mailbox.send(new Command(destination, Command.Type.STOP));
+        assertThat(mailbox.spin(), is(true));
+        assertThat(mailbox.recv(0), notNullValue());
+        assertThat(mailbox.recv(0), nullValue());
+        assertThat(mailbox.spin(), is(false));
+
+        //  Once drained after spinning, they do again.
+        assertThat(mailbox.stopSpinning(), is(true));
+        assertThat(mailbox.recv(0), nullValue());
+        assertThat(mailbox.stopSpinning(), is(false));
+        mailbox.send(new Command(destination, Command.Type.STOP));
+        assertThat(mailbox.recv(100), notNullValue());
+    }
+
+    @Test
+    public void testRoundtrips() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL, 200);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_YIELD, 1000);
+
+        SocketBase rep = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        assertThat(ZMQ.bind(rep, "tcp://127.0.0.1:7808"), is(true));
+        SocketBase req = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+        assertThat(ZMQ.connect(req, "tcp://127.0.0.1:7808"), is(true));
+
+        roundtrips(req, rep, 1000);
+
+        //  Past the idle period, the I/O thread blocks and gets woken up.
+        Thread.sleep(50);
+        roundtrips(req, rep, 10);
+        Thread.sleep(50);
+        roundtrips(req, rep, 10);
+
+        ZMQ.close(req);
+        ZMQ.close(rep);
+        ZMQ.term(ctx);
+    }
+}
@@ -107,6 +107,33 @@ public class TestDecoder
         assertThat(in.array()[199], is((byte) '9'));
     }
 
+    @Test
+    public void testReaderLongDirect()
+    {
+        decoder.setDirectAllocation(100, null);
+
+        ByteBuffer in = decoder.getBuffer();
+        int insize = readLongMessage1(in);
+        in.flip();
+        int process = decoder.processBuffer(in, insize);
+        assertThat(process, is(64));
+
+        in = decoder.getBuffer();
+        assertThat(in.isDirect(), is(true));
+        assertThat(in.position(), is(62));
+
+        insize = readLongMessage2(in);
+        assertThat(insize, is(200));
+        process = decoder.processBuffer(in, 138);
+        assertThat(process, is(138));
+
+        Msg msg = session.out.get(0);
+        assertThat(msg.hasArray(), is(false));
+        assertThat(msg.size(), is(200));
+        assertThat(msg.get(61), is((byte) '1'));
+        assertThat(msg.get(199), is((byte) '9'));
+    }
+
     @Test
     public void testReaderMultipleMsg()
     {
@@ -123,6 +150,42 @@ public class TestDecoder
         assertThat(session.out.size(), is(2));
     }
 
+    @Test
+    public void testReaderMultipleMsgSinkFull()
+    {
+        final int[] room = {1};
+        DummySession full = new DummySession()
+        {
+            @Override
+            public int pushMsg(Msg msg)
+            {
+                if (room[0] == 0) {
+                    return ZError.EAGAIN;
+                }
+                room[0]--;
+                return super.pushMsg(msg);
+            }
+        };
+        decoder.setMsgSink(full);
+
+        ByteBuffer in = decoder.getBuffer();
+        readShortMessage(in);
+        readShortMessage(in);
+        readShortMessage(in);
+        in.flip();
+
+        //  The second frame is decoded but held back by the decoder.
+        int processed = decoder.processBuffer(in, 21);
+        assertThat(processed, is(14));
+        assertThat(full.out.size(), is(1));
+
+        room[0] = 2;
+        processed = decoder.processBuffer(in, 7);
+        assertThat(processed, is(7));
+        assertThat(full.out.size(), is(3));
+        assertThat(new String(full.out.get(1).data(), ZMQ.CHARSET), is("hello"));
+    }
+
     static class CustomDecoder extends DecoderBase
     {
         private static final int READ_HEADER = 0;
@@ -21,6 +21,7 @@ package zmq;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -60,6 +61,16 @@ public class TestEncoder
         return msg;
     }
 
+    private Msg readLongDirectMessage()
+    {
+        ByteBuffer payload = ByteBuffer.allocateDirect(200);
+        for (int i = 0; i < 20; i++) {
+            payload.put("0123456789".getBytes(ZMQ.CHARSET));
+        }
+        payload.flip();
+        return new Msg(payload);
+    }
+
     @Test
     public void testReader()
     {
@@ -123,6 +134,106 @@ public class TestEncoder
 
     }
 
+    @Test
+    public void testReaderDirect()
+    {
+        ByteBuffer payload = ByteBuffer.allocateDirect(5);
+        payload.put("hello".getBytes(ZMQ.CHARSET));
+        payload.flip();
+        session.pushMsg(new Msg(payload));
+
+        //  Small direct payloads are appended to the batch.
+        Transfer out = encoder.getData(null);
+        assertThat(out.remaining(), is(7));
+        assertThat(write(out), is(7));
+        assertThat(new String(sock.data(), 2, 5, ZMQ.CHARSET), is("hello"));
+    }
+
+    @Test
+    public void testReaderLongDirect()
+    {
+        ByteBuffer payload = ByteBuffer.allocateDirect(200);
+        for (int i = 0; i < 20; i++) {
+            payload.put("0123456789".getBytes(ZMQ.CHARSET));
+        }
+        payload.flip();
+        session.pushMsg(new Msg(payload));
+        sock = new DummySocketChannel(256);
+
+        //  Large direct payloads go out after the batch without being copied.
+        Transfer out = encoder.getData(null);
+        assertThat(out instanceof Transfer.GatheringTransfer, is(true));
+        assertThat(out.remaining(), is(202));
+        assertThat(write(out), is(202));
+        assertThat(out.remaining(), is(0));
+        assertThat(new String(sock.data(), 190, 10, ZMQ.CHARSET), is("0123456789"));
+    }
+
+    @Test
+    public void testGathering() throws IOException
+    {
+        encoder.setGatherThreshold(100);
+        session.pushMsg(readLongDirectMessage());
+        session.pushMsg(readShortMessage());
+        session.pushMsg(readLongDirectMessage());
+
+        //  Long direct payloads are not copied, headers and short ones are.
+        Transfer out = encoder.getData(null);
+        assertThat(out instanceof Transfer.GatheringTransfer, is(true));
+        assertThat(out.remaining(), is(2 + 200 + 7 + 2 + 200));
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        int written = out.transferTo(pipe.sink());
+        assertThat(written, is(411));
+        assertThat(out.remaining(), is(0));
+
+        ByteBuffer in = ByteBuffer.allocate(512);
+        while (in.position() < written) {
+            pipe.source().read(in);
+        }
+        in.flip();
+        assertThat(in.get(0), is((byte) 201));
+        assertThat(in.get(201), is((byte) '9'));
+        assertThat(in.get(202), is((byte) 6));
+        assertThat(new String(in.array(), 204, 5, ZMQ.CHARSET), is("hello"));
+        assertThat(in.get(209), is((byte) 201));
+        assertThat(in.get(410), is((byte) '9'));
+
+        pipe.sink().close();
+        pipe.source().close();
+    }
+
+    @Test
+    public void testGatheringPartialWrite()
+    {
+        encoder.setGatherThreshold(100);
+        session.pushMsg(readLongDirectMessage());
+        session.pushMsg(readLongDirectMessage());
+
+        //  The dummy channel takes at most 64 bytes at a time.
+        Transfer out = encoder.getData(null);
+        assertThat(out.remaining(), is(404));
+        int total = 0;
+        while (out.remaining() > 0) {
+            total += write(out);
+        }
+        assertThat(total, is(404));
+        assertThat(new String(sock.data(), 0, 8, ZMQ.CHARSET), is("23456789"));
+    }
+
+    @Test
+    public void testGatheringCopiesHeapPayloads()
+    {
+        encoder.setGatherThreshold(100);
+        session.pushMsg(readLongMessage1());
+
+        //  The channel would copy heap payloads anyway, the encoder does.
+        Transfer out = encoder.getData(null);
+        assertThat(out instanceof Transfer.GatheringTransfer, is(false));
+        assertThat(out.remaining(), is(64));
+    }
+
     static class CustomEncoder extends EncoderBase
     {
         public static final boolean RAW_ENCODER = true;
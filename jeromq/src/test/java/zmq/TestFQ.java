@@ -0,0 +1,278 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestFQ
+{
+    private final ZObject parent = new ZObject(new Ctx(), 0)
+    {
+    };
+
+    //  Returns the reading end of a pipe, the writing end is stored in
+    //  writers at the given index.
+    private Pipe pipe(Pipe[] writers, int index)
+    {
+        return pipe(parent, writers, index);
+    }
+
+    private static Pipe pipe(ZObject parent, Pipe[] writers, int index)
+    {
+        Pipe[] pair = new Pipe[2];
+        Pipe.pipepair(new ZObject[] {parent, parent}, pair, new int[] {0, 0},
+                new boolean[] {false, false});
+        writers[index] = pair[1];
+        return pair[0];
+    }
+
+    private static void write(Pipe pipe, char tag, int size, int count)
+    {
+        for (int i = 0; i != count; i++) {
+            Msg msg = new Msg(size);
+            msg.put((byte) tag);
+            boolean rc = pipe.write(msg);
+            assertThat(rc, is(true));
+        }
+        pipe.flush();
+    }
+
+    //  Tags of the messages read until the queue is empty.
+    private static String drain(FQ fq)
+    {
+        ValueReference<Integer> errno = new ValueReference<Integer>(0);
+        StringBuilder tags = new StringBuilder();
+        Msg msg;
+        while ((msg = fq.recv(errno)) != null) {
+            tags.append((char) msg.get(0));
+        }
+        return tags.toString();
+    }
+
+    @Test
+    public void testRoundRobin()
+    {
+        Pipe[] writers = new Pipe[2];
+        FQ fq = new FQ();
+        fq.attach(pipe(writers, 0));
+        fq.attach(pipe(writers, 1));
+        write(writers[0], 'a', 100, 3);
+        write(writers[1], 'b', 10, 3);
+        assertThat(drain(fq), is("ababab"));
+    }
+
+    @Test
+    public void testDeficitRoundRobin()
+    {
+        Pipe[] writers = new Pipe[2];
+        FQ fq = new FQ();
+        fq.setQuantum(100);
+        fq.attach(pipe(writers, 0));
+        fq.attach(pipe(writers, 1));
+
+        //  Both pipes get 100 bytes a turn, whatever the message sizes.
+        write(writers[0], 'a', 100, 4);
+        write(writers[1], 'b', 10, 20);
+        assertThat(drain(fq), is("abbbbbbbbbbabbbbbbbbbbaa"));
+    }
+
+    @Test
+    public void testDebt()
+    {
+        Pipe[] writers = new Pipe[2];
+        FQ fq = new FQ();
+        fq.setQuantum(10);
+        fq.attach(pipe(writers, 0));
+        fq.attach(pipe(writers, 1));
+
+        //  A message larger than the quantum is delivered, the pipe then
+        //  sits out turns until it paid it off.
+        write(writers[0], 'a', 50, 2);
+        write(writers[1], 'b', 10, 6);
+        assertThat(drain(fq), is("abbbbbab"));
+    }
+
+    @Test
+    public void testDebtOutlivesIdle()
+    {
+        //  Pipes going idle are activated again by a command to the
+        //  thread of their parent, here the socket's.
+        Ctx ctx = ZMQ.init(1);
+        SocketBase socket = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZObject owner = new ZObject(ctx, socket.getTid())
+        {
+        };
+
+        Pipe[] writers = new Pipe[2];
+        final FQ fq = new FQ();
+        fq.setQuantum(10);
+        Pipe[] readers = {pipe(owner, writers, 0), pipe(owner, writers, 1)};
+        for (Pipe reader : readers) {
+            reader.setEventSink(new Pipe.IPipeEvents()
+            {
+                @Override
+                public void readActivated(Pipe pipe)
+                {
+                    fq.activated(pipe);
+                }
+
+                @Override
+                public void writeActivated(Pipe pipe)
+                {
+                }
+
+                @Override
+                public void hiccuped(Pipe pipe)
+                {
+                }
+
+                @Override
+                public void pipeTerminated(Pipe pipe)
+                {
+                }
+            });
+            fq.attach(reader);
+        }
+
+        //  The pipe in debt runs dry and is deactivated, it still owes
+        //  its debt when it gets messages again.
+        write(writers[0], 'a', 50, 1);
+        write(writers[1], 'b', 10, 1);
+        ValueReference<Integer> errno = new ValueReference<Integer>(0);
+        assertThat(fq.recv(errno).get(0), is((byte) 'a'));
+        assertThat(fq.recv(errno).get(0), is((byte) 'b'));
+        assertThat(fq.hasIn(), is(false));
+
+        write(writers[0], 'a', 10, 1);
+        write(writers[1], 'b', 10, 4);
+        ZMQ.getSocketOption(socket, ZMQ.ZMQ_EVENTS);
+        assertThat(drain(fq), is("bbbba"));
+
+        ZMQ.close(socket);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testWeight()
+    {
+        Pipe[] writers = new Pipe[2];
+        FQ fq = new FQ();
+        fq.setQuantum(10);
+        Pipe heavy = pipe(writers, 0);
+        heavy.setInWeight(3);
+        fq.attach(heavy);
+        fq.attach(pipe(writers, 1));
+        write(writers[0], 'a', 10, 6);
+        write(writers[1], 'b', 10, 4);
+        assertThat(drain(fq), is("aaabaaabbb"));
+    }
+
+    @Test
+    public void testPriority()
+    {
+        Pipe[] writers = new Pipe[3];
+        FQ fq = new FQ();
+        fq.attach(pipe(writers, 0));
+        Pipe control = pipe(writers, 1);
+        control.setPriority(1);
+        fq.attach(control);
+        fq.attach(pipe(writers, 2));
+
+        //  The bulk pipes share what the control one leaves.
+        write(writers[0], 'a', 10, 2);
+        write(writers[1], 'c', 10, 3);
+        write(writers[2], 'b', 10, 2);
+        assertThat(drain(fq), is("cccabab"));
+    }
+
+    @Test
+    public void testMultipart()
+    {
+        Pipe[] writers = new Pipe[2];
+        FQ fq = new FQ();
+        fq.setQuantum(5);
+        fq.attach(pipe(writers, 0));
+        fq.attach(pipe(writers, 1));
+
+        //  A message isn't split by the end of a turn.
+        Msg part = new Msg(10);
+        part.put((byte) 'a');
+        part.setFlags(Msg.MORE);
+        writers[0].write(part);
+        write(writers[0], 'a', 10, 1);
+        write(writers[1], 'b', 10, 1);
+        assertThat(drain(fq), is("aab"));
+    }
+
+    @Test
+    public void testPriorityPull()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_FQ_QUANTUM, 1024);
+        boolean rc = ZMQ.bind(pull, "inproc://fq-priority");
+        assertThat(rc, is(true));
+
+        //  The priority is taken when the peer connects.
+        SocketBase bulk = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(bulk, "inproc://fq-priority");
+        assertThat(rc, is(true));
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_FQ_PRIORITY, 1);
+        SocketBase control = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(control, "inproc://fq-priority");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i != 5; i++) {
+            ZMQ.send(bulk, "bulk", 0);
+        }
+        for (int i = 0; i != 5; i++) {
+            ZMQ.send(control, "control", 0);
+        }
+        for (int i = 0; i != 10; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(i < 5 ? "control" : "bulk"));
+        }
+
+        ZMQ.close(bulk);
+        ZMQ.close(control);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantum()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        try {
+            ZMQ.setSocketOption(router, ZMQ.ZMQ_FQ_QUANTUM, -1);
+        }
+        finally {
+            ZMQ.close(router);
+            ZMQ.term(ctx);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestFanout
+{
+    @Test
+    public void testFanoutTcp()
+    {
+        Ctx ctx = ZMQ.init(3);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_FANOUT_THRESHOLD, 2);
+        assertThat((Integer) ZMQ.getSocketOptionExt(pub, ZMQ.ZMQ_FANOUT_THRESHOLD), is(2));
+        boolean rc = ZMQ.bind(pub, "tcp://127.0.0.1:7804");
+        assertThat(rc, is(true));
+
+        SocketBase[] subs = new SocketBase[6];
+        for (int i = 0; i != subs.length; i++) {
+            subs[i] = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+            ZMQ.setSocketOption(subs[i], ZMQ.ZMQ_SUBSCRIBE, i == 0 ? "odd" : "");
+            rc = ZMQ.connect(subs[i], "tcp://127.0.0.1:7804");
+            assertThat(rc, is(true));
+        }
+
+        ZMQ.sleep(1);
+
+        for (int i = 0; i != 100; i++) {
+            ZMQ.send(pub, (i % 2 == 0 ? "even" : "odd"), ZMQ.ZMQ_SNDMORE);
+            ZMQ.send(pub, "message " + i, 0);
+        }
+
+        for (int i = 0; i != subs.length; i++) {
+            for (int j = i == 0 ? 1 : 0; j < 100; j += i == 0 ? 2 : 1) {
+                Msg topic = ZMQ.recv(subs[i], 0);
+                assertThat(new String(topic.data(), ZMQ.CHARSET), is(j % 2 == 0 ? "even" : "odd"));
+                assertThat(topic.hasMore(), is(true));
+                Msg body = ZMQ.recv(subs[i], 0);
+                assertThat(new String(body.data(), ZMQ.CHARSET), is("message " + j));
+                assertThat(body.hasMore(), is(false));
+            }
+        }
+
+        for (SocketBase sub : subs) {
+            ZMQ.close(sub);
+        }
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testFanoutHwm()
+    {
+        Ctx ctx = ZMQ.init(2);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_FANOUT_THRESHOLD, 1);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_SNDHWM, 10);
+        boolean rc = ZMQ.bind(pub, "inproc://fanout");
+        assertThat(rc, is(true));
+
+        SocketBase[] subs = new SocketBase[4];
+        for (int i = 0; i != subs.length; i++) {
+            subs[i] = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+            ZMQ.setSocketOption(subs[i], ZMQ.ZMQ_RCVHWM, 10);
+            ZMQ.setSocketOption(subs[i], ZMQ.ZMQ_SUBSCRIBE, "");
+            rc = ZMQ.connect(subs[i], "inproc://fanout");
+            assertThat(rc, is(true));
+        }
+
+        ZMQ.sleep(1);
+
+        //  Subscriber 0 never reads, the others read as they go. Messages
+        //  to subscriber 0 are dropped once its pipe is full.
+        for (int i = 0; i != 100; i++) {
+            ZMQ.send(pub, "message " + i, 0);
+            for (int j = 1; j != subs.length; j++) {
+                Msg msg = ZMQ.recv(subs[j], 0);
+                assertThat(new String(msg.data(), ZMQ.CHARSET), is("message " + i));
+            }
+        }
+
+        int received = 0;
+        while (ZMQ.recv(subs[0], ZMQ.ZMQ_DONTWAIT) != null) {
+            received++;
+        }
+        assertThat(received > 0 && received < 100, is(true));
+        assertThat(ZMQ.recv(subs[1], ZMQ.ZMQ_DONTWAIT), nullValue());
+
+        for (SocketBase sub : subs) {
+            ZMQ.close(sub);
+        }
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testFanoutMultipartHwm()
+    {
+        Ctx ctx = ZMQ.init(2);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_FANOUT_THRESHOLD, 1);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_SNDHWM, 5);
+        boolean rc = ZMQ.bind(pub, "inproc://fanout-multipart");
+        assertThat(rc, is(true));
+
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_RCVHWM, 5);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "");
+        rc = ZMQ.connect(sub, "inproc://fanout-multipart");
+        assertThat(rc, is(true));
+
+        ZMQ.sleep(1);
+
+        //  The publisher doesn't wait for the writes, so the pipe fills up
+        //  while it goes on. Messages are dropped whole, never in part.
+        for (int i = 0; i != 100; i++) {
+            ZMQ.send(pub, "topic " + i, ZMQ.ZMQ_SNDMORE);
+            ZMQ.send(pub, "body " + i, 0);
+        }
+        ZMQ.sleep(1);
+
+        int received = 0;
+        Msg topic;
+        while ((topic = ZMQ.recv(sub, ZMQ.ZMQ_DONTWAIT)) != null) {
+            String name = new String(topic.data(), ZMQ.CHARSET);
+            assertThat(name.startsWith("topic "), is(true));
+            assertThat(topic.hasMore(), is(true));
+            Msg body = ZMQ.recv(sub, 0);
+            assertThat(new String(body.data(), ZMQ.CHARSET), is("body " + name.substring(6)));
+            assertThat(body.hasMore(), is(false));
+            received++;
+        }
+        assertThat(received > 0 && received < 100, is(true));
+
+        ZMQ.close(sub);
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TestFileSend
+{
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        //  Larger than the batch buffers can ever be.
+        content = new byte[300 * 1024];
+        new Random(42).nextBytes(content);
+        file = File.createTempFile("jeromq", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    private void transfer(String endpoint)
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(ZMQ.bind(pull, endpoint), is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(ZMQ.connect(push, endpoint), is(true));
+
+        //  Regions of all sizes, between regular frames.
+        int[] offsets = {0, 1000, 0, 7};
+        int[] sizes = {content.length, 100, 0, 200 * 1024};
+        for (int i = 0; i < offsets.length; i++) {
+            assertThat(ZMQ.send(push, "head", ZMQ.ZMQ_SNDMORE), is(4));
+            Msg msg = new Msg(file, offsets[i], sizes[i]);
+            assertThat(ZMQ.send(push, msg, ZMQ.ZMQ_SNDMORE), is(sizes[i]));
+            assertThat(ZMQ.send(push, "tail", 0), is(4));
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            assertThat(new String(ZMQ.recv(pull, 0).data(), ZMQ.CHARSET), is("head"));
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.size(), is(sizes[i]));
+            assertThat(Arrays.equals(msg.data(),
+                    Arrays.copyOfRange(content, offsets[i], offsets[i] + sizes[i])), is(true));
+            assertThat(new String(ZMQ.recv(pull, 0).data(), ZMQ.CHARSET), is("tail"));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testTcp()
+    {
+        transfer("tcp://127.0.0.1:7817");
+    }
+
+    @Test
+    public void testInproc()
+    {
+        transfer("inproc://file");
+    }
+
+    @Test
+    public void testEncoderSendsFromFile()
+    {
+        Helper.DummySession session = new Helper.DummySession();
+        Encoder encoder = new Encoder(64);
+        encoder.setMsgSource(session);
+        session.pushMsg(new Msg(file, 5, 1000));
+
+        //  The header goes with the region, which never gets copied.
+        Transfer t = encoder.getData(null);
+        assertThat(t instanceof Transfer.FileChannelTransfer, is(true));
+        assertThat(t.remaining(), is(10 + 1000));
+        assertThat(encoder.getData(null).remaining(), is(0));
+    }
+
+    @Test
+    public void testCopy()
+    {
+        Msg msg = new Msg(file, 10, 20);
+        Msg copy = new Msg(msg);
+        assertThat(msg.isFile(), is(true));
+        assertThat(copy.isFile(), is(true));
+        assertThat(copy.data(), is(Arrays.copyOfRange(content, 10, 30)));
+        assertThat(copy.isFile(), is(false));
+        assertThat(msg.get(0), is(content[10]));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRegionPastEnd()
+    {
+        new Msg(file, content.length - 10, 20);
+    }
+}
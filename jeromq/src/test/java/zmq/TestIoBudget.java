@@ -0,0 +1,89 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TestIoBudget
+{
+    private static void transfer(int budget, int port)
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_IO_BUDGET, budget);
+        assertThat(ZMQ.bind(pull, "tcp://127.0.0.1:" + port), is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_IO_BUDGET, budget);
+        assertThat(ZMQ.connect(push, "tcp://127.0.0.1:" + port), is(true));
+
+        //  Small and large messages, so that some of them straddle reads.
+        byte[] body = new byte[100000];
+        for (int i = 0; i < 2000; i++) {
+            int size = i % 10 == 0 ? 100000 : 1 + i % 300;
+            body[0] = (byte) i;
+            assertThat(ZMQ.send(push, body, size, 0), is(size));
+        }
+        for (int i = 0; i < 2000; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.size(), is(i % 10 == 0 ? 100000 : 1 + i % 300));
+            assertThat(msg.data()[0], is((byte) i));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testOption()
+    {
+        Options options = new Options();
+        assertThat((Integer) options.getsockopt(ZMQ.ZMQ_IO_BUDGET), is(Config.IO_BUDGET.getValue()));
+        options.setSocketOpt(ZMQ.ZMQ_IO_BUDGET, 0);
+        assertThat((Integer) options.getsockopt(ZMQ.ZMQ_IO_BUDGET), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBudget()
+    {
+        new Options().setSocketOpt(ZMQ.ZMQ_IO_BUDGET, -1);
+    }
+
+    @Test
+    public void testSingleReadPerEvent()
+    {
+        transfer(0, 7810);
+    }
+
+    @Test
+    public void testSmallBudget()
+    {
+        transfer(1000, 7811);
+    }
+
+    @Test
+    public void testDefaultBudget()
+    {
+        transfer(Config.IO_BUDGET.getValue(), 7812);
+    }
+}
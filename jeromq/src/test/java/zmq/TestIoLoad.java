@@ -0,0 +1,129 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestIoLoad
+{
+    //  Exchanges batches of messages until the deadline or until the
+    //  given I/O thread shows some activity.
+    private static void pump(SocketBase push, SocketBase pull, IOThread watched, long duration)
+    {
+        byte[] body = new byte[1024];
+        long deadline = System.currentTimeMillis() + duration;
+        int seq = 0;
+        while (System.currentTimeMillis() < deadline) {
+            for (int i = 0; i < 100; i++) {
+                body[0] = (byte) (seq + i);
+                assertThat(ZMQ.send(push, body, 1024, 0), is(1024));
+            }
+            for (int i = 0; i < 100; i++) {
+                Msg msg = ZMQ.recv(pull, 0);
+                assertThat(msg.size(), is(1024));
+                assertThat(msg.data()[0], is((byte) (seq + i)));
+            }
+            seq += 100;
+            if (watched != null && watched.getActivity() > 100) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void testOption()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_REBALANCE), is(ZMQ.ZMQ_IO_REBALANCE_DFLT));
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_REBALANCE, 20);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_REBALANCE), is(20));
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testPlacementByActivity()
+    {
+        Ctx ctx = ZMQ.init(2);
+
+        //  Busy connection in the first I/O thread.
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_AFFINITY, 1L);
+        assertThat(ZMQ.bind(pull, "tcp://127.0.0.1:7805"), is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_AFFINITY, 1L);
+        assertThat(ZMQ.connect(push, "tcp://127.0.0.1:7805"), is(true));
+
+        //  Idle listeners in the second one, which gets the larger load.
+        SocketBase idle = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(idle, ZMQ.ZMQ_AFFINITY, 2L);
+        for (int i = 0; i < 5; i++) {
+            assertThat(ZMQ.bind(idle, "tcp://127.0.0.1:*"), is(true));
+        }
+
+        IOThread busy = ctx.getIoThreads().get(0);
+        IOThread quiet = ctx.getIoThreads().get(1);
+        pump(push, pull, null, 500);
+        assertThat(quiet.getLoad() > busy.getLoad(), is(true));
+        assertThat(busy.getActivity() > quiet.getActivity(), is(true));
+        assertThat(ctx.chooseIoThread(0), sameInstance(quiet));
+        assertThat(ctx.chooseIoThread(1), sameInstance(busy));
+        assertThat(ctx.chooseIoThread(0, quiet), sameInstance(busy));
+
+        ZMQ.close(idle);
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testRebalance()
+    {
+        Ctx ctx = ZMQ.init(2);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_REBALANCE, 10);
+
+        //  Both ends of the connection start in the first I/O thread.
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_AFFINITY, 1L);
+        assertThat(ZMQ.bind(pull, "tcp://127.0.0.1:7806"), is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_AFFINITY, 1L);
+        assertThat(ZMQ.connect(push, "tcp://127.0.0.1:7806"), is(true));
+        pump(push, pull, null, 100);
+
+        //  Lift the affinity so that one of the sessions can be moved.
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_AFFINITY, 0L);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_AFFINITY, 0L);
+
+        IOThread second = ctx.getIoThreads().get(1);
+        pump(push, pull, second, 10000);
+        assertThat(second.getActivity() > 100, is(true));
+
+        //  Messages keep flowing in order once moved.
+        pump(push, pull, null, 200);
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
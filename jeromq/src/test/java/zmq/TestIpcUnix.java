@@ -0,0 +1,111 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestIpcUnix
+{
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(IpcAddress.isUnixSupported());
+    }
+
+    @Test
+    public void testSocketFileLifecycle()
+    {
+        File file = new File("/tmp/tester" + UUID.randomUUID().toString());
+
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        boolean rc = ZMQ.bind(sb, "ipc://" + file.getPath());
+        assertThat(rc, is(true));
+        assertThat(file.exists(), is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        rc = ZMQ.connect(sc, "ipc://" + file.getPath());
+        assertThat(rc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void testStaleFileReplaced() throws IOException
+    {
+        File file = new File("/tmp/tester" + UUID.randomUUID().toString());
+        assertThat(file.createNewFile(), is(true));
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        boolean rc = ZMQ.bind(sb, "ipc://" + file.getPath());
+        assertThat(rc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        rc = ZMQ.connect(sc, "ipc://" + file.getPath());
+        assertThat(rc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testWildcard()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        boolean rc = ZMQ.bind(sb, "ipc://*");
+        assertThat(rc, is(true));
+
+        String endpoint = (String) ZMQ.getSocketOptionExt(sb, ZMQ.ZMQ_LAST_ENDPOINT);
+        assertThat(endpoint.startsWith("ipc://"), is(true));
+        assertThat(new File(endpoint.substring(6)).exists(), is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+        rc = ZMQ.connect(sc, endpoint);
+        assertThat(rc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+}
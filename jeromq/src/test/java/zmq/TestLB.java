@@ -0,0 +1,231 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestLB
+{
+    private final ZObject parent = new ZObject(new Ctx(), 0)
+    {
+    };
+
+    //  Returns the writing ends of count pipes, the reading ends are
+    //  stored in peers.
+    private Pipe[] pipes(int count, Pipe[] peers)
+    {
+        Pipe[] pipes = new Pipe[count];
+        for (int i = 0; i != count; i++) {
+            Pipe[] pair = new Pipe[2];
+            Pipe.pipepair(new ZObject[] {parent, parent}, pair, new int[] {0, 0},
+                    new boolean[] {false, false});
+            pipes[i] = pair[0];
+            peers[i] = pair[1];
+        }
+        return pipes;
+    }
+
+    private static int drain(Pipe pipe)
+    {
+        int count = 0;
+        while (pipe.read() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void send(LB lb, int count)
+    {
+        ValueReference<Integer> errno = new ValueReference<Integer>(0);
+        for (int i = 0; i != count; i++) {
+            boolean rc = lb.send(new Msg(1), errno);
+            assertThat(rc, is(true));
+        }
+    }
+
+    @Test
+    public void testRoundRobin()
+    {
+        Pipe[] peers = new Pipe[3];
+        Pipe[] pipes = pipes(3, peers);
+        LB lb = new LB();
+        for (Pipe pipe : pipes) {
+            lb.attach(pipe);
+        }
+        send(lb, 9);
+        for (Pipe peer : peers) {
+            assertThat(drain(peer), is(3));
+        }
+    }
+
+    @Test
+    public void testLeastOutstanding()
+    {
+        Pipe[] peers = new Pipe[3];
+        Pipe[] pipes = pipes(3, peers);
+        LB lb = new LB();
+        lb.setStrategy(ZMQ.ZMQ_LB_LEAST_OUTSTANDING);
+        for (Pipe pipe : pipes) {
+            lb.attach(pipe);
+        }
+
+        //  Nothing is read, equal loads are served in turn.
+        send(lb, 30);
+        for (Pipe pipe : pipes) {
+            assertThat(pipe.outstanding(), is(10));
+        }
+
+        //  The first peer reports it has read everything, it gets the
+        //  messages until it's as loaded as the others.
+        pipes[0].processActivateWrite(10);
+        send(lb, 12);
+        assertThat(pipes[0].outstanding(), is(10));
+        assertThat(pipes[1].outstanding() + pipes[2].outstanding(), is(22));
+        assertThat(drain(peers[0]), is(20));
+    }
+
+    @Test
+    public void testLeastOutstandingSwitch()
+    {
+        Pipe[] peers = new Pipe[2];
+        Pipe[] pipes = pipes(2, peers);
+        LB lb = new LB();
+        for (Pipe pipe : pipes) {
+            lb.attach(pipe);
+        }
+        send(lb, 1);
+
+        //  Pipes already attached are taken over by the new strategy.
+        lb.setStrategy(ZMQ.ZMQ_LB_LEAST_OUTSTANDING);
+        send(lb, 3);
+        assertThat(pipes[0].outstanding(), is(2));
+        assertThat(pipes[1].outstanding(), is(2));
+
+        lb.terminated(pipes[0]);
+        send(lb, 2);
+        assertThat(drain(peers[0]), is(2));
+        assertThat(drain(peers[1]), is(4));
+    }
+
+    @Test
+    public void testPowerOfTwo()
+    {
+        Pipe[] peers = new Pipe[2];
+        Pipe[] pipes = pipes(2, peers);
+        LB lb = new LB();
+        lb.setStrategy(ZMQ.ZMQ_LB_POWER_OF_TWO);
+        for (Pipe pipe : pipes) {
+            lb.attach(pipe);
+        }
+
+        //  With two pipes both are always sampled, the less loaded one
+        //  wins.
+        send(lb, 20);
+        assertThat(pipes[0].outstanding(), is(10));
+        assertThat(pipes[1].outstanding(), is(10));
+
+        pipes[1].processActivateWrite(10);
+        send(lb, 10);
+        assertThat(pipes[0].outstanding(), is(10));
+        assertThat(pipes[1].outstanding(), is(10));
+        assertThat(drain(peers[1]), is(20));
+    }
+
+    @Test
+    public void testWeighted()
+    {
+        Pipe[] peers = new Pipe[2];
+        Pipe[] pipes = pipes(2, peers);
+        pipes[0].setWeight(3);
+        LB lb = new LB();
+        lb.setStrategy(ZMQ.ZMQ_LB_WEIGHTED);
+        for (Pipe pipe : pipes) {
+            lb.attach(pipe);
+        }
+        send(lb, 8);
+        assertThat(drain(peers[0]), is(6));
+        assertThat(drain(peers[1]), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStrategy()
+    {
+        new LB().setStrategy(4);
+    }
+
+    @Test
+    public void testWeightedPush()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase heavy = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(heavy, "inproc://lb-heavy");
+        assertThat(rc, is(true));
+        SocketBase light = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.bind(light, "inproc://lb-light");
+        assertThat(rc, is(true));
+
+        //  The weight is taken when connecting.
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_STRATEGY, ZMQ.ZMQ_LB_WEIGHTED);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_WEIGHT, 4);
+        rc = ZMQ.connect(push, "inproc://lb-heavy");
+        assertThat(rc, is(true));
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_WEIGHT, 1);
+        rc = ZMQ.connect(push, "inproc://lb-light");
+        assertThat(rc, is(true));
+        assertThat(ZMQ.getSocketOption(push, ZMQ.ZMQ_LB_WEIGHT), is(1));
+
+        for (int i = 0; i != 10; i++) {
+            ZMQ.send(push, "task " + i, 0);
+        }
+        for (int i = 0; i != 8; i++) {
+            assertThat(ZMQ.recv(heavy, 0), notNullValue());
+        }
+        for (int i = 0; i != 2; i++) {
+            assertThat(ZMQ.recv(light, 0), notNullValue());
+        }
+        assertThat(ZMQ.recv(heavy, ZMQ.ZMQ_DONTWAIT) == null, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(heavy);
+        ZMQ.close(light);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWeight()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        try {
+            ZMQ.setSocketOption(push, ZMQ.ZMQ_LB_WEIGHT, 0);
+        }
+        finally {
+            ZMQ.close(push);
+            ZMQ.term(ctx);
+        }
+    }
+}
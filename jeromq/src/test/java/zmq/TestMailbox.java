@@ -0,0 +1,91 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestMailbox
+{
+    @Test
+    public void testEmpty() throws IOException
+    {
+        Mailbox mailbox = new Mailbox("test");
+        assertThat(mailbox.recv(0), nullValue());
+        assertThat(mailbox.recv(10), nullValue());
+        mailbox.close();
+    }
+
+    @Test
+    public void testManySenders() throws Exception
+    {
+        receiveFromManySenders(new Mailbox("test"));
+    }
+
+    @Test
+    public void testManySendersWithFd() throws Exception
+    {
+        Mailbox mailbox = new Mailbox("test");
+        mailbox.getFd();
+        receiveFromManySenders(mailbox);
+    }
+
+    private void receiveFromManySenders(final Mailbox mailbox) throws Exception
+    {
+        final int senders = 8;
+        final int count = 20000;
+
+        Thread[] threads = new Thread[senders];
+        for (int i = 0; i < senders; i++) {
+            final Integer id = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < count; j++) {
+                        mailbox.send(new Command(null, Command.Type.DONE, new int[] {id, j}));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        //  Every command arrives, in order for each sender.
+        int[] next = new int[senders];
+        for (int i = 0; i < senders * count; i++) {
+            Command cmd = mailbox.recv(-1);
+            int[] arg = (int[]) cmd.arg;
+            assertThat(arg[1], is(next[arg[0]]));
+            next[arg[0]]++;
+        }
+        assertThat(mailbox.recv(0), nullValue());
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        mailbox.close();
+    }
+}
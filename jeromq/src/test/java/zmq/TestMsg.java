@@ -22,6 +22,10 @@ package zmq;
 import org.junit.Test;
 import java.nio.ByteBuffer;
 
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
 public class TestMsg
 {
     @Test(expected = IllegalArgumentException.class)
@@ -50,4 +54,91 @@ public class TestMsg
         buffer.flip();
         new Msg(buffer);
     }
+
+    @Test
+    public void testDelimiterIsNotAUserFlag()
+    {
+        Msg msg = new Msg();
+        msg.initDelimiter();
+        assertThat(msg.isDelimiter(), is(true));
+        assertThat(msg.flags(), is(0));
+
+        msg = new Msg(1);
+        msg.setFlags(Msg.MORE);
+        assertThat(msg.isDelimiter(), is(false));
+        assertThat(msg.flags(), is(Msg.MORE));
+    }
+
+    @Test
+    public void testRegionOfArray()
+    {
+        byte[] array = "__hello__".getBytes(ZMQ.CHARSET);
+        Msg msg = new Msg(array, 2, 5);
+        assertThat(msg.size(), is(5));
+        assertThat(msg.get(0), is((byte) 'h'));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("hello"));
+
+        ByteBuffer buf = msg.buf();
+        assertThat(buf.remaining(), is(5));
+        assertThat(buf.get(4), is((byte) 'o'));
+
+        byte[] dst = new byte[3];
+        assertThat(msg.getBytes(1, dst, 0, 3), is(3));
+        assertThat(new String(dst, ZMQ.CHARSET), is("ell"));
+    }
+
+    @Test
+    public void testWholeArrayIsShared()
+    {
+        byte[] array = new byte[4];
+        Msg msg = new Msg(array);
+        assertThat(msg.data(), sameInstance(array));
+    }
+
+    @Test
+    public void testRelativePutMatchesBufView()
+    {
+        Msg msg = new Msg(3);
+        msg.put((byte) 1).put(new byte[] {2, 3});
+        assertThat(msg.buf().position(), is(3));
+        assertThat(msg.get(2), is((byte) 3));
+    }
+
+    @Test
+    public void testDirectBuffer()
+    {
+        ByteBuffer direct = ByteBuffer.allocateDirect(4);
+        direct.put("abcd".getBytes(ZMQ.CHARSET));
+        direct.flip();
+        Msg msg = new Msg(direct);
+        assertThat(msg.size(), is(4));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("abcd"));
+
+        byte[] dst = new byte[2];
+        msg.getBytes(2, dst, 0, 2);
+        assertThat(new String(dst, ZMQ.CHARSET), is("cd"));
+
+        Msg copy = new Msg(msg);
+        assertThat(new String(copy.data(), ZMQ.CHARSET), is("abcd"));
+    }
+
+    @Test
+    public void testViewsAreIndependent()
+    {
+        ByteBuffer direct = ByteBuffer.allocateDirect(4);
+        direct.put("abcd".getBytes(ZMQ.CHARSET)).flip();
+        Msg[] msgs = {new Msg("abcd".getBytes(ZMQ.CHARSET)), new Msg(direct)};
+        for (Msg msg : msgs) {
+            ByteBuffer view = msg.buf();
+            assertThat(view.get(), is((byte) 'a'));
+            assertThat(msg.buf().position(), is(0));
+
+            //  Relative reads move the message's position, not its views.
+            assertThat(msg.get(), is((byte) 'a'));
+            assertThat(msg.get(), is((byte) 'b'));
+            assertThat(msg.buf().position(), is(2));
+            assertThat(view.position(), is(1));
+            assertThat(msg.get(3), is((byte) 'd'));
+        }
+    }
 }
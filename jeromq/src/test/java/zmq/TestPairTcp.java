@@ -51,4 +51,29 @@ public class TestPairTcp
         ZMQ.term(ctx);
 
     }
+
+    @Test
+    public void testPairTcpGathering()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_SND_GATHER_THRESHOLD, 16);
+        boolean brc = ZMQ.bind(sb, "tcp://127.0.0.1:7802");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sc, notNullValue());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SND_GATHER_THRESHOLD, 16);
+        brc = ZMQ.connect(sc, "tcp://127.0.0.1:7802");
+        assertThat(brc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        //  Tear down the wiring.
+        ZMQ.close(sb);
+        ZMQ.close(sc);
+        ZMQ.term(ctx);
+    }
 }
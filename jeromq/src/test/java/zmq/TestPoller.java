@@ -0,0 +1,129 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+
+public class TestPoller
+{
+    private static class Reader implements IPollEvents
+    {
+        private final Poller poller;
+        private final Pipe.SourceChannel source;
+        private final CountDownLatch latch;
+
+        private Reader(Poller poller, Pipe.SourceChannel source, CountDownLatch latch)
+        {
+            this.poller = poller;
+            this.source = source;
+            this.latch = latch;
+        }
+
+        @Override
+        public void inEvent()
+        {
+            try {
+                source.read(ByteBuffer.allocate(1));
+            }
+            catch (IOException e) {
+                throw new ZError.IOException(e);
+            }
+            poller.removeHandle(source);
+            latch.countDown();
+        }
+
+        @Override
+        public void outEvent()
+        {
+        }
+
+        @Override
+        public void connectEvent()
+        {
+        }
+
+        @Override
+        public void acceptEvent()
+        {
+        }
+
+        @Override
+        public void timerEvent(int id)
+        {
+        }
+    }
+
+    @Test
+    public void testMoreEventsThanOneLoopHandles() throws Exception
+    {
+        int count = Config.MAX_IO_EVENTS.getValue() + 50;
+        Poller poller = new Poller("test");
+        CountDownLatch latch = new CountDownLatch(count);
+
+        Pipe[] pipes = new Pipe[count];
+        for (int i = 0; i < count; i++) {
+            pipes[i] = Pipe.open();
+            pipes[i].source().configureBlocking(false);
+            poller.addHandle(pipes[i].source(), new Reader(poller, pipes[i].source(), latch));
+            poller.setPollIn(pipes[i].source());
+            pipes[i].sink().write(ByteBuffer.wrap(new byte[] {1}));
+        }
+        assertThat(poller.getLoad(), is(count));
+
+        poller.start();
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(poller.getLoad(), is(0));
+
+        poller.stop();
+        poller.destroy();
+        for (Pipe pipe : pipes) {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void testCancelledTimerIsRemoved() throws Exception
+    {
+        Poller poller = new Poller("test");
+        Reader sink = new Reader(poller, null, null);
+
+        PollerBase.Timer first = poller.addTimer(1000, sink, 1);
+        PollerBase.Timer second = poller.addTimer(1000, sink, 2);
+        poller.cancelTimer(first);
+        assertThat(poller.executeTimers() > 0, is(true));
+
+        poller.cancelTimer(second);
+        assertThat(poller.executeTimers(), is(0L));
+
+        poller.start();
+        poller.stop();
+        poller.destroy();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+
+public class TestPtrie
+{
+    private static final Mtrie.IMtrieHandler collect = new Mtrie.IMtrieHandler()
+    {
+        @SuppressWarnings("unchecked")
+        @Override
+        public void invoke(Pipe pipe, byte[] data, int size, Object arg)
+        {
+            ((Set<Pipe>) arg).add(pipe);
+        }
+    };
+
+    private static final Mtrie.IMtrieHandler record = new Mtrie.IMtrieHandler()
+    {
+        @SuppressWarnings("unchecked")
+        @Override
+        public void invoke(Pipe pipe, byte[] data, int size, Object arg)
+        {
+            byte[] topic = new byte[size];
+            System.arraycopy(data, 0, topic, 0, size);
+            ((Set<String>) arg).add(new String(topic, ZMQ.CHARSET));
+        }
+    };
+
+    private static Pipe[] createPipes(int count)
+    {
+        Ctx ctx = new Ctx();
+        ZObject parent = new ZObject(ctx, 0)
+        {
+        };
+        Pipe[] pipes = new Pipe[count];
+        for (int i = 0; i != count; i++) {
+            Pipe[] pair = new Pipe[2];
+            Pipe.pipepair(new ZObject[] {parent, parent}, pair, new int[] {0, 0},
+                    new boolean[] {false, false});
+            pipes[i] = pair[0];
+        }
+        return pipes;
+    }
+
+    private static Set<Pipe> match(IMtrie trie, String data)
+    {
+        Set<Pipe> matched = new HashSet<Pipe>();
+        byte[] bytes = data.getBytes(ZMQ.CHARSET);
+        trie.match(bytes, bytes.length, collect, matched);
+        return matched;
+    }
+
+    private static byte[] sub(String topic)
+    {
+        byte[] bytes = topic.getBytes(ZMQ.CHARSET);
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = 1;
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+
+    @Test
+    public void testAddMatchRm()
+    {
+        Pipe[] pipes = createPipes(3);
+        Ptrie trie = new Ptrie();
+
+        assertThat(trie.add(sub("md.EQ.XNAS.AAPL"), 1, pipes[0]), is(true));
+        assertThat(trie.add(sub("md.EQ.XNAS.AAPL"), 1, pipes[1]), is(false));
+        assertThat(trie.add(sub("md.EQ.XNYS.IBM"), 1, pipes[1]), is(true));
+        assertThat(trie.add(sub("md.EQ"), 1, pipes[2]), is(true));
+        assertThat(trie.add(sub("md.EQ.XNAS.AAPL"), 1, pipes[0]), is(false));
+
+        assertThat(match(trie, "md.EQ.XNAS.AAPL.L1").size(), is(3));
+        assertThat(match(trie, "md.EQ.XNYS.IBM"), is(set(pipes[1], pipes[2])));
+        assertThat(match(trie, "md.EQ.XNAS.AAP"), is(set(pipes[2])));
+        assertThat(match(trie, "md.E").isEmpty(), is(true));
+        assertThat(match(trie, "md.FX").isEmpty(), is(true));
+
+        assertThat(trie.rm(sub("md.EQ.XNAS.AAPL"), 1, pipes[0]), is(false));
+        assertThat(match(trie, "md.EQ.XNAS.AAPL"), is(set(pipes[1], pipes[2])));
+        assertThat(trie.rm(sub("md.EQ.XNAS.AAPL"), 1, pipes[1]), is(true));
+        assertThat(trie.rm(sub("md.EQ"), 1, pipes[2]), is(true));
+        assertThat(match(trie, "md.EQ.XNAS.AAPL").isEmpty(), is(true));
+        assertThat(match(trie, "md.EQ.XNYS.IBM.L2"), is(set(pipes[1])));
+
+        //  Unknown topics.
+        assertThat(trie.rm(sub("md.FX"), 1, pipes[1]), is(false));
+        assertThat(trie.rm(sub("md.EQ.XN"), 1, pipes[1]), is(true));
+    }
+
+    @Test
+    public void testSubscribeToAll()
+    {
+        Pipe[] pipes = createPipes(1);
+        Ptrie trie = new Ptrie();
+        assertThat(trie.add(null, pipes[0]), is(true));
+        assertThat(match(trie, "anything"), is(set(pipes[0])));
+        assertThat(trie.rm(null, 0, pipes[0]), is(true));
+        assertThat(match(trie, "anything").isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRmPipe()
+    {
+        Pipe[] pipes = createPipes(2);
+        Ptrie trie = new Ptrie();
+        trie.add(sub("a.b.c"), 1, pipes[0]);
+        trie.add(sub("a.b.d"), 1, pipes[0]);
+        trie.add(sub("a.b.d"), 1, pipes[1]);
+        trie.add(sub("a"), 1, pipes[0]);
+
+        Set<String> unsubscribed = new HashSet<String>();
+        trie.rm(pipes[0], record, unsubscribed, true);
+        assertThat(unsubscribed, is((Set<String>) new HashSet<String>(Arrays.asList("a", "a.b.c"))));
+
+        assertThat(match(trie, "a.b.c").isEmpty(), is(true));
+        assertThat(match(trie, "a.b.d"), is(set(pipes[1])));
+
+        unsubscribed.clear();
+        trie.rm(pipes[1], record, unsubscribed, true);
+        assertThat(unsubscribed, is((Set<String>) new HashSet<String>(Arrays.asList("a.b.d"))));
+        assertThat(match(trie, "a.b.d").isEmpty(), is(true));
+    }
+
+    @Test
+    public void testTopicMap()
+    {
+        Pipe[] pipes = createPipes(3);
+        TopicMap map = new TopicMap(4);
+        assertThat(map.add(sub("AAPL"), 1, pipes[0]), is(true));
+        assertThat(map.add(sub("AAPL"), 1, pipes[1]), is(false));
+        assertThat(map.add(sub("IBM."), 1, pipes[1]), is(true));
+        assertThat(map.add(null, pipes[2]), is(true));
+
+        assertThat(match(map, "AAPL.L1"), is(set(pipes[0], pipes[1], pipes[2])));
+        assertThat(match(map, "IBM.N"), is(set(pipes[1], pipes[2])));
+        assertThat(match(map, "AAP"), is(set(pipes[2])));
+
+        Set<String> unsubscribed = new HashSet<String>();
+        map.rm(pipes[1], record, unsubscribed, true);
+        assertThat(unsubscribed, is((Set<String>) new HashSet<String>(Arrays.asList("IBM."))));
+        assertThat(match(map, "IBM.N"), is(set(pipes[2])));
+        assertThat(match(map, "AAPL"), is(set(pipes[0], pipes[2])));
+
+        assertThat(map.rm(sub("AAPL"), 1, pipes[0]), is(true));
+        assertThat(map.rm(null, 0, pipes[2]), is(true));
+        assertThat(match(map, "AAPL").isEmpty(), is(true));
+    }
+
+    //  Random sequences of operations give the same results as Mtrie.
+    @Test
+    public void testSameAsMtrie()
+    {
+        Pipe[] pipes = createPipes(4);
+        Random random = new Random(42);
+        Mtrie mtrie = new Mtrie();
+        Ptrie ptrie = new Ptrie();
+        Set<String> subscribed = new HashSet<String>();
+        List<String> topics = new ArrayList<String>();
+        for (int i = 0; i != 200; i++) {
+            StringBuilder topic = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j != length; j++) {
+                topic.append((char) ('a' + random.nextInt(3)));
+            }
+            topics.add(topic.toString());
+        }
+
+        for (int i = 0; i != 20000; i++) {
+            String topic = topics.get(random.nextInt(topics.size()));
+            Pipe pipe = pipes[random.nextInt(pipes.length)];
+            switch (random.nextInt(4)) {
+            case 0:
+            case 1:
+                assertThat(ptrie.add(sub(topic), 1, pipe), is(mtrie.add(sub(topic), 1, pipe)));
+                subscribed.add(topic + "/" + pipe.hashCode());
+                break;
+            case 2:
+                //  Mtrie asserts on unknown subscriptions, only remove
+                //  existing ones.
+                if (subscribed.remove(topic + "/" + pipe.hashCode())) {
+                    assertThat(ptrie.rm(sub(topic), 1, pipe), is(mtrie.rm(sub(topic), 1, pipe)));
+                }
+                break;
+            default:
+                assertThat(match(ptrie, topic), is(match(mtrie, topic)));
+                break;
+            }
+            if (i % 5000 == 4999) {
+                Set<String> expected = new HashSet<String>();
+                Set<String> actual = new HashSet<String>();
+                mtrie.rm(pipe, record, expected, false);
+                ptrie.rm(pipe, record, actual, false);
+                assertThat(actual, is(expected));
+                for (String topic2 : topics) {
+                    subscribed.remove(topic2 + "/" + pipe.hashCode());
+                }
+            }
+        }
+        for (String topic : topics) {
+            assertThat(match(ptrie, topic + "z"), is(match(mtrie, topic + "z")));
+        }
+    }
+
+    @Test
+    public void testPubSubPatricia()
+    {
+        Ctx ctx = ZMQ.init(1);
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_XPUB_PATRICIA, 1);
+        boolean rc = ZMQ.bind(pub, "inproc://patricia");
+        assertThat(rc, is(true));
+
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "md.EQ.XNAS");
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "md.EQ.XNYS.IBM");
+        rc = ZMQ.connect(sub, "inproc://patricia");
+        assertThat(rc, is(true));
+
+        ZMQ.sleep(1);
+
+        ZMQ.send(pub, "md.EQ.XNAS.AAPL", 0);
+        ZMQ.send(pub, "md.EQ.XNYS.MSFT", 0);
+        ZMQ.send(pub, "md.EQ.XNYS.IBM.L1", 0);
+
+        Msg msg = ZMQ.recv(sub, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("md.EQ.XNAS.AAPL"));
+        msg = ZMQ.recv(sub, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("md.EQ.XNYS.IBM.L1"));
+
+        ZMQ.close(sub);
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPatriciaAfterConnect()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_XPUB);
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.bind(sub, "inproc://patricia-late");
+        ZMQ.connect(pub, "inproc://patricia-late");
+        try {
+            ZMQ.setSocketOption(pub, ZMQ.ZMQ_XPUB_PATRICIA, 1);
+        }
+        finally {
+            ZMQ.close(sub);
+            ZMQ.close(pub);
+            ZMQ.term(ctx);
+        }
+    }
+
+    private static Set<Pipe> set(Pipe... pipes)
+    {
+        return new HashSet<Pipe>(Arrays.asList(pipes));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestRouterIntId
+{
+    @Test
+    public void testIntMap()
+    {
+        IntMap<String> map = new IntMap<String>();
+        for (int i = 0; i != 1000; i++) {
+            assertThat(map.put(i * 16, "v" + i), nullValue());
+        }
+        assertThat(map.size(), is(1000));
+        assertThat(map.put(16, "w"), is("v1"));
+        assertThat(map.get(16), is("w"));
+        assertThat(map.get(17), nullValue());
+
+        //  Removing every other key has to keep the rest reachable.
+        for (int i = 0; i < 1000; i += 2) {
+            assertThat(map.remove(i * 16), is(i == 1 ? "w" : "v" + i));
+        }
+        assertThat(map.size(), is(500));
+        for (int i = 0; i != 1000; i++) {
+            assertThat(map.containsKey(i * 16), is(i % 2 == 1));
+        }
+        assertThat(map.remove(0), nullValue());
+        assertThat(map.get(-1), nullValue());
+        map.put(-1, "m");
+        assertThat(map.get(-1), is("m"));
+    }
+
+    @Test
+    public void testGeneratedIds()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_ROUTER_INT_ID, 1);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_ROUTER_MANDATORY, 1);
+        boolean rc = ZMQ.bind(router, "inproc://intid");
+        assertThat(rc, is(true));
+
+        SocketBase[] dealers = new SocketBase[3];
+        byte[][] ids = new byte[dealers.length][];
+        for (int i = 0; i != dealers.length; i++) {
+            dealers[i] = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+            if (i == 2) {
+                ZMQ.setSocketOption(dealers[i], ZMQ.ZMQ_IDENTITY, "peer-two");
+            }
+            rc = ZMQ.connect(dealers[i], "inproc://intid");
+            assertThat(rc, is(true));
+            ZMQ.send(dealers[i], "hello " + i, 0);
+
+            Msg msg = ZMQ.recv(router, 0);
+            ids[i] = msg.data();
+            msg = ZMQ.recv(router, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("hello " + i));
+        }
+        assertThat(ids[0].length, is(4));
+        assertThat(ids[1].length, is(4));
+        assertThat(new String(ids[2], ZMQ.CHARSET), is("peer-two"));
+
+        for (int i = dealers.length - 1; i >= 0; i--) {
+            ZMQ.send(router, new Msg(ids[i]), ZMQ.ZMQ_SNDMORE);
+            ZMQ.send(router, "reply " + i, 0);
+        }
+        for (int i = 0; i != dealers.length; i++) {
+            Msg msg = ZMQ.recv(dealers[i], 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("reply " + i));
+        }
+
+        //  Unknown four byte IDs are reported as such.
+        int sent = ZMQ.send(router, new Msg(new byte[] {1, 2, 3, 4}), ZMQ.ZMQ_SNDMORE);
+        assertThat(sent, is(-1));
+        assertThat(router.errno(), is(ZError.EHOSTUNREACH));
+
+        for (SocketBase dealer : dealers) {
+            ZMQ.close(dealer);
+        }
+        ZMQ.close(router);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testAssignedIdHandover()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_ROUTER_INT_ID, 1);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_ROUTER_HANDOVER, 1);
+        boolean rc = ZMQ.bind(router, "inproc://intid-handover");
+        assertThat(rc, is(true));
+
+        //  A four byte identity of the peer's own shares the int map with
+        //  the generated ones.
+        SocketBase dealerOne = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        ZMQ.setSocketOption(dealerOne, ZMQ.ZMQ_IDENTITY, "ABCD");
+        rc = ZMQ.connect(dealerOne, "inproc://intid-handover");
+        assertThat(rc, is(true));
+        ZMQ.send(dealerOne, "one", 0);
+        assertThat(new String(ZMQ.recv(router, 0).data(), ZMQ.CHARSET), is("ABCD"));
+        ZMQ.recv(router, 0);
+
+        SocketBase dealerTwo = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        ZMQ.setSocketOption(dealerTwo, ZMQ.ZMQ_IDENTITY, "ABCD");
+        rc = ZMQ.connect(dealerTwo, "inproc://intid-handover");
+        assertThat(rc, is(true));
+        ZMQ.send(dealerTwo, "two", 0);
+        assertThat(new String(ZMQ.recv(router, 0).data(), ZMQ.CHARSET), is("ABCD"));
+        ZMQ.recv(router, 0);
+
+        ZMQ.send(router, "ABCD", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(router, "hello", 0);
+
+        assertThat(ZMQ.recv(dealerOne, ZMQ.ZMQ_DONTWAIT), nullValue());
+        Msg msg = ZMQ.recv(dealerTwo, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("hello"));
+
+        ZMQ.close(dealerOne);
+        ZMQ.close(dealerTwo);
+        ZMQ.close(router);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetAfterAttach()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        SocketBase dealer = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        try {
+            //  Connecting to inproc attaches the pipe right away.
+            ZMQ.bind(dealer, "inproc://intid-late");
+            ZMQ.connect(router, "inproc://intid-late");
+            ZMQ.setSocketOption(router, ZMQ.ZMQ_ROUTER_INT_ID, 1);
+        }
+        finally {
+            ZMQ.close(dealer);
+            ZMQ.close(router);
+            ZMQ.term(ctx);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestShm
+{
+    @Test
+    public void testPairShm()
+    {
+        String endpoint = "shm://tester" + UUID.randomUUID().toString();
+
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        boolean rc = ZMQ.bind(sb, endpoint);
+        assertThat(rc, is(true));
+        assertThat((String) ZMQ.getSocketOptionExt(sb, ZMQ.ZMQ_LAST_ENDPOINT), is(endpoint));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        rc = ZMQ.connect(sc, endpoint);
+        assertThat(rc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testRouterDealerShm()
+    {
+        String endpoint = "shm://tester" + UUID.randomUUID().toString();
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        boolean rc = ZMQ.bind(router, endpoint);
+        assertThat(rc, is(true));
+
+        SocketBase dealer = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        ZMQ.setSocketOption(dealer, ZMQ.ZMQ_IDENTITY, "dealer");
+        rc = ZMQ.connect(dealer, endpoint);
+        assertThat(rc, is(true));
+
+        ZMQ.send(dealer, "hello", 0);
+        Msg msg = ZMQ.recv(router, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("dealer"));
+        msg = ZMQ.recv(router, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("hello"));
+
+        ZMQ.send(router, "dealer", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(router, "world", 0);
+        msg = ZMQ.recv(dealer, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("world"));
+
+        ZMQ.close(dealer);
+        ZMQ.close(router);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testPushPullBackpressure()
+    {
+        String endpoint = "shm://tester" + UUID.randomUUID().toString();
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, endpoint);
+        assertThat(rc, is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, endpoint);
+        assertThat(rc, is(true));
+
+        //  Several times the size of the ring, with messages spanning
+        //  many records.
+        byte[] big = new byte[Config.SHM_RING_SIZE.getValue() + 1000];
+        for (int i = 0; i != big.length; i++) {
+            big[i] = (byte) (i * 31);
+        }
+        for (int i = 0; i != 8; i++) {
+            big[0] = (byte) i;
+            assertThat(ZMQ.send(push, big, big.length, 0), is(big.length));
+            ZMQ.send(push, "small " + i, 0);
+        }
+        for (int i = 0; i != 8; i++) {
+            big[0] = (byte) i;
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(Arrays.equals(msg.data(), big), is(true));
+            msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("small " + i));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testWildcardRejected()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        boolean rc = ZMQ.bind(sb, "shm://*");
+        assertThat(rc, is(false));
+        assertThat(sb.errno(), is(ZError.EINVAL));
+
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testForeignPathRejected() throws Exception
+    {
+        String name = "tester" + UUID.randomUUID().toString();
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        boolean rc = ZMQ.bind(sb, "shm://" + name);
+        assertThat(rc, is(true));
+
+        //  A file the listener could delete, named like no ring file.
+        File victim = File.createTempFile("jeromq-victim-", ".dat");
+        FileOutputStream os = new FileOutputStream(victim);
+        os.write(new byte[128]);
+        os.close();
+
+        ShmAddress address = new ShmAddress();
+        address.resolve(name, false);
+        SocketChannel channel = address.isUnix() ? IpcAddress.openChannel() : SocketChannel.open();
+        channel.connect(address.address());
+        byte[] path = victim.getPath().getBytes(ZMQ.CHARSET);
+        ByteBuffer handshake = ByteBuffer.allocate(2 + path.length);
+        handshake.putShort((short) path.length).put(path).flip();
+        while (handshake.hasRemaining()) {
+            channel.write(handshake);
+        }
+
+        //  The listener drops the connection and keeps the file.
+        assertThat(channel.read(ByteBuffer.allocate(1)), is(-1));
+        channel.close();
+        assertThat(victim.exists(), is(true));
+        victim.delete();
+
+        //  And still accepts genuine peers.
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        rc = ZMQ.connect(sc, "shm://" + name);
+        assertThat(rc, is(true));
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestShmRing
+{
+    private static ShmRing[] pair(int capacity)
+    {
+        ByteBuffer region = ByteBuffer.allocateDirect(ShmRing.size(capacity));
+        ShmRing.format(region, 0);
+        return new ShmRing[] {new ShmRing(region, 0, capacity), new ShmRing(region, 0, capacity)};
+    }
+
+    private static Msg msg(String content, int flags)
+    {
+        Msg msg = new Msg(content.getBytes(ZMQ.CHARSET));
+        msg.setFlags(flags);
+        return msg;
+    }
+
+    private static String content(Msg msg)
+    {
+        return new String(msg.data(), ZMQ.CHARSET);
+    }
+
+    @Test
+    public void testCommitPublishes()
+    {
+        ShmRing[] rings = pair(1024);
+        ShmRing producer = rings[0];
+        ShmRing consumer = rings[1];
+
+        assertThat(producer.write(msg("hello", Msg.MORE), 0), is(5));
+        assertThat(producer.write(msg("", 0), 0), is(0));
+        assertThat(consumer.read(null), nullValue());
+
+        //  The consumer starts asleep, the first commit has to wake it up.
+        assertThat(producer.commit(), is(true));
+        Msg msg = consumer.read(null);
+        assertThat(content(msg), is("hello"));
+        assertThat(msg.hasMore(), is(true));
+        msg = consumer.read(null);
+        assertThat(msg.size(), is(0));
+        assertThat(msg.hasMore(), is(false));
+        assertThat(consumer.read(null), nullValue());
+
+        //  Awake consumers aren't signalled.
+        producer.write(msg("again", 0), 0);
+        assertThat(producer.commit(), is(false));
+        assertThat(content(consumer.read(null)), is("again"));
+
+        //  Until they go back to sleep.
+        assertThat(consumer.sleepConsumer(), is(true));
+        producer.write(msg("wake", 0), 0);
+        assertThat(producer.commit(), is(true));
+    }
+
+    @Test
+    public void testSleepConsumerSeesLateMessage()
+    {
+        ShmRing[] rings = pair(1024);
+        rings[0].write(msg("late", 0), 0);
+        rings[0].commit();
+        assertThat(rings[1].sleepConsumer(), is(false));
+        assertThat(content(rings[1].read(null)), is("late"));
+    }
+
+    @Test
+    public void testFullRingAndWrapAround()
+    {
+        ShmRing[] rings = pair(256);
+        ShmRing producer = rings[0];
+        ShmRing consumer = rings[1];
+
+        //  Records of 8 + 48 bytes, the fifth one doesn't fit.
+        String content = "0123456789012345678901234567890123456789abcdefgh";
+        for (int i = 0; i != 4; i++) {
+            assertThat(producer.write(msg(content, 0), 0), is(48));
+        }
+        assertThat(producer.write(msg(content, 0), 0), is(-1));
+        producer.commit();
+
+        //  Freeing space wakes up a sleeping producer.
+        producer.sleepProducer();
+        assertThat(content(consumer.read(null)), is(content));
+        assertThat(content(consumer.read(null)), is(content));
+        assertThat(consumer.release(), is(true));
+
+        //  Next record doesn't fit in the 32 bytes left at the end and
+        //  goes to the start.
+        assertThat(producer.write(msg(content, 0), 0), is(48));
+        producer.commit();
+        for (int i = 0; i != 3; i++) {
+            assertThat(content(consumer.read(null)), is(content));
+        }
+        assertThat(consumer.read(null), nullValue());
+    }
+
+    @Test
+    public void testLargeMessageSplit()
+    {
+        ShmRing[] rings = pair(256);
+        ShmRing producer = rings[0];
+        ShmRing consumer = rings[1];
+
+        byte[] data = new byte[1000];
+        for (int i = 0; i != data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Msg big = new Msg(data);
+        big.setFlags(Msg.MORE);
+
+        int offset = 0;
+        Msg received = null;
+        while (received == null) {
+            int n = producer.write(big, offset);
+            if (n == -1) {
+                producer.commit();
+                received = consumer.read(null);
+                consumer.release();
+                continue;
+            }
+            assertThat(n <= 64, is(true));
+            offset += n;
+            if (offset == data.length) {
+                producer.commit();
+                received = consumer.read(null);
+            }
+        }
+        assertThat(offset, is(data.length));
+        assertThat(received.data(), is(data));
+        assertThat(received.hasMore(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityPowerOfTwo()
+    {
+        new ShmRing(ByteBuffer.allocate(1024), 0, 600);
+    }
+}
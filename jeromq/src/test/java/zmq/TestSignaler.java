@@ -0,0 +1,88 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+
+public class TestSignaler
+{
+    @Test
+    public void testWaitTimesOut() throws IOException
+    {
+        Signaler signaler = new Signaler();
+        long start = System.currentTimeMillis();
+        assertThat(signaler.waitEvent(50), is(false));
+        assertThat(System.currentTimeMillis() - start >= 50, is(true));
+        signaler.close();
+    }
+
+    @Test
+    public void testSendWakesParkedThread() throws Exception
+    {
+        final Signaler signaler = new Signaler();
+        Thread sender = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                ZMQ.sleep(1);
+                signaler.send();
+            }
+        };
+        sender.start();
+
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+        assertThat(signaler.waitEvent(0), is(false));
+
+        sender.join();
+        signaler.close();
+    }
+
+    @Test
+    public void testPendingSignalVisibleOnFd() throws IOException
+    {
+        Signaler signaler = new Signaler();
+        signaler.send();
+
+        //  The pipe is only opened now, the signal must still be readable.
+        Selector selector = Selector.open();
+        signaler.getFd().register(selector, SelectionKey.OP_READ);
+        assertThat(selector.selectNow(), is(1));
+
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+        assertThat(signaler.waitEvent(10), is(false));
+
+        signaler.send();
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+
+        selector.close();
+        signaler.close();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestTimerWheel
+{
+    private static class Sink implements IPollEvents
+    {
+        private final List<Integer> fired = new ArrayList<Integer>();
+
+        @Override
+        public void inEvent()
+        {
+        }
+
+        @Override
+        public void outEvent()
+        {
+        }
+
+        @Override
+        public void connectEvent()
+        {
+        }
+
+        @Override
+        public void acceptEvent()
+        {
+        }
+
+        @Override
+        public void timerEvent(int id)
+        {
+            fired.add(id);
+        }
+    }
+
+    @Test
+    public void testFiresInOrderAcrossLevels()
+    {
+        long start = 1000;
+        TimerWheel wheel = new TimerWheel(start);
+        Sink sink = new Sink();
+
+        long[] delays = {5, 300, 70000, 1L << 25, 1};
+        for (int i = 0; i < delays.length; i++) {
+            wheel.add(new PollerBase.Timer(sink, i, start + delays[i]));
+        }
+
+        assertThat(wheel.execute(start), is(1L));
+        assertThat(wheel.execute(start + 1), is(4L));
+        assertThat(sink.fired.size(), is(1));
+        assertThat(sink.fired.get(0), is(4));
+
+        wheel.execute(start + 299);
+        assertThat(sink.fired.size(), is(2));
+        wheel.execute(start + 300);
+        assertThat(sink.fired.get(2), is(1));
+
+        wheel.execute(start + 69999);
+        assertThat(sink.fired.size(), is(3));
+        wheel.execute(start + 70000);
+        assertThat(sink.fired.get(3), is(2));
+
+        wheel.execute(start + (1L << 25) - 1);
+        assertThat(sink.fired.size(), is(4));
+        assertThat(wheel.execute(start + (1L << 25)), is(0L));
+        assertThat(sink.fired.get(4), is(3));
+        assertThat(wheel.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSkipsIdleTime()
+    {
+        TimerWheel wheel = new TimerWheel(0);
+        Sink sink = new Sink();
+
+        //  Sits on the second level until the first one wraps at 256,
+        //  before the one due at 260 on the first level.
+        wheel.add(new PollerBase.Timer(sink, 1, 257));
+        assertThat(wheel.execute(250), is(6L));
+        wheel.add(new PollerBase.Timer(sink, 2, 260));
+        wheel.add(new PollerBase.Timer(sink, 3, 1L << 31));
+
+        assertThat(wheel.execute(250), is(6L));
+        assertThat(wheel.execute(257), is(3L));
+        assertThat(sink.fired.size(), is(1));
+        assertThat(sink.fired.get(0), is(1));
+
+        //  Billions of milliseconds later.
+        assertThat(wheel.execute(1L << 32), is(0L));
+        assertThat(sink.fired.size(), is(3));
+        assertThat(sink.fired.get(2), is(3));
+    }
+
+    @Test
+    public void testCancel()
+    {
+        TimerWheel wheel = new TimerWheel(0);
+        Sink sink = new Sink();
+
+        PollerBase.Timer first = new PollerBase.Timer(sink, 1, 10);
+        PollerBase.Timer second = new PollerBase.Timer(sink, 2, 10);
+        wheel.add(first);
+        wheel.add(second);
+
+        assertThat(wheel.find(sink, 2), notNullValue());
+        wheel.remove(second);
+        assertThat(wheel.find(sink, 2), nullValue());
+
+        wheel.execute(10);
+        assertThat(sink.fired.size(), is(1));
+        assertThat(sink.fired.get(0), is(1));
+
+        //  Cancelling a timer that already fired is harmless.
+        wheel.remove(first);
+        assertThat(wheel.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testReconnectWithTimerWheel()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_TIMER_WHEEL, 1);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_TIMER_WHEEL), is(1));
+
+        //  Connect first, the connecter retries on its reconnect timer.
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sc, notNullValue());
+        boolean rc = ZMQ.connect(sc, "tcp://127.0.0.1:7803");
+        assertThat(rc, is(true));
+
+        ZMQ.sleep(1);
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sb, notNullValue());
+        rc = ZMQ.bind(sb, "tcp://127.0.0.1:7803");
+        assertThat(rc, is(true));
+
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+}
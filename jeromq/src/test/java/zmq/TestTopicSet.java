@@ -0,0 +1,177 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestTopicSet
+{
+    private static byte[] sub(String topic)
+    {
+        byte[] bytes = topic.getBytes(ZMQ.CHARSET);
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = 1;
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+
+    private static boolean check(ITrie trie, String data)
+    {
+        byte[] bytes = ("xx" + data).getBytes(ZMQ.CHARSET);
+        return trie.check(bytes, 2, bytes.length - 2);
+    }
+
+    @Test
+    public void testTableSameAsHashMap()
+    {
+        TopicTable<Integer> table = new TopicTable<Integer>();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        Random random = new Random(7);
+        for (int i = 0; i != 100000; i++) {
+            String key = Integer.toString(random.nextInt(2000), 36);
+            byte[] bytes = key.getBytes(ZMQ.CHARSET);
+            if (random.nextInt(3) == 0) {
+                assertThat(table.remove(bytes, 0, bytes.length), is(expected.remove(key)));
+            }
+            else {
+                table.put(bytes, 0, bytes.length, i);
+                expected.put(key, i);
+            }
+            assertThat(table.size(), is(expected.size()));
+        }
+        for (int i = 0; i != 2000; i++) {
+            byte[] bytes = Integer.toString(i, 36).getBytes(ZMQ.CHARSET);
+            assertThat(table.get(bytes, 0, bytes.length), is(expected.get(Integer.toString(i, 36))));
+        }
+    }
+
+    @Test
+    public void testFixedLengthTopic()
+    {
+        TopicSet set = new TopicSet(4);
+        assertThat(set.add(sub("AAPL"), 1), is(true));
+        assertThat(set.add(sub("AAPL"), 1), is(false));
+        assertThat(set.add(sub("IBM."), 1), is(true));
+
+        assertThat(check(set, "AAPL and the rest"), is(true));
+        assertThat(check(set, "IBM.N"), is(true));
+        assertThat(check(set, "AAP"), is(false));
+        assertThat(check(set, "MSFT"), is(false));
+
+        assertThat(set.rm(sub("AAPL"), 1), is(false));
+        assertThat(check(set, "AAPL"), is(true));
+        assertThat(set.rm(sub("AAPL"), 1), is(true));
+        assertThat(check(set, "AAPL"), is(false));
+        assertThat(set.rm(sub("AAPL"), 1), is(false));
+
+        //  Empty subscription still means everything.
+        assertThat(set.add(sub(""), 1), is(true));
+        assertThat(check(set, "MSFT"), is(true));
+        assertThat(set.rm(sub(""), 1), is(true));
+        assertThat(check(set, "MSFT"), is(false));
+    }
+
+    @Test
+    public void testFrameTopic()
+    {
+        TopicSet set = new TopicSet(ZMQ.ZMQ_EXACT_TOPIC_FRAME);
+        set.add(sub("md.EQ.AAPL"), 1);
+        assertThat(check(set, "md.EQ.AAPL"), is(true));
+        assertThat(check(set, "md.EQ.AAPL.L1"), is(false));
+        assertThat(check(set, "md.EQ"), is(false));
+
+        final Set<String> applied = new HashSet<String>();
+        set.apply(new Trie.ITrieHandler()
+        {
+            @Override
+            public void added(byte[] data, int size, Object arg)
+            {
+                applied.add(new String(data, 0, size, ZMQ.CHARSET));
+            }
+        }, null);
+        assertThat(applied.size(), is(1));
+        assertThat(applied.contains("md.EQ.AAPL"), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLength()
+    {
+        new TopicSet(-2);
+    }
+
+    @Test
+    public void testPubSubExact()
+    {
+        Ctx ctx = ZMQ.init(1);
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_EXACT_TOPIC, ZMQ.ZMQ_EXACT_TOPIC_FRAME);
+        boolean rc = ZMQ.bind(pub, "inproc://exact");
+        assertThat(rc, is(true));
+
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_EXACT_TOPIC, ZMQ.ZMQ_EXACT_TOPIC_FRAME);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "md.EQ.AAPL");
+        rc = ZMQ.connect(sub, "inproc://exact");
+        assertThat(rc, is(true));
+
+        ZMQ.sleep(1);
+
+        ZMQ.send(pub, "md.EQ.AAPL.L1", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(pub, "dropped", 0);
+        ZMQ.send(pub, "md.EQ.AAPL", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(pub, "body", 0);
+
+        Msg msg = ZMQ.recv(sub, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("md.EQ.AAPL"));
+        msg = ZMQ.recv(sub, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("body"));
+        assertThat(ZMQ.recv(sub, ZMQ.ZMQ_DONTWAIT), nullValue());
+
+        ZMQ.close(sub);
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExactAfterSubscribe()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "topic");
+        try {
+            ZMQ.setSocketOption(sub, ZMQ.ZMQ_EXACT_TOPIC, 5);
+        }
+        finally {
+            ZMQ.close(sub);
+            ZMQ.term(ctx);
+        }
+    }
+}